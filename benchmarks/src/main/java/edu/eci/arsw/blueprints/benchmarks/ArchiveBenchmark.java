@@ -0,0 +1,93 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.impl.ArchiveBlueprintPersistence;
+import edu.eci.arsw.blueprints.persistence.impl.BlueprintArchive;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ArchiveBlueprintPersistence} over an archive of the given number of
+ * blueprints: the time to open it, and random lookups. Runs with a small heap
+ * to show that the archive does not need to fit in it; compare the lookups
+ * with {@code PersistenceBenchmark.getBlueprint}.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class ArchiveBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int blueprints;
+
+    @Param({"16"})
+    public int points;
+
+    private Path file;
+
+    private ArchiveBlueprintPersistence archive;
+
+    @Setup(Level.Trial)
+    public void writeArchive() throws IOException {
+        file = Files.createTempFile("blueprints", ".archive");
+        Point[] template = Datasets.points(points);
+        BlueprintArchive.write(file, new Iterator<Blueprint>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < blueprints;
+            }
+
+            @Override
+            public Blueprint next() {
+                int i = next++;
+                return new Blueprint(Datasets.author(i % 10000), Datasets.name(i), template);
+            }
+        });
+        archive = new ArchiveBlueprintPersistence(file);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    public ArchiveBlueprintPersistence open() throws IOException {
+        try (ArchiveBlueprintPersistence opened = new ArchiveBlueprintPersistence(file)) {
+            return opened;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    public Blueprint getBlueprint() throws BlueprintNotFoundException {
+        int i = ThreadLocalRandom.current().nextInt(blueprints);
+        return archive.getBlueprint(Datasets.author(i % 10000), Datasets.name(i));
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchive() throws IOException {
+        archive.close();
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,97 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.impl.LogBlueprintPersistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Importing 1000 new blueprints into {@link LogBlueprintPersistence}, one
+ * {@code saveBlueprint} at a time (batch size 1) or with
+ * {@code saveBlueprints} in batches of the given size, each batch waiting for
+ * a single sync of the log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BatchImportBenchmark {
+
+    private static final int IMPORT_SIZE = 1000;
+
+    @Param({"1", "100", "1000"})
+    public int batchSize;
+
+    private final Point[] points = Datasets.points(16);
+
+    private Path directory;
+
+    private LogBlueprintPersistence persistence;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("blueprints-import");
+        persistence = new LogBlueprintPersistence(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        persistence.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int importBlueprints() throws BlueprintPersistenceException {
+        int saved = 0;
+        for (int done = 0; done < IMPORT_SIZE; done += batchSize) {
+            if (batchSize == 1) {
+                persistence.saveBlueprint(nextBlueprint());
+                saved++;
+                continue;
+            }
+            List<Blueprint> batch = new ArrayList<>(batchSize);
+            for (int i = 0; i < batchSize; i++) {
+                batch.add(nextBlueprint());
+            }
+            for (BlueprintPersistenceException error : persistence.saveBlueprints(batch)) {
+                if (error == null) {
+                    saved++;
+                }
+            }
+        }
+        return saved;
+    }
+
+    private Blueprint nextBlueprint() {
+        int i = next++;
+        return new Blueprint(Datasets.author(i % 1000), Datasets.name(i), points);
+    }
+}
@@ -0,0 +1,46 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * Runs the benchmarks once per thread count and writes one JSON result file
+ * per run, so runs from different commits can be compared with
+ * {@link CompareResults}.
+ *
+ * Takes the usual JMH command line (benchmark regexps, -p, -prof, ...) plus
+ * two system properties:
+ * <ul>
+ *   <li>{@code bench.threads}: comma separated thread counts, 1 by default</li>
+ *   <li>{@code bench.results}: directory for the JSON files, {@code results} by default</li>
+ * </ul>
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        File resultsDir = new File(System.getProperty("bench.results", "results"));
+        if (!resultsDir.isDirectory() && !resultsDir.mkdirs()) {
+            throw new IllegalStateException("Cannot create results directory: " + resultsDir);
+        }
+        for (String threads : System.getProperty("bench.threads", "1").split(",")) {
+            int count = Integer.parseInt(threads.trim());
+            File result = new File(resultsDir, "jmh-threads-" + count + ".json");
+            new Runner(new OptionsBuilder()
+                    .parent(commandLine)
+                    .threads(count)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(result.getPath())
+                    .build()).run();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.impl.ArchiveBlueprintPersistence;
+import edu.eci.arsw.blueprints.persistence.impl.BlueprintArchive;
+import edu.eci.arsw.blueprints.persistence.impl.CachingBlueprintPersistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@code getBlueprint} with a Zipfian access pattern, a few blueprints read
+ * very often and most rarely, through {@link CachingBlueprintPersistence} in
+ * front of an archive, and on the archive alone. The cache holds the given
+ * percentage of the total weight; the hit ratio is printed after each
+ * iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class CacheBenchmark {
+
+    private static final int SAMPLES = 1 << 20;
+
+    @Param({"1000000"})
+    public int blueprints;
+
+    @Param({"1", "10"})
+    public int cachePercent;
+
+    @Param({"0.99"})
+    public double zipfExponent;
+
+    private Path file;
+
+    private ArchiveBlueprintPersistence archive;
+
+    private CachingBlueprintPersistence cache;
+
+    // Blueprint indices drawn from the Zipf distribution
+    private int[] samples;
+
+    private String[] authors;
+
+    private String[] names;
+
+    /**
+     * Position of each thread in the samples.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        int next = new Random().nextInt(SAMPLES);
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int points = 16;
+        Point[] template = Datasets.points(points);
+        file = Files.createTempFile("blueprints", ".archive");
+        BlueprintArchive.write(file, new Iterator<Blueprint>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < blueprints;
+            }
+
+            @Override
+            public Blueprint next() {
+                int i = next++;
+                return new Blueprint(Datasets.author(i % 10000), Datasets.name(i), template);
+            }
+        });
+        archive = new ArchiveBlueprintPersistence(file);
+        long totalWeight = (long) blueprints * (points + 16);
+        cache = new CachingBlueprintPersistence(archive, totalWeight * cachePercent / 100);
+
+        authors = new String[blueprints];
+        names = new String[blueprints];
+        for (int i = 0; i < blueprints; i++) {
+            authors[i] = Datasets.author(i % 10000);
+            names[i] = Datasets.name(i);
+        }
+        samples = zipfSamples(blueprints, zipfExponent, SAMPLES, new Random(42));
+    }
+
+    @Benchmark
+    public Blueprint cached(Cursor cursor) throws BlueprintNotFoundException {
+        int i = samples[cursor.next++ & (SAMPLES - 1)];
+        return cache.getBlueprint(authors[i], names[i]);
+    }
+
+    @Benchmark
+    public Blueprint uncached(Cursor cursor) throws BlueprintNotFoundException {
+        int i = samples[cursor.next++ & (SAMPLES - 1)];
+        return archive.getBlueprint(authors[i], names[i]);
+    }
+
+    @TearDown(Level.Iteration)
+    public void printHitRatio() {
+        long hits = cache.getHitCount();
+        long total = hits + cache.getMissCount();
+        if (total > 0) {
+            System.out.printf("%ncache hit ratio so far %.3f, evictions %d%n", (double) hits / total, cache.getEvictionCount());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteArchive() throws IOException {
+        archive.close();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Draws indices in [0, n) where index k has probability proportional to
+     * 1 / (k + 1)^exponent, by inverting the cumulative distribution.
+     */
+    private static int[] zipfSamples(int n, double exponent, int count, Random random) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        int[] samples = new int[count];
+        for (int s = 0; s < count; s++) {
+            int k = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            samples[s] = Math.min(n - 1, k >= 0 ? k : -k - 1);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,85 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JMH JSON result files, for example the same run on two
+ * commits, and prints the change of every benchmark found in both.
+ *
+ * Usage: {@code CompareResults <baseline.json> <candidate.json>}
+ */
+public final class CompareResults {
+
+    private CompareResults() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <candidate.json>");
+            System.exit(2);
+        }
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> candidate = read(new File(args[1]));
+
+        System.out.printf("%-70s %14s %14s %9s %s%n", "Benchmark", "Baseline", "Candidate", "Change", "Unit");
+        for (Map.Entry<String, JsonNode> entry : candidate.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("%-70s %14s %14.3f %9s %s%n", entry.getKey(), "-",
+                        score(entry.getValue()), "new", unit(entry.getValue()));
+                continue;
+            }
+            double oldScore = score(before);
+            double newScore = score(entry.getValue());
+            double change = oldScore == 0 ? 0 : (newScore - oldScore) / oldScore * 100;
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%% %s%n", entry.getKey(), oldScore, newScore,
+                    change, unit(entry.getValue()));
+        }
+        for (String key : baseline.keySet()) {
+            if (!candidate.containsKey(key)) {
+                System.out.printf("%-70s %14.3f %14s %9s %s%n", key, score(baseline.get(key)), "-",
+                        "removed", unit(baseline.get(key)));
+            }
+        }
+    }
+
+    /**
+     * @return the results of a file keyed by benchmark, mode, threads and
+     *    parameters
+     */
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(shortName(result.path("benchmark").asText()))
+                    .append(' ').append(result.path("mode").asText())
+                    .append(" t=").append(result.path("threads").asInt());
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            while (params.hasNext()) {
+                Map.Entry<String, JsonNode> param = params.next();
+                key.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+
+    private static String shortName(String benchmark) {
+        String prefix = CompareResults.class.getPackage().getName() + ".";
+        return benchmark.startsWith(prefix) ? benchmark.substring(prefix.length()) : benchmark;
+    }
+
+    private static double score(JsonNode result) {
+        return result.path("primaryMetric").path("score").asDouble();
+    }
+
+    private static String unit(JsonNode result) {
+        return result.path("primaryMetric").path("scoreUnit").asText();
+    }
+}
@@ -0,0 +1,67 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.BlueprintsPersistence;
+
+import java.util.Random;
+
+/**
+ * Generates the data the benchmarks run on. The data only depends on the
+ * sizes asked for, so every run (and every commit) sees the same blueprints.
+ */
+final class Datasets {
+
+    private static final long SEED = 42L;
+
+    private Datasets() {
+    }
+
+    static String author(int index) {
+        return "author" + index;
+    }
+
+    static String name(int index) {
+        return "bp" + index;
+    }
+
+    /**
+     * Saves blueprints bp0 .. bp(count-1), spread round-robin over the given
+     * number of authors, each with a few points.
+     */
+    static void fill(BlueprintsPersistence persistence, int count, int authors) throws BlueprintPersistenceException {
+        Random random = new Random(SEED);
+        for (int i = 0; i < count; i++) {
+            persistence.saveBlueprint(new Blueprint(author(i % authors), name(i), randomPoints(random, 4)));
+        }
+    }
+
+    /**
+     * @return the given number of points on a small grid, so that consecutive
+     *    points repeat a coordinate now and then
+     */
+    static Point[] points(int count) {
+        return randomPoints(new Random(SEED), count);
+    }
+
+    /**
+     * @return the given number of points, packed as x0, y0, x1, y1, ...
+     */
+    static int[] packedPoints(int count) {
+        Random random = new Random(SEED);
+        int[] coordinates = new int[2 * count];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = random.nextInt(16);
+        }
+        return coordinates;
+    }
+
+    private static Point[] randomPoints(Random random, int count) {
+        Point[] points = new Point[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = new Point(random.nextInt(16), random.nextInt(16));
+        }
+        return points;
+    }
+}
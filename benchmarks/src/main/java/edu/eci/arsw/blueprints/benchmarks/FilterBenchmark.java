@@ -0,0 +1,97 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.filter.FilterBlueprints;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePoints;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Both {@link FilterBlueprints} implementations on a blueprint of the given
+ * size: the old list-based algorithms, the current ones over packed
+ * coordinates, and the two chained in a {@link FilterPipeline}. None of them
+ * change the blueprint, so it is built once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class FilterBenchmark {
+
+    @Param({"10000", "1000000", "10000000"})
+    public int points;
+
+    private final FilterBlueprints redundancy = new FilterSuprimePointsRepetitive();
+
+    private final FilterBlueprints subsample = new FilterSuprimePoints();
+
+    private FilterPipeline pipeline;
+
+    private Blueprint blueprint;
+
+    private List<Point> pointList;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, FilterBlueprints> filters = new HashMap<>();
+        filters.put("redundancy", redundancy);
+        filters.put("subsample", subsample);
+        pipeline = new FilterPipeline(filters);
+
+        blueprint = new Blueprint("author", "bp", Datasets.points(points));
+        pointList = new ArrayList<>(blueprint.getPoints());
+    }
+
+    @Benchmark
+    public List<Point> legacyRedundancy() {
+        return LegacyFilters.redundancy(pointList);
+    }
+
+    @Benchmark
+    public List<Point> legacySubsample() {
+        return LegacyFilters.subsample(pointList);
+    }
+
+    @Benchmark
+    public List<Point> legacyRedundancyThenSubsample() {
+        return LegacyFilters.subsample(LegacyFilters.redundancy(pointList));
+    }
+
+    @Benchmark
+    public Blueprint redundancy() throws BlueprintPersistenceException {
+        return redundancy.filteredCopy(blueprint);
+    }
+
+    @Benchmark
+    public Blueprint subsample() throws BlueprintPersistenceException {
+        return subsample.filteredCopy(blueprint);
+    }
+
+    @Benchmark
+    public Blueprint pipelineRedundancyThenSubsample() throws BlueprintPersistenceException {
+        return pipeline.apply(blueprint, Arrays.asList("redundancy", "subsample"));
+    }
+}
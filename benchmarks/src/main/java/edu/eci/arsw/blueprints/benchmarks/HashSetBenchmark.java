@@ -0,0 +1,85 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a {@code HashSet<Blueprint>}, as the by-author and all-blueprints
+ * queries do, with the current hash on author and name and with the constant
+ * hash {@code Blueprint} used to have. With the constant hash every blueprint
+ * lands in the same bucket, so building the set is quadratic; the sizes show
+ * how each one grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HashSetBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int blueprints;
+
+    private Blueprint[] hashed;
+
+    private Blueprint[] constantHash;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        hashed = new Blueprint[blueprints];
+        constantHash = new Blueprint[blueprints];
+        for (int i = 0; i < blueprints; i++) {
+            hashed[i] = new Blueprint(Datasets.author(i % 100), Datasets.name(i));
+            constantHash[i] = new ConstantHashBlueprint(Datasets.author(i % 100), Datasets.name(i));
+        }
+    }
+
+    @Benchmark
+    public Set<Blueprint> authorAndNameHash() {
+        return toSet(hashed);
+    }
+
+    @Benchmark
+    public Set<Blueprint> constantHash() {
+        return toSet(constantHash);
+    }
+
+    private static Set<Blueprint> toSet(Blueprint[] blueprints) {
+        Set<Blueprint> set = new HashSet<>();
+        for (Blueprint bp : blueprints) {
+            set.add(bp);
+        }
+        return set;
+    }
+
+    /**
+     * A blueprint with the hash the class used to have.
+     */
+    static final class ConstantHashBlueprint extends Blueprint {
+
+        ConstantHashBlueprint(String author, String name) {
+            super(author, name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 7;
+        }
+    }
+}
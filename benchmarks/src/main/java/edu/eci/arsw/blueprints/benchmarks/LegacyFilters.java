@@ -0,0 +1,44 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.model.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The filters as they were before the points were packed: they walk a
+ * {@code List<Point>} and build a new one. Kept here as the baseline the
+ * current filters are compared against.
+ */
+final class LegacyFilters {
+
+    private LegacyFilters() {
+    }
+
+    static List<Point> subsample(List<Point> points) {
+        List<Point> resPoints = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            if (!(i % 2 == 0)) {
+                resPoints.add(points.get(i));
+            }
+        }
+        return resPoints;
+    }
+
+    static List<Point> redundancy(List<Point> points) {
+        if (points.size() <= 1) {
+            return points;
+        }
+        List<Point> filteredPoints = new ArrayList<>();
+        Point previousPoint = points.get(0);
+        filteredPoints.add(previousPoint);
+        for (int i = 1; i < points.size(); i++) {
+            Point currentPoint = points.get(i);
+            if (currentPoint.getX() != previousPoint.getX() && currentPoint.getY() != previousPoint.getY()) {
+                filteredPoints.add(currentPoint);
+            }
+            previousPoint = currentPoint;
+        }
+        return filteredPoints;
+    }
+}
@@ -0,0 +1,94 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSimplify;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serving the coarsest level of detail of a drawn blueprint (a random walk
+ * with short steps, as a pen makes): simplified with {@link FilterSimplify}
+ * on every request, against the level cached by
+ * {@link BlueprintsServices#getBlueprintAtLevel(String, String, int)}. The
+ * points and JSON bytes of each level are printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class LevelOfDetailBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int points;
+
+    private final FilterSimplify coarsest = new FilterSimplify(32);
+
+    private BlueprintsServices services;
+
+    private Blueprint blueprint;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Random random = new Random(42);
+        Point[] drawing = new Point[points];
+        int x = 1000;
+        int y = 1000;
+        for (int i = 0; i < points; i++) {
+            x += random.nextInt(41) - 20;
+            y += random.nextInt(41) - 20;
+            drawing[i] = new Point(x, y);
+        }
+        blueprint = new Blueprint(Datasets.author(1), Datasets.name(1), drawing);
+        services = new BlueprintsServices(new InMemoryBlueprintPersistence(), new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+        services.addNewBlueprint(blueprint);
+
+        ObjectMapper mapper = new ObjectMapper();
+        for (int level = 0; level <= BlueprintsServices.MAX_LEVEL; level++) {
+            Blueprint simplified = services.getBlueprintAtLevel(blueprint.getAuthor(), blueprint.getName(), level);
+            System.out.printf("%nlevel %d: %d points, json %d bytes", level, simplified.pointCount(),
+                    json(mapper, simplified));
+        }
+        System.out.println();
+    }
+
+    @Benchmark
+    public Blueprint simplifyPerRequest() {
+        Blueprint copy = blueprint.copyAs(blueprint.getAuthor(), blueprint.getName());
+        coarsest.filterBlueprint(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public Blueprint cachedLevel() throws BlueprintNotFoundException {
+        return services.getBlueprintAtLevel(blueprint.getAuthor(), blueprint.getName(), BlueprintsServices.MAX_LEVEL);
+    }
+
+    private static int json(ObjectMapper mapper, Blueprint bp) throws IOException {
+        return mapper.writeValueAsBytes(bp).length;
+    }
+}
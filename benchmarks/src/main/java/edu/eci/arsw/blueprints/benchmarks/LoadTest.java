@@ -0,0 +1,278 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load test of a running server, to compare the platform-thread
+ * Tomcat pool with the virtual threads of the {@code virtual-threads}
+ * profile. Each client keeps one connection open and sends its next request
+ * as soon as it has the answer to the last one, so the number of clients is
+ * the number of connections the server holds. Most requests read the
+ * blueprint of a random client; the others replace the points of the
+ * client's own blueprint with a PUT, which waits for the log to be forced to
+ * disk when the server runs with {@code blueprints.persistence.dir}.
+ *
+ * Runs one level per client count and prints, for each, the requests per
+ * second, the latency percentiles and the failed requests: errors, refused
+ * connections or timeouts. System properties:
+ * <ul>
+ *   <li>{@code load.url}: the server, {@code http://localhost:8080} by default</li>
+ *   <li>{@code load.clients}: comma separated client counts, {@code 50,200,1000} by default</li>
+ *   <li>{@code load.seconds}: measured seconds per level, 20 by default</li>
+ *   <li>{@code load.warmup}: seconds run before measuring each level, 5 by default</li>
+ *   <li>{@code load.writes}: fraction of the requests that are PUTs, 0.1 by default</li>
+ *   <li>{@code load.timeout}: connect and read timeout in milliseconds, 10000 by default</li>
+ * </ul>
+ */
+public final class LoadTest {
+
+    private static final Pattern VERSION = Pattern.compile("\"version\"\\s*:\\s*(\\d+)");
+
+    private static final String AUTHOR = "loadtest";
+
+    private final String url;
+
+    private final double writes;
+
+    private final int timeout;
+
+    private LoadTest(String url, double writes, int timeout) {
+        this.url = url;
+        this.writes = writes;
+        this.timeout = timeout;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("load.url", "http://localhost:8080");
+        int[] levels = Arrays.stream(System.getProperty("load.clients", "50,200,1000").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim())).toArray();
+        int seconds = Integer.getInteger("load.seconds", 20);
+        int warmup = Integer.getInteger("load.warmup", 5);
+        double writes = Double.parseDouble(System.getProperty("load.writes", "0.1"));
+        int timeout = Integer.getInteger("load.timeout", 10000);
+        // Keep every client's connection alive between requests
+        System.setProperty("http.maxConnections", Integer.toString(Arrays.stream(levels).max().orElse(1)));
+
+        LoadTest test = new LoadTest(url, writes, timeout);
+        System.out.printf(Locale.ROOT, "%8s %10s %9s %9s %9s %9s %8s%n",
+                "clients", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "failed");
+        int highestClean = 0;
+        for (int clients : levels) {
+            Level level = test.run(clients, warmup, seconds);
+            System.out.printf(Locale.ROOT, "%8d %10.1f %9.2f %9.2f %9.2f %9.2f %8d%n", clients,
+                    level.requests() / (double) seconds, level.percentile(0.50), level.percentile(0.99),
+                    level.percentile(0.999), level.percentile(1.0), level.failed);
+            if (level.failed == 0) {
+                highestClean = Math.max(highestClean, clients);
+            }
+        }
+        System.out.println("Most clients served without a failed request: " + highestClean);
+    }
+
+    /**
+     * Runs a number of clients, each with its own blueprint, for the warmup
+     * and then for the measured seconds.
+     */
+    private Level run(int clients, int warmup, int seconds) throws InterruptedException {
+        AtomicBoolean measuring = new AtomicBoolean();
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch ready = new CountDownLatch(clients);
+        Client[] all = new Client[clients];
+        List<Thread> threads = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            Client client = new Client("c" + clients + "-" + i, clients, measuring, running, ready);
+            all[i] = client;
+            Thread thread = new Thread(client, "load-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        ready.await();
+        Thread.sleep(warmup * 1000L);
+        measuring.set(true);
+        Thread.sleep(seconds * 1000L);
+        measuring.set(false);
+        running.set(false);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Level level = new Level();
+        for (Client client : all) {
+            level.add(client);
+        }
+        return level;
+    }
+
+    private final class Client implements Runnable {
+
+        private final String name;
+
+        private final int clients;
+
+        private final AtomicBoolean measuring;
+
+        private final AtomicBoolean running;
+
+        private final CountDownLatch ready;
+
+        private long[] latencies = new long[1024];
+
+        private int count;
+
+        private int failed;
+
+        private int version;
+
+        Client(String name, int clients, AtomicBoolean measuring, AtomicBoolean running, CountDownLatch ready) {
+            this.name = name;
+            this.clients = clients;
+            this.measuring = measuring;
+            this.running = running;
+            this.ready = ready;
+        }
+
+        @Override
+        public void run() {
+            try {
+                request("POST", "/api/blueprints", "{\"author\":\"" + AUTHOR + "\",\"name\":\"" + name
+                        + "\",\"points\":[{\"x\":0,\"y\":0},{\"x\":10,\"y\":10}]}");
+            } catch (IOException e) {
+                // Counted by the requests that follow
+            } finally {
+                ready.countDown();
+            }
+            while (running.get()) {
+                boolean measured = measuring.get();
+                long start = System.nanoTime();
+                boolean ok;
+                try {
+                    ok = ThreadLocalRandom.current().nextDouble() < writes ? update() : read();
+                } catch (IOException e) {
+                    ok = false;
+                }
+                long elapsed = System.nanoTime() - start;
+                if (measured) {
+                    record(elapsed, ok);
+                }
+            }
+        }
+
+        private boolean read() throws IOException {
+            int other = ThreadLocalRandom.current().nextInt(clients);
+            String target = name.substring(0, name.indexOf('-') + 1) + other;
+            return request("GET", "/api/blueprints/" + AUTHOR + "/" + target, null) == 200;
+        }
+
+        private boolean update() throws IOException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            String body = "{\"author\":\"" + AUTHOR + "\",\"name\":\"" + name + "\",\"version\":" + version
+                    + ",\"points\":[{\"x\":0,\"y\":0},{\"x\":" + random.nextInt(1000) + ",\"y\":"
+                    + random.nextInt(1000) + "}]}";
+            int status = request("PUT", "/api/blueprints/" + AUTHOR + "/" + name, body);
+            if (status == 200) {
+                version++;
+            } else if (status == 409) {
+                // An earlier run left the blueprint at a later version
+                request("GET", "/api/blueprints/" + AUTHOR + "/" + name, null);
+            }
+            return status == 200;
+        }
+
+        /**
+         * Sends a request and reads the whole answer, so the connection can
+         * be reused, keeping the version of the blueprint if it has one.
+         *
+         * @return the status of the answer
+         */
+        private int request(String method, String path, String body) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url + path).openConnection();
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
+            connection.setRequestMethod(method);
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (in != null) {
+                ByteArrayOutputStream answer = new ByteArrayOutputStream();
+                byte[] buffer = new byte[8192];
+                try (InputStream stream = in) {
+                    for (int n; (n = stream.read(buffer)) > 0; ) {
+                        answer.write(buffer, 0, n);
+                    }
+                }
+                Matcher matcher = VERSION.matcher(answer.toString("UTF-8"));
+                if (status == 200 && path.endsWith("/" + name) && matcher.find()) {
+                    version = Integer.parseInt(matcher.group(1));
+                }
+            }
+            return status;
+        }
+
+        private void record(long elapsed, boolean ok) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, 2 * count);
+            }
+            latencies[count++] = elapsed;
+            if (!ok) {
+                failed++;
+            }
+        }
+    }
+
+    /**
+     * The measured requests of every client at one level.
+     */
+    private static final class Level {
+
+        private long[] latencies = new long[0];
+
+        private int failed;
+
+        void add(Client client) {
+            int start = latencies.length;
+            latencies = Arrays.copyOf(latencies, start + client.count);
+            System.arraycopy(client.latencies, 0, latencies, start, client.count);
+            failed += client.failed;
+        }
+
+        int requests() {
+            return latencies.length;
+        }
+
+        /**
+         * @return the latency below which the fraction of requests took, in
+         *    milliseconds
+         */
+        double percentile(double fraction) {
+            if (latencies.length == 0) {
+                return Double.NaN;
+            }
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(fraction * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+        }
+    }
+}
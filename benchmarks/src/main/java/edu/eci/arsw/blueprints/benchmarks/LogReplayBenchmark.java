@@ -0,0 +1,94 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.impl.LogBlueprintPersistence;
+import edu.eci.arsw.blueprints.persistence.impl.WriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup time of {@link LogBlueprintPersistence}: replaying a log of the
+ * given number of operations. One in ten operations is a delete, the rest
+ * save or overwrite one of operations / 10 blueprints, so the replayed state
+ * is smaller than the log, as it is after a long history of updates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LogReplayBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int operations;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeLog() throws IOException {
+        directory = Files.createTempDirectory("blueprints-replay");
+        int keys = Math.max(1, operations / 10);
+        Point[] points = Datasets.points(4);
+        Random random = new Random(42);
+        WriteAheadLog.Replayer none = new WriteAheadLog.Replayer() {
+            @Override
+            public void put(Blueprint bp) {
+            }
+
+            @Override
+            public void delete(String author, String name) {
+            }
+        };
+        // The first segment, which the persistence replays when there is no snapshot
+        try (WriteAheadLog log = WriteAheadLog.open(directory.resolve("blueprints-0.log"), none)) {
+            for (int i = 0; i < operations; i++) {
+                int key = random.nextInt(keys);
+                if (random.nextInt(10) == 0) {
+                    log.appendDelete(Datasets.author(key % 1000), Datasets.name(key));
+                } else {
+                    Blueprint bp = new Blueprint(Datasets.author(key % 1000), Datasets.name(key), points);
+                    bp.setVersion(i);
+                    log.appendPut(bp);
+                }
+                if (i % 100_000 == 0) {
+                    log.sync();
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public LogBlueprintPersistence replay() throws IOException {
+        try (LogBlueprintPersistence persistence = new LogBlueprintPersistence(directory)) {
+            return persistence;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLog() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
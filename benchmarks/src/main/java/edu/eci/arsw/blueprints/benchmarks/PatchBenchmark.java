@@ -0,0 +1,101 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Changing a few points of a large blueprint, body parsing included: a PUT
+ * of every point with {@code updateBlueprint}, against a PATCH that appends
+ * ten points (sharing the stored array) and one that moves a vertex (copying
+ * it once). Each iteration starts from a fresh blueprint and runs a batch of
+ * 1000 changes, each based on the version the one before left.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, batchSize = 1000)
+@Measurement(iterations = 10, batchSize = 1000)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PatchBenchmark {
+
+    @Param({"100000"})
+    public int points;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private BlueprintsServices services;
+
+    private byte[] putBody;
+
+    private byte[] appendBody;
+
+    private byte[] moveBody;
+
+    private int version;
+
+    @Setup(Level.Trial)
+    public void encode() throws Exception {
+        Point[] all = Datasets.points(points + 10);
+        putBody = mapper.writeValueAsBytes(new Blueprint(Datasets.author(1), Datasets.name(1), all));
+        List<Point> added = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            added.add(new Point(i, i));
+        }
+        appendBody = mapper.writeValueAsBytes(new BlueprintPatch(0, Collections.singletonList(
+                new BlueprintPatch.Operation(BlueprintPatch.APPEND, 0, 0, added))));
+        moveBody = mapper.writeValueAsBytes(new BlueprintPatch(0, Collections.singletonList(
+                new BlueprintPatch.Operation(BlueprintPatch.MOVE, points / 2, 0, Collections.singletonList(new Point(3, 4))))));
+    }
+
+    @Setup(Level.Iteration)
+    public void fill() throws Exception {
+        services = new BlueprintsServices(new InMemoryBlueprintPersistence(), new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+        services.addNewBlueprint(new Blueprint(Datasets.author(1), Datasets.name(1), Datasets.points(points)));
+        version = 0;
+    }
+
+    @Benchmark
+    public void put() throws Exception {
+        Blueprint bp = mapper.readValue(putBody, Blueprint.class);
+        bp.setVersion(version++);
+        services.updateBlueprint(Datasets.author(1), Datasets.name(1), bp);
+    }
+
+    @Benchmark
+    public Blueprint patchAppend() throws Exception {
+        BlueprintPatch patch = mapper.readValue(appendBody, BlueprintPatch.class);
+        patch.setVersion(version++);
+        return services.patchBlueprint(Datasets.author(1), Datasets.name(1), patch);
+    }
+
+    @Benchmark
+    public Blueprint patchMove() throws Exception {
+        BlueprintPatch patch = mapper.readValue(moveBody, BlueprintPatch.class);
+        patch.setVersion(version++);
+        return services.patchBlueprint(Datasets.author(1), Datasets.name(1), patch);
+    }
+}
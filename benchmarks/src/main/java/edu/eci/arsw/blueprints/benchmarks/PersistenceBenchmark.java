@@ -0,0 +1,98 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Get, by-author lookup, save, update and delete on
+ * {@link InMemoryBlueprintPersistence}. Every thread picks random keys, so with
+ * several threads the operations contend on the same maps.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class PersistenceBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int blueprints;
+
+    @Param({"100", "10000"})
+    public int authors;
+
+    private InMemoryBlueprintPersistence persistence;
+
+    private final AtomicLong created = new AtomicLong();
+
+    private final Point[] points = Datasets.points(4);
+
+    @Setup(Level.Trial)
+    public void setUp() throws BlueprintPersistenceException {
+        persistence = new InMemoryBlueprintPersistence();
+        Datasets.fill(persistence, blueprints, authors);
+    }
+
+    @Benchmark
+    public Blueprint getBlueprint() throws BlueprintNotFoundException {
+        int i = ThreadLocalRandom.current().nextInt(blueprints);
+        return persistence.getBlueprint(Datasets.author(i % authors), Datasets.name(i));
+    }
+
+    @Benchmark
+    public Set<Blueprint> getBlueprintsByAuthor() throws BlueprintNotFoundException {
+        return persistence.getBlueprintsByAuthor(Datasets.author(ThreadLocalRandom.current().nextInt(authors)));
+    }
+
+    /**
+     * Baseline for {@link #getBlueprintsByAuthor()}: the by-author lookup done
+     * as a scan over every blueprint, the way it was before the author index.
+     */
+    @Benchmark
+    public Set<Blueprint> getBlueprintsByAuthorScan() {
+        String author = Datasets.author(ThreadLocalRandom.current().nextInt(authors));
+        return persistence.streamAllBlueprints()
+                .filter(bp -> author.equals(bp.getAuthor()))
+                .collect(Collectors.toSet());
+    }
+
+    @Benchmark
+    public void updateBlueprint() {
+        int i = ThreadLocalRandom.current().nextInt(blueprints);
+        persistence.updateBlueprints(new Blueprint(Datasets.author(i % authors), Datasets.name(i), points));
+    }
+
+    /**
+     * Saves a new blueprint and deletes it again, so the data set keeps its
+     * size along the run.
+     */
+    @Benchmark
+    public void saveAndDeleteBlueprint() throws BlueprintPersistenceException, BlueprintNotFoundException {
+        String author = Datasets.author(ThreadLocalRandom.current().nextInt(authors));
+        String name = "new" + created.incrementAndGet();
+        persistence.saveBlueprint(new Blueprint(author, name, points));
+        persistence.deleteBlueprint(author, name);
+    }
+}
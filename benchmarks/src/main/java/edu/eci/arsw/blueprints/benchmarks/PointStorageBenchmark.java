@@ -0,0 +1,75 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Memory needed to hold the points of a blueprint in each layout: a list of
+ * {@link Point} objects, as {@code Blueprint} used to keep them, and the packed
+ * coordinates it keeps now. Each benchmark builds the structure from scratch,
+ * so run it with the GC profiler ({@code -prof gc}) and read
+ * {@code gc.alloc.rate.norm}: the bytes allocated per operation are the
+ * footprint of the structure.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PointStorageBenchmark {
+
+    @Param({"1000", "100000"})
+    public int points;
+
+    private int[] coordinates;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        coordinates = Datasets.packedPoints(points);
+    }
+
+    @Benchmark
+    public List<Point> arrayListOfPoints() {
+        List<Point> list = new ArrayList<>();
+        for (int i = 0; i < points; i++) {
+            list.add(new Point(coordinates[2 * i], coordinates[2 * i + 1]));
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<Point> arraysAsListOfPoints() {
+        Point[] array = new Point[points];
+        for (int i = 0; i < points; i++) {
+            array[i] = new Point(coordinates[2 * i], coordinates[2 * i + 1]);
+        }
+        return Arrays.asList(array);
+    }
+
+    @Benchmark
+    public Blueprint packedBlueprint() {
+        Blueprint bp = new Blueprint("author", "bp");
+        int[] copy = new int[2 * points];
+        System.arraycopy(coordinates, 0, copy, 0, copy.length);
+        bp.replacePoints(copy, points);
+        return bp;
+    }
+}
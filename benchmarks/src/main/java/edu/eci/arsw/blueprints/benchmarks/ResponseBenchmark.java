@@ -0,0 +1,124 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing a hot blueprint to the response body: through the Jackson message
+ * converter, as a {@code ResponseEntity<Blueprint>} did, against the bytes
+ * kept by the service's response cache, plain and gzip. Each operation reads
+ * the blueprint from the service first, as the controller does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class ResponseBenchmark {
+
+    private static final int HOT_BLUEPRINTS = 100;
+
+    @Param({"10", "1000"})
+    public int points;
+
+    private BlueprintsServices services;
+
+    private final MappingJackson2HttpMessageConverter jackson = new MappingJackson2HttpMessageConverter();
+
+    private final ByteArrayHttpMessageConverter bytes = new ByteArrayHttpMessageConverter();
+
+    @Setup(Level.Trial)
+    public void setUp() throws BlueprintPersistenceException {
+        InMemoryBlueprintPersistence persistence = new InMemoryBlueprintPersistence();
+        for (int i = 0; i < HOT_BLUEPRINTS; i++) {
+            persistence.saveBlueprint(new Blueprint(Datasets.author(i), Datasets.name(i), Datasets.points(points)));
+        }
+        services = new BlueprintsServices(persistence, new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+    }
+
+    @Benchmark
+    public long jackson() throws BlueprintNotFoundException, IOException {
+        DiscardingMessage message = new DiscardingMessage();
+        jackson.write(hot(), MediaType.APPLICATION_JSON, message);
+        return message.written;
+    }
+
+    @Benchmark
+    public long cachedJson() throws BlueprintNotFoundException, IOException {
+        DiscardingMessage message = new DiscardingMessage();
+        bytes.write(services.getEncodedBlueprint(hot()).getJson(), MediaType.APPLICATION_JSON, message);
+        return message.written;
+    }
+
+    @Benchmark
+    public long cachedGzip() throws BlueprintNotFoundException, IOException {
+        DiscardingMessage message = new DiscardingMessage();
+        bytes.write(services.getEncodedBlueprint(hot()).getGzip(), MediaType.APPLICATION_JSON, message);
+        return message.written;
+    }
+
+    private Blueprint hot() throws BlueprintNotFoundException {
+        int i = ThreadLocalRandom.current().nextInt(HOT_BLUEPRINTS);
+        return services.getBlueprint(Datasets.author(i), Datasets.name(i));
+    }
+
+    /**
+     * A response that only counts the bytes written to it.
+     */
+    private static final class DiscardingMessage extends OutputStream implements HttpOutputMessage {
+
+        private final HttpHeaders headers = new HttpHeaders();
+
+        long written;
+
+        @Override
+        public OutputStream getBody() {
+            return this;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public void write(int b) {
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written += len;
+        }
+    }
+}
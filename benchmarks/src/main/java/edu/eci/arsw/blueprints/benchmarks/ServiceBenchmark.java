@@ -0,0 +1,114 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.filter.FilterBlueprints;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePoints;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BlueprintsServices#updateBlueprint(String, String, Blueprint)} as a
+ * client does it: read the blueprint, then write new points based on the
+ * version that was read. With several threads on the same blueprint some of
+ * the writes lose the race; they are counted as conflicts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ServiceBenchmark {
+
+    @Param({"10000", "1000000"})
+    public int blueprints;
+
+    @Param({"100"})
+    public int authors;
+
+    private BlueprintsServices services;
+
+    private final Point[] points = Datasets.points(4);
+
+    @Setup(Level.Trial)
+    public void setUp() throws BlueprintPersistenceException {
+        InMemoryBlueprintPersistence persistence = new InMemoryBlueprintPersistence();
+        Datasets.fill(persistence, blueprints, authors);
+        Map<String, FilterBlueprints> filters = new HashMap<>();
+        filters.put("redundancy", new FilterSuprimePointsRepetitive());
+        filters.put("subsample", new FilterSuprimePoints());
+        FilterBlueprints defaultFilter = filters.get("redundancy");
+        services = new BlueprintsServices(persistence, defaultFilter, new FilterPipeline(filters));
+    }
+
+    /**
+     * Updates made and updates rejected because the blueprint changed in
+     * between, per thread.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Outcomes {
+
+        public long updated;
+
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            updated = 0;
+            conflicts = 0;
+        }
+    }
+
+    /**
+     * Each update goes to a random blueprint; conflicts are rare.
+     */
+    @Benchmark
+    public void updateRandomBlueprint(Outcomes outcomes) throws BlueprintNotFoundException {
+        int i = ThreadLocalRandom.current().nextInt(blueprints);
+        update(Datasets.author(i % authors), Datasets.name(i), outcomes);
+    }
+
+    /**
+     * Every thread updates the same blueprint; measures the cost of contention.
+     */
+    @Benchmark
+    public void updateSharedBlueprint(Outcomes outcomes) throws BlueprintNotFoundException {
+        update(Datasets.author(0), Datasets.name(0), outcomes);
+    }
+
+    private void update(String author, String name, Outcomes outcomes) throws BlueprintNotFoundException {
+        Blueprint current = services.getBlueprint(author, name);
+        Blueprint update = new Blueprint(author, name, points);
+        update.setVersion(current.getVersion());
+        try {
+            services.updateBlueprint(author, name, update);
+            outcomes.updated++;
+        } catch (BlueprintPersistenceException ex) {
+            outcomes.conflicts++;
+        }
+    }
+}
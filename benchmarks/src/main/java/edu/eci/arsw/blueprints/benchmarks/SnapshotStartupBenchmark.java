@@ -0,0 +1,89 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.impl.LogBlueprintPersistence;
+import edu.eci.arsw.blueprints.persistence.impl.WriteAheadLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Startup time of {@link LogBlueprintPersistence} after compaction: loading a
+ * snapshot of the given number of blueprints and replaying a tail of changes
+ * made after it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class SnapshotStartupBenchmark {
+
+    @Param({"1000000", "5000000"})
+    public int blueprints;
+
+    @Param({"10000"})
+    public int tail;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeSnapshotAndTail() throws IOException {
+        directory = Files.createTempDirectory("blueprints-snapshot");
+        Point[] points = Datasets.points(4);
+        // A snapshot written directly is what the persistence loads as snapshot-1
+        WriteAheadLog.writeSnapshot(directory.resolve("snapshot-1.snap"), new Iterator<Blueprint>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < blueprints;
+            }
+
+            @Override
+            public Blueprint next() {
+                int i = next++;
+                return new Blueprint(Datasets.author(i % 10000), Datasets.name(i), points);
+            }
+        });
+        try (LogBlueprintPersistence persistence = new LogBlueprintPersistence(directory, Long.MAX_VALUE)) {
+            for (int i = 0; i < tail; i++) {
+                persistence.updateBlueprints(new Blueprint(Datasets.author(i % 10000), Datasets.name(i), points));
+            }
+        }
+    }
+
+    @Benchmark
+    public LogBlueprintPersistence startup() throws IOException {
+        try (LogBlueprintPersistence persistence = new LogBlueprintPersistence(directory, Long.MAX_VALUE)) {
+            return persistence;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.BlueprintsPersistence;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Area queries the size of a map viewport and nearest-blueprint queries on
+ * {@link InMemoryBlueprintPersistence}, answered by its spatial index, and by
+ * the scan of every blueprint that {@link BlueprintsPersistence} does by
+ * default. The blueprints are small drawings spread over a square of
+ * 100000 x 100000 units.
+ *
+ * {@code updateIndexed} moves blueprints to another place, which moves them
+ * in the spatial index too; run it with several threads ({@code -t}) to see
+ * whether writes to unrelated cells wait for each other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SpatialBenchmark {
+
+    private static final int EXTENT = 100000;
+
+    private static final int VIEWPORT = 1000;
+
+    private static final int QUERIES = 1024;
+
+    @Param({"10000", "100000"})
+    public int blueprints;
+
+    private InMemoryBlueprintPersistence indexed;
+
+    private BlueprintsPersistence scanned;
+
+    private int[] xs;
+
+    private int[] ys;
+
+    private Blueprint[] moved;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void fill() throws BlueprintPersistenceException {
+        indexed = new InMemoryBlueprintPersistence();
+        Random random = new Random(42);
+        Point[] shape = Datasets.points(8);
+        for (int i = 0; i < blueprints; i++) {
+            int x = random.nextInt(EXTENT);
+            int y = random.nextInt(EXTENT);
+            Point[] points = new Point[shape.length];
+            for (int j = 0; j < shape.length; j++) {
+                points[j] = new Point(x + 20 * shape[j].getX(), y + 20 * shape[j].getY());
+            }
+            indexed.saveBlueprint(new Blueprint(Datasets.author(i % 1000), Datasets.name(i), points));
+        }
+        scanned = new Scan(indexed);
+        xs = new int[QUERIES];
+        ys = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            xs[i] = random.nextInt(EXTENT);
+            ys[i] = random.nextInt(EXTENT);
+        }
+        moved = new Blueprint[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            Point[] points = new Point[shape.length];
+            for (int j = 0; j < shape.length; j++) {
+                points[j] = new Point(xs[i] + 20 * shape[j].getX(), ys[i] + 20 * shape[j].getY());
+            }
+            int n = random.nextInt(blueprints);
+            moved[i] = new Blueprint(Datasets.author(n % 1000), Datasets.name(n), points);
+        }
+    }
+
+    @Benchmark
+    public List<Blueprint> areaIndexed() {
+        int i = next++ & (QUERIES - 1);
+        return indexed.getBlueprintsInArea(xs[i], ys[i], xs[i] + VIEWPORT, ys[i] + VIEWPORT, 1000);
+    }
+
+    @Benchmark
+    public List<Blueprint> areaScanned() {
+        int i = next++ & (QUERIES - 1);
+        return scanned.getBlueprintsInArea(xs[i], ys[i], xs[i] + VIEWPORT, ys[i] + VIEWPORT, 1000);
+    }
+
+    @Benchmark
+    public List<Blueprint> nearestIndexed() {
+        int i = next++ & (QUERIES - 1);
+        return indexed.getNearestBlueprints(xs[i], ys[i], 1);
+    }
+
+    @Benchmark
+    public void updateIndexed() {
+        indexed.updateBlueprints(moved[ThreadLocalRandom.current().nextInt(QUERIES)]);
+    }
+
+    @Benchmark
+    public List<Blueprint> nearestScanned() {
+        int i = next++ & (QUERIES - 1);
+        return scanned.getNearestBlueprints(xs[i], ys[i], 1);
+    }
+
+    /**
+     * The same blueprints, with the default queries of the interface.
+     */
+    private static final class Scan implements BlueprintsPersistence {
+
+        private final BlueprintsPersistence delegate;
+
+        Scan(BlueprintsPersistence delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void saveBlueprint(Blueprint bp) throws BlueprintPersistenceException {
+            delegate.saveBlueprint(bp);
+        }
+
+        @Override
+        public Blueprint getBlueprint(String author, String bprintname) throws BlueprintNotFoundException {
+            return delegate.getBlueprint(author, bprintname);
+        }
+
+        @Override
+        public Set<Blueprint> getBlueprintsByAuthor(String autor) throws BlueprintNotFoundException {
+            return delegate.getBlueprintsByAuthor(autor);
+        }
+
+        @Override
+        public Set<Blueprint> getAllBlueprints() {
+            return delegate.getAllBlueprints();
+        }
+
+        @Override
+        public Stream<Blueprint> streamAllBlueprints() {
+            return delegate.streamAllBlueprints();
+        }
+
+        @Override
+        public void updateBlueprints(Blueprint bp) {
+            delegate.updateBlueprints(bp);
+        }
+
+        @Override
+        public void compareAndSetBlueprint(int expectedVersion, Blueprint bp)
+                throws BlueprintNotFoundException, BlueprintPersistenceException {
+            delegate.compareAndSetBlueprint(expectedVersion, bp);
+        }
+
+        @Override
+        public void addBlueprintName(String author, String bpname, Blueprint blueprint) {
+            delegate.addBlueprintName(author, bpname, blueprint);
+        }
+    }
+}
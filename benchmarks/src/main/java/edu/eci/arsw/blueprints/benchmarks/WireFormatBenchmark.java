@@ -0,0 +1,98 @@
+package edu.eci.arsw.blueprints.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.Controller.BlueprintBinaryFormat;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encoding and decoding a blueprint as JSON with Jackson and in the
+ * {@link BlueprintBinaryFormat}. The blueprints are drawings: a random walk
+ * with short steps, as a pen makes. The payload sizes, including gzipped
+ * JSON, are printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class WireFormatBenchmark {
+
+    @Param({"100", "10000"})
+    public int points;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private Blueprint blueprint;
+
+    private byte[] json;
+
+    private byte[] binary;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        Point[] drawing = new Point[points];
+        int x = 1000;
+        int y = 1000;
+        for (int i = 0; i < points; i++) {
+            x += random.nextInt(41) - 20;
+            y += random.nextInt(41) - 20;
+            drawing[i] = new Point(x, y);
+        }
+        blueprint = new Blueprint(Datasets.author(1), Datasets.name(1), drawing);
+        json = mapper.writeValueAsBytes(blueprint);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BlueprintBinaryFormat.write(blueprint, out);
+        binary = out.toByteArray();
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(json);
+        }
+        System.out.printf("%n%d points: json %d bytes, gzipped json %d bytes, binary %d bytes%n",
+                points, json.length, gzipped.size(), binary.length);
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws IOException {
+        return mapper.writeValueAsBytes(blueprint);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(binary.length);
+        BlueprintBinaryFormat.write(blueprint, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Blueprint decodeJson() throws IOException {
+        return mapper.readValue(json, Blueprint.class);
+    }
+
+    @Benchmark
+    public Blueprint decodeBinary() throws IOException {
+        return BlueprintBinaryFormat.read(new ByteArrayInputStream(binary));
+    }
+}
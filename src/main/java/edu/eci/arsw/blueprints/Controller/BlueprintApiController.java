@@ -1,18 +1,47 @@
 package edu.eci.arsw.blueprints.Controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import edu.eci.arsw.blueprints.Controller.RequestExecutors.Pool;
 import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.BlueprintReadOnlyException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import edu.eci.arsw.blueprints.services.BlueprintResponseCache;
 import edu.eci.arsw.blueprints.services.BlueprintsServices;
 import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintBatchResult;
+import edu.eci.arsw.blueprints.model.BlueprintKey;
+import edu.eci.arsw.blueprints.model.BlueprintPage;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
 import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 @CrossOrigin(origins = "http://localhost:3000")
 @RestController
@@ -21,79 +50,561 @@ public class BlueprintApiController {
 
     private final BlueprintsServices blueprintService;
 
-    public BlueprintApiController(BlueprintsServices blueprintService) {
+    private final ObjectMapper objectMapper;
+
+    private final ObjectWriter ndjsonWriter;
+
+    private final RequestExecutors executors;
+
+    /**
+     * Runs every handler on the calling thread.
+     */
+    public BlueprintApiController(BlueprintsServices blueprintService, ObjectMapper objectMapper) {
+        this(blueprintService, objectMapper, new RequestExecutors());
+    }
+
+    @Autowired
+    public BlueprintApiController(BlueprintsServices blueprintService, ObjectMapper objectMapper,
+                                  RequestExecutors executors) {
         this.blueprintService = blueprintService;
+        this.objectMapper = objectMapper;
+        this.ndjsonWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.executors = executors;
+    }
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int BATCH_SIZE = 1000;
+
+    private static final int MAX_NEAREST = 100;
+
+    /**
+     * Lists the blueprints one page at a time, in (author, name) order. The
+     * response carries the cursor to pass to get the following page.
+     */
+    @GetMapping(value = "/blueprints", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> getBlueprintsPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                                                  @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return executors.submit(Pool.READS, () -> {
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                return new ResponseEntity<>("limit must be between 1 and " + MAX_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+            }
+            try {
+                BlueprintPage page = blueprintService.getBlueprintsPage(cursor, limit);
+                return new ResponseEntity<>(page, HttpStatus.OK);
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+        });
+    }
+
+    /**
+     * Streams all the blueprints as newline-delimited JSON, one blueprint per
+     * line, writing each one as it is read from the persistence. The stream
+     * is written on the read pool, so it is rejected with 503 like any other
+     * read when the pool is full.
+     */
+    @GetMapping(value = "/blueprints", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> streamAllBlueprints(HttpServletResponse response) {
+        return executors.submit(Pool.READS, () -> ndjson(blueprintService.streamAllBlueprints(), response));
+    }
+
+    /**
+     * Streams the blueprints of an author as newline-delimited JSON, on the
+     * read pool.
+     */
+    @GetMapping(value = "/blueprints/{author}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> streamBlueprintsByAuthor(@PathVariable("author") String author,
+                                                                         HttpServletResponse response) {
+        return executors.submit(Pool.READS, () -> {
+            Stream<Blueprint> blueprints;
+            try {
+                blueprints = blueprintService.streamBlueprintsByAuthor(author);
+            } catch (BlueprintNotFoundException e) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+
+            return ndjson(blueprints, response);
+        });
     }
 
 
+    /**
+     * Returns the blueprints of an author. The ETag changes whenever one of
+     * them is added, changed or deleted; a request whose If-None-Match holds
+     * it is answered with 304 and no body. The tag is kept by the persistence
+     * as the blueprints change, so the 304 is answered without reading them.
+     */
     @GetMapping("/blueprints/{author}")
-    public ResponseEntity<Set<Blueprint>> getBlueprintsByAuthor(@PathVariable("author") String author) {
-        Set<Blueprint> blueprints;
-        try {
-            blueprints = blueprintService.getBlueprintsByAuthor(author);
-        } catch (BlueprintNotFoundException e) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<Set<Blueprint>>> getBlueprintsByAuthor(@PathVariable("author") String author,
+                                                                                   @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return executors.submit(Pool.READS, () -> {
+            // The tag is read first: it may be older than the blueprints read after it, never newer
+            String etag;
+            Set<Blueprint> blueprints;
+            try {
+                etag = authorETag(blueprintService.getAuthorTag(author), null);
+                if (matches(ifNoneMatch, etag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                }
+                blueprints = blueprintService.getBlueprintsByAuthor(author);
+            } catch (BlueprintNotFoundException e) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
 
-        if (blueprints.isEmpty()) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+            if (blueprints.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            return ResponseEntity.ok().eTag(etag).body(blueprints);
+        });
+    }
+
+    /**
+     * Returns the blueprints of an author in the compact
+     * {@link BlueprintBinaryFormat}, for clients that accept it, with the same
+     * conditional GET as the JSON.
+     */
+    @GetMapping(value = "/blueprints/{author}", produces = BlueprintBinaryFormat.MEDIA_TYPE_VALUE)
+    public CompletableFuture<ResponseEntity<byte[]>> getBinaryBlueprintsByAuthor(@PathVariable("author") String author,
+                                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return executors.submit(Pool.READS, () -> {
+            // The tag is read first: it may be older than the blueprints read after it, never newer
+            String etag;
+            Set<Blueprint> blueprints;
+            try {
+                etag = authorETag(blueprintService.getAuthorTag(author), "bin");
+                if (matches(ifNoneMatch, etag)) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+                }
+                blueprints = blueprintService.getBlueprintsByAuthor(author);
+            } catch (BlueprintNotFoundException e) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
 
-        return new ResponseEntity<>(blueprints, HttpStatus.OK);
+            if (blueprints.isEmpty()) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            BlueprintBinaryFormat.writeAll(blueprints, body);
+            return ResponseEntity.ok().eTag(etag).contentType(BlueprintBinaryFormat.MEDIA_TYPE).body(body.toByteArray());
+        });
     }
 
+    /**
+     * Returns a blueprint, with an ETag made of its version and the hash of
+     * its points. A request whose If-None-Match holds it is answered with 304
+     * and no body, without serializing the blueprint. Otherwise the JSON, or
+     * its gzip encoding if the client accepts it, comes from the response
+     * cache of the service while the blueprint does not change.
+     */
     @GetMapping("/blueprints/{author}/{bpname}")
-    public ResponseEntity<Blueprint> getBlueprintByAuthorAndName(@PathVariable("author") String author,
-                                                                 @PathVariable("bpname") String bpname) {
-        Blueprint blueprint;
-        try {
-            blueprint = blueprintService.getBlueprint(author, bpname);
-        } catch (BlueprintNotFoundException e) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<byte[]>> getBlueprintByAuthorAndName(@PathVariable("author") String author,
+                                                                                 @PathVariable("bpname") String bpname,
+                                                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return executors.submit(Pool.READS, () -> {
+            Blueprint blueprint;
+            try {
+                blueprint = blueprintService.getBlueprint(author, bpname);
+            } catch (BlueprintNotFoundException e) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+
+            boolean gzip = acceptsGzip(acceptEncoding);
+            String etag = blueprintETag(blueprint, gzip ? "gzip" : null);
+            if (matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT_ENCODING).build();
+            }
+            BlueprintResponseCache.Encoded encoded = blueprintService.getEncodedBlueprint(blueprint);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .contentType(MediaType.APPLICATION_JSON);
+            if (gzip) {
+                return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(encoded.getGzip());
+            }
+            return response.body(encoded.getJson());
+        });
+    }
+
+    /**
+     * Returns a blueprint in the compact {@link BlueprintBinaryFormat}, for
+     * clients that accept it, with the same conditional GET as the JSON.
+     */
+    @GetMapping(value = "/blueprints/{author}/{bpname}", produces = BlueprintBinaryFormat.MEDIA_TYPE_VALUE)
+    public CompletableFuture<ResponseEntity<Blueprint>> getBinaryBlueprint(@PathVariable("author") String author,
+                                                                           @PathVariable("bpname") String bpname,
+                                                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return executors.submit(Pool.READS, () -> {
+            Blueprint blueprint;
+            try {
+                blueprint = blueprintService.getBlueprint(author, bpname);
+            } catch (BlueprintNotFoundException e) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            }
+
+            String etag = blueprintETag(blueprint, "bin");
+            if (matches(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).contentType(BlueprintBinaryFormat.MEDIA_TYPE).body(blueprint);
+        });
+    }
+
+    /**
+     * Returns the blueprint after applying the given chain of filters, or the
+     * default filter if none is given. The stored blueprint is not changed.
+     */
+    @GetMapping("/blueprints/{author}/{bpname}/filtered")
+    public CompletableFuture<ResponseEntity<?>> getFilteredBlueprint(@PathVariable("author") String author,
+                                                                     @PathVariable("bpname") String bpname,
+                                                                     @RequestParam(value = "filters", required = false) List<String> filters) {
+        return executors.submit(Pool.FILTERS, () -> {
+            Blueprint blueprint;
+            try {
+                blueprint = blueprintService.getFilteredBlueprint(author, bpname,
+                        filters == null ? Collections.emptyList() : filters);
+            } catch (BlueprintNotFoundException e) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+
+            return new ResponseEntity<>(blueprint, HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Returns the blueprint simplified to a level of detail, from 0 (every
+     * point) to {@link BlueprintsServices#MAX_LEVEL} (the fewest), for clients
+     * that draw it zoomed out.
+     */
+    @GetMapping("/blueprints/{author}/{bpname}/simplified")
+    public CompletableFuture<ResponseEntity<?>> getSimplifiedBlueprint(@PathVariable("author") String author,
+                                                                       @PathVariable("bpname") String bpname,
+                                                                       @RequestParam(value = "level", defaultValue = "1") int level) {
+        return executors.submit(Pool.FILTERS, () -> {
+            try {
+                return new ResponseEntity<>(blueprintService.getBlueprintAtLevel(author, bpname, level), HttpStatus.OK);
+            } catch (BlueprintNotFoundException e) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+        });
+    }
 
-        return new ResponseEntity<>(blueprint, HttpStatus.OK);
+    @GetMapping("/filters")
+    public CompletableFuture<ResponseEntity<Set<String>>> getFilterNames() {
+        return executors.submit(Pool.READS, () -> new ResponseEntity<>(blueprintService.getFilterNames(), HttpStatus.OK));
     }
 
-    @PostMapping("/blueprints")
-    public ResponseEntity<?> addNewBlueprint(@RequestBody Blueprint newBlueprint) {
-        try {
-            blueprintService.addNewBlueprint(newBlueprint);
-            return new ResponseEntity<>(HttpStatus.CREATED);
-        } catch (BlueprintPersistenceException e) {
-            Logger.getLogger(BlueprintApiController.class.getName()).log(Level.SEVERE, null, e);
-            return new ResponseEntity<>("Error al registrar el plano", HttpStatus.FORBIDDEN);
+    /**
+     * Saves a new blueprint, sent in JSON or in the {@link BlueprintBinaryFormat}.
+     * The body is read on the write pool, not on the servlet thread.
+     */
+    @PostMapping(value = "/blueprints", consumes = { MediaType.APPLICATION_JSON_VALUE, BlueprintBinaryFormat.MEDIA_TYPE_VALUE })
+    public CompletableFuture<ResponseEntity<?>> addNewBlueprint(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                                InputStream body) {
+        return executors.submit(Pool.WRITES, () -> {
+            Blueprint newBlueprint;
+            try {
+                newBlueprint = readBlueprint(body, contentType);
+            } catch (IOException e) {
+                return new ResponseEntity<>("Invalid blueprint: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+            try {
+                blueprintService.addNewBlueprint(newBlueprint);
+                return new ResponseEntity<>(HttpStatus.CREATED);
+            } catch (BlueprintReadOnlyException e) {
+                return GlobalExceptionHandler.readOnly(e);
+            } catch (BlueprintPersistenceException e) {
+                Logger.getLogger(BlueprintApiController.class.getName()).log(Level.SEVERE, null, e);
+                return new ResponseEntity<>("Error al registrar el plano", HttpStatus.FORBIDDEN);
+            }
+        });
+    }
+
+    /**
+     * Saves a JSON array of new blueprints, read as it arrives and saved in
+     * batches of {@value #BATCH_SIZE}, so neither the whole array nor a lock
+     * or sync per blueprint is needed. Answers with one result per blueprint,
+     * in order: 201 if it was saved, 409 if it was rejected, 400 if it has no
+     * author or name. If the array is malformed the answer is 400, with the
+     * results of the blueprints read before the error; those were saved.
+     */
+    @PostMapping(value = "/blueprints/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<List<BlueprintBatchResult>>> addNewBlueprints(InputStream body) {
+        return executors.submit(Pool.WRITES, () -> {
+            List<BlueprintBatchResult> results = new ArrayList<>();
+            List<Blueprint> batch = new ArrayList<>(BATCH_SIZE);
+            try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    throw new JsonParseException(parser, "Expected an array of blueprints");
+                }
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    batch.add(objectMapper.readValue(parser, Blueprint.class));
+                    if (batch.size() == BATCH_SIZE) {
+                        saveBatch(batch, results);
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                saveBatch(batch, results);
+                results.add(new BlueprintBatchResult(null, null, HttpStatus.BAD_REQUEST.value(),
+                        "Invalid blueprint at index " + results.size() + ": " + e.getOriginalMessage()));
+                return new ResponseEntity<>(results, HttpStatus.BAD_REQUEST);
+            }
+            saveBatch(batch, results);
+            return new ResponseEntity<>(results, HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Returns the blueprints for a JSON array of keys, in the same order, with
+     * null for the keys that have no blueprint.
+     */
+    @PostMapping(value = "/blueprints/lookup", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> getBlueprints(@RequestBody List<BlueprintKey> keys) {
+        return executors.submit(Pool.READS, () -> {
+            if (keys.size() > MAX_PAGE_SIZE) {
+                return new ResponseEntity<>("At most " + MAX_PAGE_SIZE + " keys per lookup", HttpStatus.BAD_REQUEST);
+            }
+            return new ResponseEntity<>(blueprintService.getBlueprints(keys), HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Lists the blueprints whose bounding box intersects an area, such as the
+     * viewport of a map, in (author, name) order.
+     */
+    @GetMapping(value = "/spatial/blueprints", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> getBlueprintsInArea(@RequestParam("minX") int minX, @RequestParam("minY") int minY,
+                                                                    @RequestParam("maxX") int maxX, @RequestParam("maxY") int maxY,
+                                                                    @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        return executors.submit(Pool.READS, () -> {
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                return new ResponseEntity<>("limit must be between 1 and " + MAX_PAGE_SIZE, HttpStatus.BAD_REQUEST);
+            }
+            if (minX > maxX || minY > maxY) {
+                return new ResponseEntity<>("The area must have minX <= maxX and minY <= maxY", HttpStatus.BAD_REQUEST);
+            }
+            return new ResponseEntity<>(blueprintService.getBlueprintsInArea(minX, minY, maxX, maxY, limit), HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Lists the blueprints with a point closest to a position, closest first.
+     */
+    @GetMapping(value = "/spatial/nearest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> getNearestBlueprints(@RequestParam("x") int x, @RequestParam("y") int y,
+                                                                     @RequestParam(value = "count", defaultValue = "1") int count) {
+        return executors.submit(Pool.READS, () -> {
+            if (count < 1 || count > MAX_NEAREST) {
+                return new ResponseEntity<>("count must be between 1 and " + MAX_NEAREST, HttpStatus.BAD_REQUEST);
+            }
+            return new ResponseEntity<>(blueprintService.getNearestBlueprints(x, y, count), HttpStatus.OK);
+        });
+    }
+
+    /**
+     * Replaces the points of a blueprint, based on the version sent with
+     * them, in JSON or in the {@link BlueprintBinaryFormat}. The body, which
+     * holds every point, is read on the write pool, not on the servlet thread.
+     */
+    @PutMapping(value = "/blueprints/{author}/{bpname}",
+            consumes = { MediaType.APPLICATION_JSON_VALUE, BlueprintBinaryFormat.MEDIA_TYPE_VALUE })
+    public CompletableFuture<ResponseEntity<?>> updateBlueprint(@PathVariable("author") String author,
+                                                                @PathVariable("bpname") String bpname,
+                                                                @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                                                InputStream body) {
+        return executors.submit(Pool.WRITES, () -> {
+            Blueprint updatedBlueprint;
+            try {
+                updatedBlueprint = readBlueprint(body, contentType);
+            } catch (IOException e) {
+                return new ResponseEntity<>("Invalid blueprint: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+            try {
+                blueprintService.updateBlueprint(author, bpname, updatedBlueprint);
+                return new ResponseEntity<>(HttpStatus.OK);
+            } catch (BlueprintNotFoundException e) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            } catch (BlueprintPersistenceException e) {
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+            } catch (BlueprintReadOnlyException e) {
+                return GlobalExceptionHandler.readOnly(e);
+            }
+        });
+    }
+    /**
+     * Applies a patch to the points of a blueprint, based on a version, so a
+     * client that moves or adds a few points sends only those. Answers with
+     * the new version and point count, and the ETag of the patched blueprint.
+     */
+    @PatchMapping(value = "/blueprints/{author}/{bpname}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<?>> patchBlueprint(@PathVariable("author") String author,
+                                                               @PathVariable("bpname") String bpname,
+                                                               @RequestBody BlueprintPatch patch) {
+        return executors.submit(Pool.WRITES, () -> {
+            Blueprint patched;
+            try {
+                patched = blueprintService.patchBlueprint(author, bpname, patch);
+            } catch (BlueprintNotFoundException e) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            } catch (BlueprintPersistenceException e) {
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+            } catch (BlueprintReadOnlyException e) {
+                return GlobalExceptionHandler.readOnly(e);
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+            Map<String, Integer> result = new LinkedHashMap<>();
+            result.put("version", patched.getVersion());
+            result.put("pointCount", patched.pointCount());
+            return ResponseEntity.ok().eTag(blueprintETag(patched, null)).body(result);
+        });
+    }
+
+    @DeleteMapping("/blueprints/{author}/{bpname}")
+    public CompletableFuture<ResponseEntity<?>> deleteBlueprint(@PathVariable("author") String author,
+                                                                @PathVariable("bpname") String bpname) {
+        return executors.submit(Pool.WRITES, () -> {
+            try {
+                blueprintService.deleteBlueprint(author, bpname);
+                return new ResponseEntity<>(HttpStatus.NO_CONTENT); // Código 204: No Content
+            } catch (BlueprintNotFoundException e) {
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND); // Código 404: Not Found
+            } catch (BlueprintReadOnlyException e) {
+                return GlobalExceptionHandler.readOnly(e);
+            }
+        });
+    }
+
+    /**
+     * Reads a blueprint from a request body in the {@link BlueprintBinaryFormat}
+     * if that is its content type, or in JSON.
+     *
+     * @throws IOException if the body is not a blueprint, or cannot be read
+     */
+    private Blueprint readBlueprint(InputStream body, String contentType) throws IOException {
+        if (BlueprintBinaryFormat.MEDIA_TYPE.isCompatibleWith(MediaType.parseMediaType(contentType))) {
+            return BlueprintBinaryFormat.read(body);
         }
+        return objectMapper.readValue(body, Blueprint.class);
     }
 
-    @PutMapping("/blueprints/{author}/{bpname}")
-    public ResponseEntity<?> updateBlueprint(@PathVariable("author") String author,
-                                             @PathVariable("bpname") String bpname,
-                                             @RequestBody Blueprint updatedBlueprint) {
-        try {
-            blueprintService.updateBlueprint(author, bpname, updatedBlueprint);
-            return new ResponseEntity<>(HttpStatus.OK);
-        } catch (BlueprintNotFoundException e) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        } catch (BlueprintPersistenceException e) {
-            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+    /**
+     * Saves the blueprints of the batch that have an author and a name, adds a
+     * result for each one and clears the batch.
+     */
+    private void saveBatch(List<Blueprint> batch, List<BlueprintBatchResult> results) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<Blueprint> valid = new ArrayList<>(batch.size());
+        for (Blueprint bp : batch) {
+            if (bp.getAuthor() != null && bp.getName() != null) {
+                valid.add(bp);
+            }
         }
+        Iterator<BlueprintPersistenceException> errors = blueprintService.addNewBlueprints(valid).iterator();
+        for (Blueprint bp : batch) {
+            if (bp.getAuthor() == null || bp.getName() == null) {
+                results.add(new BlueprintBatchResult(bp.getAuthor(), bp.getName(), HttpStatus.BAD_REQUEST.value(),
+                        "A blueprint needs an author and a name"));
+                continue;
+            }
+            BlueprintPersistenceException error = errors.next();
+            results.add(error == null
+                    ? new BlueprintBatchResult(bp.getAuthor(), bp.getName(), HttpStatus.CREATED.value(), null)
+                    : new BlueprintBatchResult(bp.getAuthor(), bp.getName(), HttpStatus.CONFLICT.value(), error.getMessage()));
+        }
+        batch.clear();
     }
-    @DeleteMapping("/blueprints/{author}/{bpname}")
-    public ResponseEntity<?> deleteBlueprint(@PathVariable("author") String author,
-                                             @PathVariable("bpname") String bpname) {
-        try {
-            blueprintService.deleteBlueprint(author, bpname);
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT); // Código 204: No Content
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR); // Código 500: Internal Server Error
+
+    /**
+     * Writes the blueprints straight to the response, on the thread of the
+     * pool, instead of handing a body to the async executor of Spring MVC,
+     * which is not bounded.
+     *
+     * @return null: the response is already written, and Spring MVC takes a
+     *    null entity as a request it must not answer again
+     */
+    private ResponseEntity<?> ndjson(Stream<Blueprint> blueprints, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        // The response stream is closed by the container, not by the generator
+        try (Stream<Blueprint> stream = blueprints;
+             JsonGenerator generator = ndjsonWriter.getFactory().createGenerator(response.getOutputStream())
+                     .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.setRootValueSeparator(null);
+            Iterator<Blueprint> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                ndjsonWriter.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+            }
         }
+        return null;
+    }
+
+    /**
+     * The version alone is not enough: a blueprint deleted and saved again
+     * starts over at version 0, and a plain update keeps it. The gzip and
+     * binary encodings are different representations, so they get their own
+     * tags.
+     */
+    private static String blueprintETag(Blueprint blueprint, String representation) {
+        return "\"" + blueprint.getVersion() + "-" + Long.toHexString(blueprint.contentHash())
+                + (representation == null ? "" : "-" + representation) + "\"";
     }
 
+    /**
+     * The gzip and binary encodings are different representations, so they
+     * get their own tags, as for a single blueprint.
+     */
+    private static String authorETag(String authorTag, String representation) {
+        return "\"" + authorTag + (representation == null ? "" : "-" + representation) + "\"";
+    }
 
+    /**
+     * @return whether an Accept-Encoding header lists gzip, and does not
+     *    refuse it with q=0
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                for (int i = 1; i < parts.length; i++) {
+                    if (parts[i].replace(" ", "").matches("q=0(\\.0*)?")) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether an If-None-Match header holds the given tag, using the
+     *    weak comparison the header asks for
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
 }
@@ -0,0 +1,267 @@
+package edu.eci.arsw.blueprints.Controller;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import org.springframework.http.MediaType;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Compact binary encoding of blueprints, served as
+ * {@value #MEDIA_TYPE_VALUE}.
+ *
+ * A message starts with a format byte, then holds either one blueprint or a
+ * count followed by that many blueprints, depending on what is sent. A
+ * blueprint is:
+ * <pre>
+ *   varint version, string author, string name, varint pointCount,
+ *   per point: varint dx, varint dy
+ * </pre>
+ * Every varint is zigzag encoded, seven bits per byte with the high bit set
+ * on all bytes but the last, so small values of either sign take one byte.
+ * Each point is stored as its difference from the previous one, starting at
+ * (0, 0), so the points of a drawing, which are usually close to each other,
+ * take two or three bytes instead of the twenty or so of their JSON. A string
+ * is its UTF-8 byte count plus one, 0 for null, then its bytes.
+ */
+public final class BlueprintBinaryFormat {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-blueprint";
+
+    public static final MediaType MEDIA_TYPE = MediaType.valueOf(MEDIA_TYPE_VALUE);
+
+    private static final int FORMAT = 1;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private BlueprintBinaryFormat() {
+    }
+
+    /**
+     * Writes a message with one blueprint.
+     */
+    public static void write(Blueprint bp, OutputStream out) throws IOException {
+        Writer writer = new Writer(out);
+        writer.writeByte(FORMAT);
+        writer.writeBlueprint(bp);
+        writer.flush();
+    }
+
+    /**
+     * Writes a message with several blueprints, in the order of the
+     * collection.
+     */
+    public static void writeAll(Collection<Blueprint> blueprints, OutputStream out) throws IOException {
+        Writer writer = new Writer(out);
+        writer.writeByte(FORMAT);
+        writer.writeVarint(blueprints.size());
+        for (Blueprint bp : blueprints) {
+            writer.writeBlueprint(bp);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads a message with one blueprint.
+     *
+     * @throws IOException if the message ends early or is not in this format
+     */
+    public static Blueprint read(InputStream in) throws IOException {
+        Reader reader = new Reader(in);
+        int format = reader.readByte();
+        if (format != FORMAT) {
+            throw new IOException("Unknown blueprint format: " + format);
+        }
+        return reader.readBlueprint();
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Buffers the output, so each byte is not a call on the stream.
+     */
+    private static final class Writer {
+
+        private final OutputStream out;
+
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        private int position;
+
+        Writer(OutputStream out) {
+            this.out = out;
+        }
+
+        void writeBlueprint(Blueprint bp) throws IOException {
+            writeVarint(zigzag(bp.getVersion()));
+            writeString(bp.getAuthor());
+            writeString(bp.getName());
+            int count = bp.pointCount();
+            writeVarint(count);
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < count; i++) {
+                int nextX = bp.xAt(i);
+                int nextY = bp.yAt(i);
+                writeVarint(zigzag(nextX - x));
+                writeVarint(zigzag(nextY - y));
+                x = nextX;
+                y = nextY;
+            }
+        }
+
+        void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            for (int done = 0; done < bytes.length;) {
+                if (position == buffer.length) {
+                    drain();
+                }
+                int n = Math.min(bytes.length - done, buffer.length - position);
+                System.arraycopy(bytes, done, buffer, position, n);
+                position += n;
+                done += n;
+            }
+        }
+
+        /**
+         * Writes an unsigned varint; callers zigzag signed values first.
+         */
+        void writeVarint(int value) throws IOException {
+            if (buffer.length - position < 5) {
+                drain();
+            }
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void writeByte(int value) throws IOException {
+            if (position == buffer.length) {
+                drain();
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        void flush() throws IOException {
+            drain();
+            out.flush();
+        }
+
+        private void drain() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    private static final class Reader {
+
+        private final InputStream in;
+
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+
+        private int position;
+
+        private int limit;
+
+        Reader(InputStream in) {
+            this.in = in;
+        }
+
+        Blueprint readBlueprint() throws IOException {
+            int version = unzigzag(readVarint());
+            String author = readString();
+            String name = readString();
+            int count = readVarint();
+            if (count < 0) {
+                throw new IOException("Invalid point count: " + (count & 0xFFFFFFFFL));
+            }
+            // Grow with the points actually read, not the count the message claims
+            int[] coordinates = new int[2 * Math.min(count, 4096)];
+            int x = 0;
+            int y = 0;
+            for (int i = 0; i < count; i++) {
+                if (2 * i == coordinates.length) {
+                    coordinates = Arrays.copyOf(coordinates, 2 * (int) Math.min(count, 2L * i));
+                }
+                x += unzigzag(readVarint());
+                y += unzigzag(readVarint());
+                coordinates[2 * i] = x;
+                coordinates[2 * i + 1] = y;
+            }
+            Blueprint bp = new Blueprint(author, name);
+            bp.replacePoints(coordinates, count);
+            bp.setVersion(version);
+            return bp;
+        }
+
+        String readString() throws IOException {
+            int length = readVarint() - 1;
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0) {
+                throw new IOException("Invalid string length: " + (length & 0xFFFFFFFFL));
+            }
+            byte[] bytes = new byte[Math.min(length, BUFFER_SIZE)];
+            for (int done = 0; done < length;) {
+                if (position == limit) {
+                    fill();
+                }
+                if (done == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * done));
+                }
+                int n = Math.min(Math.min(length, bytes.length) - done, limit - position);
+                System.arraycopy(buffer, position, bytes, done, n);
+                position += n;
+                done += n;
+            }
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed varint");
+        }
+
+        int readByte() throws IOException {
+            if (position == limit) {
+                fill();
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        private void fill() throws IOException {
+            int n = in.read(buffer, 0, buffer.length);
+            if (n <= 0) {
+                throw new EOFException("The blueprint message ended early");
+            }
+            position = 0;
+            limit = n;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package edu.eci.arsw.blueprints.Controller;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Reads and writes blueprints in the {@link BlueprintBinaryFormat}, so a client
+ * that sends or accepts {@value BlueprintBinaryFormat#MEDIA_TYPE_VALUE} gets it
+ * instead of JSON. It reads and writes a single blueprint. Spring Boot adds it
+ * to the MVC converters ahead of Jackson because it is a bean, so it does not
+ * claim collections: a client that accepts any type would get them in this
+ * format. The handlers that produce it encode lists of blueprints themselves.
+ */
+@Component
+public class BlueprintBinaryHttpMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public BlueprintBinaryHttpMessageConverter() {
+        super(BlueprintBinaryFormat.MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return Blueprint.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return supports(ResolvableType.forType(type).toClass()) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!canWrite(mediaType)) {
+            return false;
+        }
+        ResolvableType resolved = type == null ? ResolvableType.forClass(clazz) : ResolvableType.forType(type);
+        return supports(resolved.toClass());
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return readInternal(Blueprint.class, inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return BlueprintBinaryFormat.read(inputMessage.getBody());
+        } catch (IOException ex) {
+            throw new HttpMessageNotReadableException("Invalid blueprint: " + ex.getMessage(), ex, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object value, Type type, HttpOutputMessage outputMessage) throws IOException {
+        BlueprintBinaryFormat.write((Blueprint) value, outputMessage.getBody());
+    }
+}
@@ -2,10 +2,15 @@ package edu.eci.arsw.blueprints.Controller;
 
 import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
 import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.BlueprintReadOnlyException;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
 
 @ControllerAdvice
 public class GlobalExceptionHandler {
@@ -22,10 +27,41 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>("Error de persistencia: " + ex.getMessage(), HttpStatus.CONFLICT);
     }
 
+    // Manejo de cambios sobre una persistencia de solo lectura (405)
+    @ExceptionHandler(BlueprintReadOnlyException.class)
+    public ResponseEntity<String> handleReadOnly(BlueprintReadOnlyException ex) {
+        return readOnly(ex);
+    }
+
+    // Manejo de cuerpos que no se pueden leer, en JSON o en formato binario (400)
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    public ResponseEntity<String> handleMessageNotReadable(HttpMessageNotReadableException ex) {
+        return new ResponseEntity<>("Cuerpo invalido: " + ex.getMostSpecificCause().getMessage(), HttpStatus.BAD_REQUEST);
+    }
+
+    // Manejo de cuerpos en un formato que no se acepta, ni JSON ni binario (415)
+    @ExceptionHandler(HttpMediaTypeNotSupportedException.class)
+    public ResponseEntity<String> handleMediaTypeNotSupported(HttpMediaTypeNotSupportedException ex) {
+        return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).headers(h -> h.setAccept(ex.getSupportedMediaTypes()))
+                .body("Formato no soportado: " + ex.getContentType());
+    }
+
+    // Manejo de respuestas que no terminaron a tiempo en los pools de RequestExecutors (503)
+    @ExceptionHandler(AsyncRequestTimeoutException.class)
+    public ResponseEntity<String> handleAsyncRequestTimeout(AsyncRequestTimeoutException ex) {
+        return new ResponseEntity<>("Tiempo de respuesta agotado", HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     // Manejo de cualquier otro error no específico (500)
     @ExceptionHandler(Exception.class)
     public ResponseEntity<String> handleGeneralError(Exception ex) {
         ex.printStackTrace();
         return new ResponseEntity<>("Error interno del servidor", HttpStatus.INTERNAL_SERVER_ERROR);
     }
+
+    // Respuesta a un cambio sobre planos de solo lectura: solo se pueden leer
+    static ResponseEntity<String> readOnly(BlueprintReadOnlyException ex) {
+        return ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED).allow(HttpMethod.GET, HttpMethod.HEAD)
+                .body("Planos de solo lectura: " + ex.getMessage());
+    }
 }
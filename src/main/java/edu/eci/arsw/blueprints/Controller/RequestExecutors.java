@@ -0,0 +1,180 @@
+package edu.eci.arsw.blueprints.Controller;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.Closeable;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the handlers of {@link BlueprintApiController} off the servlet
+ * threads, on a bounded pool for each kind of work, so a burst of one kind
+ * cannot hold up the others:
+ * <ul>
+ *   <li>{@link Pool#READS}: lookups and queries that answer from memory,
+ *       and the newline-delimited JSON listings, which are written to the
+ *       response on the pool thread;</li>
+ *   <li>{@link Pool#WRITES}: saves, updates, patches and deletes;</li>
+ *   <li>{@link Pool#FILTERS}: filtering and simplifying, which take CPU in
+ *       proportion to the points.</li>
+ * </ul>
+ *
+ * Each pool has {@code blueprints.async.<pool>.threads} threads, 0 to size
+ * it from the number of processors, and a queue of at most
+ * {@code blueprints.async.queue} handlers. A handler that does not fit is
+ * not run: the answer is 503 with a Retry-After of
+ * {@code blueprints.async.retry-after-seconds}, so a client backs off instead
+ * of waiting behind the burst.
+ *
+ * The bodies of saves and updates, which hold every point, are read by the
+ * handlers from the request stream, so on the pool too. Patches and lookups
+ * are small, and Spring still reads them on the servlet thread before the
+ * handler is submitted.
+ *
+ * A handler that has not answered {@code blueprints.async.timeout-seconds}
+ * after it was submitted, 0 for never, is answered with 503 by Spring. The
+ * newline-delimited JSON listings answer only once the last line is written,
+ * so the timeout is set here, well above the 30 seconds a container gives by
+ * default, instead of being left to the container.
+ *
+ * With {@code blueprints.async.enabled=false}, the default, the handlers run
+ * on the calling thread and nothing is rejected.
+ */
+@Component
+public class RequestExecutors implements WebMvcConfigurer, Closeable {
+
+    public enum Pool {
+        READS, WRITES, FILTERS
+    }
+
+    public static final int DEFAULT_QUEUE = 256;
+
+    public static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+
+    public static final long DEFAULT_TIMEOUT_SECONDS = 600;
+
+    private final Map<Pool, ThreadPoolExecutor> executors = new EnumMap<>(Pool.class);
+
+    private final int retryAfterSeconds;
+
+    private final long timeoutSeconds;
+
+    /**
+     * Runs every handler on the calling thread.
+     */
+    public RequestExecutors() {
+        this.retryAfterSeconds = DEFAULT_RETRY_AFTER_SECONDS;
+        this.timeoutSeconds = DEFAULT_TIMEOUT_SECONDS;
+    }
+
+    public RequestExecutors(boolean enabled, int readThreads, int writeThreads, int filterThreads, int queue,
+            int retryAfterSeconds) {
+        this(enabled, readThreads, writeThreads, filterThreads, queue, retryAfterSeconds, DEFAULT_TIMEOUT_SECONDS);
+    }
+
+    @Autowired
+    public RequestExecutors(@Value("${blueprints.async.enabled:false}") boolean enabled,
+            @Value("${blueprints.async.reads.threads:0}") int readThreads,
+            @Value("${blueprints.async.writes.threads:0}") int writeThreads,
+            @Value("${blueprints.async.filters.threads:0}") int filterThreads,
+            @Value("${blueprints.async.queue:" + DEFAULT_QUEUE + "}") int queue,
+            @Value("${blueprints.async.retry-after-seconds:" + DEFAULT_RETRY_AFTER_SECONDS + "}") int retryAfterSeconds,
+            @Value("${blueprints.async.timeout-seconds:" + DEFAULT_TIMEOUT_SECONDS + "}") long timeoutSeconds) {
+        if (queue < 1 || retryAfterSeconds < 0) {
+            throw new IllegalArgumentException("Invalid queue " + queue + " or retry after " + retryAfterSeconds);
+        }
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.timeoutSeconds = timeoutSeconds;
+        if (!enabled) {
+            return;
+        }
+        int processors = Runtime.getRuntime().availableProcessors();
+        // Reads mostly wait on the client, writes on the lock or the log, filters on the CPU
+        executors.put(Pool.READS, newPool(Pool.READS, readThreads > 0 ? readThreads : 2 * processors, queue));
+        executors.put(Pool.WRITES, newPool(Pool.WRITES, writeThreads > 0 ? writeThreads : Math.max(1, processors / 2), queue));
+        executors.put(Pool.FILTERS, newPool(Pool.FILTERS, filterThreads > 0 ? filterThreads : processors, queue));
+    }
+
+    public boolean isEnabled() {
+        return !executors.isEmpty();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(timeoutSeconds > 0 ? TimeUnit.SECONDS.toMillis(timeoutSeconds) : -1);
+    }
+
+    /**
+     * Runs a handler on a pool.
+     *
+     * @param pool the pool for the kind of work the handler does
+     * @param handler builds the response; what it throws fails the future, to
+     *    be answered by the exception handlers of the controller
+     * @return the response of the handler, or 503 with Retry-After if the
+     *    pool is full
+     */
+    public <R extends ResponseEntity<?>> CompletableFuture<R> submit(Pool pool, Callable<R> handler) {
+        CompletableFuture<R> response = new CompletableFuture<>();
+        ThreadPoolExecutor executor = executors.get(pool);
+        if (executor == null) {
+            run(handler, response);
+            return response;
+        }
+        try {
+            executor.execute(() -> run(handler, response));
+        } catch (RejectedExecutionException e) {
+            response.complete(busy());
+        }
+        return response;
+    }
+
+    @Override
+    public void close() {
+        for (ThreadPoolExecutor executor : executors.values()) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <R> void run(Callable<R> handler, CompletableFuture<R> response) {
+        try {
+            response.complete(handler.call());
+        } catch (Throwable t) {
+            response.completeExceptionally(t);
+        }
+    }
+
+    /**
+     * The answer has no body, so it fits whatever type of response the
+     * handler builds.
+     */
+    @SuppressWarnings("unchecked")
+    private <R extends ResponseEntity<?>> R busy() {
+        return (R) ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Integer.toString(retryAfterSeconds))
+                .build();
+    }
+
+    private static ThreadPoolExecutor newPool(Pool pool, int threads, int queue) {
+        String prefix = "blueprints-" + pool.name().toLowerCase() + "-";
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queue), r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+}
@@ -0,0 +1,67 @@
+package edu.eci.arsw.blueprints.Controller;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the requests on virtual threads, with
+ * {@code blueprints.virtual-threads.enabled=true}: Tomcat runs each request,
+ * and Spring MVC each streamed response, on a thread of its own that does not
+ * hold a platform thread while it waits, so the number of requests in flight
+ * is bounded by {@code server.tomcat.max-connections} and not by
+ * {@code server.tomcat.threads.max}.
+ *
+ * The project is built for Java 8, so the executor is looked up by
+ * reflection; the application does not start with this property on a JDK
+ * older than 21. The {@code virtual-threads} Maven profile runs it this way.
+ */
+@Configuration
+@ConditionalOnProperty(name = "blueprints.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfiguration implements WebMvcConfigurer, DisposableBean {
+
+    private final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(new TaskExecutorAdapter(executor));
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return an executor that starts a virtual thread for each task
+     * @throws IllegalStateException if the JDK has no virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads need Java 21 or later, this is Java "
+                    + System.getProperty("java.version"), e);
+        } catch (InvocationTargetException e) {
+            // Java 19 and 20 have them only as a preview
+            throw new IllegalStateException("Virtual threads are not available: " + e.getCause().getMessage(),
+                    e.getCause());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
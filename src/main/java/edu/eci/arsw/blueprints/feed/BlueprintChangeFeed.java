@@ -0,0 +1,327 @@
+package edu.eci.arsw.blueprints.feed;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import edu.eci.arsw.blueprints.model.BlueprintChange;
+import edu.eci.arsw.blueprints.persistence.impl.Tuple;
+import edu.eci.arsw.blueprints.services.BlueprintChangeListener;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the changes made through {@link BlueprintsServices} to the STOMP
+ * clients subscribed to them, as JSON {@link BlueprintChange}s:
+ * <ul>
+ *   <li>{@code /feed/blueprints}: every change;</li>
+ *   <li>{@code /feed/blueprints/{author}}: the changes of an author;</li>
+ *   <li>{@code /feed/blueprints/{author}/{name}}: the changes of a blueprint.</li>
+ * </ul>
+ *
+ * Each subscription has its own queue of pending changes, with at most one
+ * change per blueprint: a newer change replaces the pending one, so a client
+ * gets the latest version and not every step in between. The queue is sent
+ * {@code blueprints.feed.coalesce-millis} after its first pending change, on
+ * the feed's own thread; the writer that made the change only adds it to the
+ * queues. A queue holds at most {@code blueprints.feed.max-pending}
+ * blueprints; past that the oldest are dropped, and the client is sent
+ * {@code {"type":"OVERFLOW","dropped":n}} first, to know it must fetch again
+ * what it follows.
+ *
+ * Writers publish after the persistence applied their change, so two changes
+ * of a blueprint may be published in the other order. The feed keeps the
+ * version of the last change it queued for each blueprint, a deletion as a
+ * tombstone, and drops a change older than it: an update or creation whose
+ * version is not newer, or an update after a deletion. Only a creation brings
+ * a deleted blueprint back. The versions take one entry per blueprint ever
+ * changed.
+ */
+@Component
+public class BlueprintChangeFeed implements BlueprintChangeListener, Closeable {
+
+    public static final String DESTINATION = "/feed/blueprints";
+
+    private final MessageChannel clientOutboundChannel;
+
+    private final ObjectWriter writer;
+
+    private final int maxPending;
+
+    private final long coalesceMillis;
+
+    private final ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "blueprints-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Subscriptions by destination, and by session id and subscription id
+    private final ConcurrentMap<String, Set<Subscription>> byDestination = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Tuple<String, String>, Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    // Version of the last change queued for each blueprint, MIN_VALUE once deleted
+    private final ConcurrentMap<Tuple<String, String>, Integer> versions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public BlueprintChangeFeed(BlueprintsServices services,
+            @Qualifier("clientOutboundChannel") MessageChannel clientOutboundChannel, ObjectMapper objectMapper,
+            @Value("${blueprints.feed.max-pending:256}") int maxPending,
+            @Value("${blueprints.feed.coalesce-millis:50}") long coalesceMillis) {
+        this.clientOutboundChannel = clientOutboundChannel;
+        this.writer = objectMapper.writerFor(BlueprintChange.class);
+        this.maxPending = maxPending;
+        this.coalesceMillis = coalesceMillis;
+        services.addChangeListener(this);
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        subscribe(headers.getSessionId(), headers.getSubscriptionId(), headers.getDestination());
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        unsubscribe(headers.getSessionId(), headers.getSubscriptionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        disconnect(event.getSessionId());
+    }
+
+    /**
+     * Starts sending the changes of a destination to a subscription. Other
+     * destinations are ignored.
+     */
+    public void subscribe(String sessionId, String subscriptionId, String destination) {
+        if (destination == null || !(destination.equals(DESTINATION) || destination.startsWith(DESTINATION + "/"))) {
+            return;
+        }
+        Subscription subscription = new Subscription(sessionId, subscriptionId, destination);
+        Subscription old = subscriptions.put(new Tuple<>(sessionId, subscriptionId), subscription);
+        if (old != null) {
+            remove(old);
+        }
+        byDestination.computeIfAbsent(destination, d -> ConcurrentHashMap.newKeySet()).add(subscription);
+    }
+
+    public void unsubscribe(String sessionId, String subscriptionId) {
+        Subscription subscription = subscriptions.remove(new Tuple<>(sessionId, subscriptionId));
+        if (subscription != null) {
+            remove(subscription);
+        }
+    }
+
+    public void disconnect(String sessionId) {
+        for (Iterator<Subscription> it = subscriptions.values().iterator(); it.hasNext();) {
+            Subscription subscription = it.next();
+            if (subscription.sessionId.equals(sessionId)) {
+                it.remove();
+                remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * Adds the change to the queues of the subscriptions that follow it,
+     * unless a newer change of the blueprint was queued already. Never blocks
+     * on a client.
+     */
+    @Override
+    public void changed(BlueprintChange change) {
+        Encoded encoded = new Encoded(change);
+        // Queued inside the update of the version, so changes of a blueprint are queued in version order
+        versions.compute(new Tuple<>(change.getAuthor(), change.getName()), (key, last) -> {
+            if (last != null && !newer(encoded, last)) {
+                return last;
+            }
+            offer(DESTINATION, encoded);
+            offer(DESTINATION + "/" + change.getAuthor(), encoded);
+            offer(DESTINATION + "/" + change.getAuthor() + "/" + change.getName(), encoded);
+            return encoded.version();
+        });
+    }
+
+    private static boolean newer(Encoded change, int last) {
+        switch (change.change.getType()) {
+            case DELETED:
+                return true;
+            case CREATED:
+                return last == Integer.MIN_VALUE || change.version() > last;
+            default:
+                return last != Integer.MIN_VALUE && change.version() > last;
+        }
+    }
+
+    /**
+     * Stops sending. Pending changes are dropped.
+     */
+    @Override
+    public void close() {
+        sender.shutdownNow();
+    }
+
+    private void offer(String destination, Encoded change) {
+        Set<Subscription> followers = byDestination.get(destination);
+        if (followers != null) {
+            for (Subscription subscription : followers) {
+                subscription.offer(change);
+            }
+        }
+    }
+
+    private void remove(Subscription subscription) {
+        subscription.close();
+        byDestination.computeIfPresent(subscription.destination, (d, set) -> {
+            set.remove(subscription);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private void send(Subscription subscription, byte[] payload) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        headers.setSessionId(subscription.sessionId);
+        headers.setSubscriptionId(subscription.subscriptionId);
+        headers.setDestination(subscription.destination);
+        headers.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        headers.setLeaveMutable(true);
+        clientOutboundChannel.send(MessageBuilder.createMessage(payload, headers.getMessageHeaders()));
+    }
+
+    /**
+     * A change and its JSON, written once for all the subscriptions that get
+     * it, by the first one sent.
+     */
+    private final class Encoded {
+
+        final BlueprintChange change;
+
+        private volatile byte[] json;
+
+        Encoded(BlueprintChange change) {
+            this.change = change;
+        }
+
+        int version() {
+            return change.getBlueprint() == null ? Integer.MIN_VALUE : change.getBlueprint().getVersion();
+        }
+
+        byte[] json() {
+            byte[] bytes = json;
+            if (bytes == null) {
+                try {
+                    bytes = writer.writeValueAsBytes(change);
+                } catch (JsonProcessingException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+                json = bytes;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * One subscription of one client, with its queue. The queue fields are
+     * guarded by the subscription itself.
+     */
+    private final class Subscription {
+
+        final String sessionId;
+
+        final String subscriptionId;
+
+        final String destination;
+
+        private Map<Tuple<String, String>, Encoded> pending = new LinkedHashMap<>();
+
+        private long dropped;
+
+        private boolean scheduled;
+
+        private boolean closed;
+
+        Subscription(String sessionId, String subscriptionId, String destination) {
+            this.sessionId = sessionId;
+            this.subscriptionId = subscriptionId;
+            this.destination = destination;
+        }
+
+        synchronized void offer(Encoded change) {
+            if (closed) {
+                return;
+            }
+            Tuple<String, String> key = new Tuple<>(change.change.getAuthor(), change.change.getName());
+            if (!pending.containsKey(key) && pending.size() >= maxPending) {
+                Iterator<Encoded> eldest = pending.values().iterator();
+                eldest.next();
+                eldest.remove();
+                dropped++;
+            }
+            // Changes arrive in version order, the newer one replaces the pending one in its place
+            pending.put(key, change);
+            if (!scheduled) {
+                scheduled = true;
+                try {
+                    sender.schedule(this::flush, coalesceMillis, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException ex) {
+                    // the feed is closed
+                }
+            }
+        }
+
+        synchronized void close() {
+            closed = true;
+            pending.clear();
+        }
+
+        private void flush() {
+            Map<Tuple<String, String>, Encoded> changes;
+            long lost;
+            synchronized (this) {
+                changes = pending;
+                lost = dropped;
+                pending = new LinkedHashMap<>();
+                dropped = 0;
+                scheduled = false;
+                if (closed) {
+                    return;
+                }
+            }
+            if (lost > 0) {
+                send(this, ("{\"type\":\"OVERFLOW\",\"dropped\":" + lost + "}").getBytes(StandardCharsets.UTF_8));
+            }
+            for (Encoded change : changes.values()) {
+                send(this, change.json());
+            }
+        }
+    }
+}
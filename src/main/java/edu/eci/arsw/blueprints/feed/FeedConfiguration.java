@@ -0,0 +1,50 @@
+package edu.eci.arsw.blueprints.feed;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+/**
+ * STOMP over WebSocket at {@code /ws}, for the {@link BlueprintChangeFeed}.
+ *
+ * Clients only subscribe: the feed delivers to each subscription itself, and
+ * a SEND from a client is rejected, so nobody can publish changes that did not
+ * happen. The simple broker is only there to accept the subscriptions to
+ * {@value BlueprintChangeFeed#DESTINATION}.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class FeedConfiguration implements WebSocketMessageBrokerConfigurer {
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws").setAllowedOrigins("http://localhost:3000");
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker(BlueprintChangeFeed.DESTINATION);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) == SimpMessageType.MESSAGE) {
+                    throw new MessageDeliveryException(message, "The blueprint change feed is read-only");
+                }
+                return message;
+            }
+        });
+    }
+}
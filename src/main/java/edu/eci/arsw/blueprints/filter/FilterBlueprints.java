@@ -6,4 +6,73 @@ import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
 public interface FilterBlueprints {
 
     public void filterBlueprint(Blueprint bp) throws BlueprintPersistenceException;
+
+    /**
+     * Filters a copy of the blueprint, leaving the given one untouched.
+     *
+     * @param bp the blueprint to filter
+     * @return a filtered copy of the blueprint, at the same version
+     * @throws BlueprintPersistenceException if the blueprint cannot be filtered
+     */
+    public default Blueprint filteredCopy(Blueprint bp) throws BlueprintPersistenceException {
+        Blueprint copy = bp.copyAs(bp.getAuthor(), bp.getName());
+        int[] coordinates = bp.copyCoordinates();
+        copy.replacePoints(coordinates, filterPacked(coordinates, bp.pointCount()));
+        return copy;
+    }
+
+    /**
+     * Filters packed coordinates in place: the kept points are moved, in
+     * order, to the start of the array.
+     *
+     * @param coordinates packed coordinates x0, y0, x1, y1, ...
+     * @param pointCount number of points in the array
+     * @return the number of points kept
+     * @throws BlueprintPersistenceException if the points cannot be filtered
+     */
+    public default int filterPacked(int[] coordinates, int pointCount) throws BlueprintPersistenceException {
+        PointStage stage = newStage();
+        if (stage == null) {
+            Blueprint bp = new Blueprint();
+            bp.replacePoints(coordinates, pointCount);
+            filterBlueprint(bp);
+            for (int i = 0; i < bp.pointCount(); i++) {
+                coordinates[2 * i] = bp.xAt(i);
+                coordinates[2 * i + 1] = bp.yAt(i);
+            }
+            return bp.pointCount();
+        }
+        int kept = 0;
+        for (int i = 0; i < pointCount; i++) {
+            int x = coordinates[2 * i];
+            int y = coordinates[2 * i + 1];
+            if (stage.accept(x, y)) {
+                coordinates[2 * kept] = x;
+                coordinates[2 * kept + 1] = y;
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return a new stage that applies this filter one point at a time, or null
+     *    if the filter needs to see the whole blueprint at once
+     */
+    public default PointStage newStage() {
+        return null;
+    }
+
+    /**
+     * Creates a stage that starts in the middle of a blueprint, in the same
+     * state it would be in after the points before start. This lets a filter
+     * process chunks of a blueprint in parallel.
+     *
+     * @param coordinates the packed coordinates of the whole blueprint
+     * @param start the index of the first point the stage will see
+     * @return the stage, or null if the filter cannot start mid-blueprint
+     */
+    public default PointStage newStage(int[] coordinates, int start) {
+        return null;
+    }
 }
@@ -0,0 +1,172 @@
+package edu.eci.arsw.blueprints.filter;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Applies a chain of {@link FilterBlueprints}, chosen by bean name, to a
+ * blueprint.
+ *
+ * Consecutive filters that work point by point ({@link FilterBlueprints#newStage()})
+ * run together in a single pass over the packed coordinates: each point goes
+ * through the stages in order until one drops it, and the kept points are
+ * compacted in place. No list is built between stages. Filters that need the
+ * whole blueprint run on their own between those passes.
+ *
+ * On large blueprints, if the first filter of a pass can start in the middle of
+ * a blueprint, it runs over chunks of the points in parallel on the common
+ * {@link ForkJoinPool}; the rest of the pass then runs over the points it kept.
+ */
+@Service
+public class FilterPipeline {
+
+    static final int PARALLEL_THRESHOLD = 1 << 16;
+
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    private final Map<String, FilterBlueprints> filters;
+
+    public FilterPipeline(Map<String, FilterBlueprints> filters) {
+        this.filters = Collections.unmodifiableMap(new TreeMap<>(filters));
+    }
+
+    /**
+     * @return the names the filters can be chosen by
+     */
+    public Set<String> getFilterNames() {
+        return filters.keySet();
+    }
+
+    /**
+     * @param bp the blueprint to filter; it is not changed
+     * @param filterNames the names of the filters to apply, in order
+     * @return a filtered copy of the blueprint, at the same version
+     * @throws IllegalArgumentException if a filter name is unknown
+     * @throws BlueprintPersistenceException if a filter fails
+     */
+    public Blueprint apply(Blueprint bp, List<String> filterNames) throws BlueprintPersistenceException {
+        List<FilterBlueprints> chain = new ArrayList<>(filterNames.size());
+        for (String name : filterNames) {
+            FilterBlueprints filter = filters.get(name);
+            if (filter == null) {
+                throw new IllegalArgumentException("Unknown filter: " + name + ", available filters: " + filters.keySet());
+            }
+            chain.add(filter);
+        }
+
+        Blueprint result = bp.copyAs(bp.getAuthor(), bp.getName());
+        int[] coordinates = bp.copyCoordinates();
+        int count = bp.pointCount();
+        int from = 0;
+        while (from < chain.size()) {
+            if (chain.get(from).newStage() == null) {
+                result.replacePoints(coordinates, count);
+                chain.get(from).filterBlueprint(result);
+                coordinates = result.copyCoordinates();
+                count = result.pointCount();
+                from++;
+            } else {
+                int to = from;
+                while (to < chain.size() && chain.get(to).newStage() != null) {
+                    to++;
+                }
+                count = runPass(chain.subList(from, to), coordinates, count);
+                from = to;
+            }
+        }
+        result.replacePoints(coordinates, count);
+        return result;
+    }
+
+    /**
+     * Runs point-by-point filters in one pass, compacting the kept points to
+     * the start of the array.
+     *
+     * @return the number of points kept
+     */
+    private static int runPass(List<FilterBlueprints> pass, int[] coordinates, int count) throws BlueprintPersistenceException {
+        if (pass.size() == 1 && count < PARALLEL_THRESHOLD) {
+            return pass.get(0).filterPacked(coordinates, count);
+        }
+        boolean[] keptByFirst = null;
+        int firstSequential = 0;
+        if (count >= PARALLEL_THRESHOLD && pass.get(0).newStage(coordinates, 0) != null) {
+            keptByFirst = new boolean[count];
+            ForkJoinPool.commonPool().invoke(new FirstStageTask(pass.get(0), coordinates, keptByFirst, 0, count));
+            firstSequential = 1;
+        }
+
+        PointStage[] stages = new PointStage[pass.size() - firstSequential];
+        for (int s = 0; s < stages.length; s++) {
+            stages[s] = pass.get(s + firstSequential).newStage();
+        }
+
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (keptByFirst != null && !keptByFirst[i]) {
+                continue;
+            }
+            int x = coordinates[2 * i];
+            int y = coordinates[2 * i + 1];
+            boolean keep = true;
+            for (int s = 0; keep && s < stages.length; s++) {
+                keep = stages[s].accept(x, y);
+            }
+            if (keep) {
+                coordinates[2 * kept] = x;
+                coordinates[2 * kept + 1] = y;
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Applies the first filter of a pass to a range of points, splitting the
+     * range in chunks that run in parallel.
+     */
+    private static final class FirstStageTask extends RecursiveAction {
+
+        private final FilterBlueprints filter;
+
+        private final int[] coordinates;
+
+        private final boolean[] kept;
+
+        private final int from;
+
+        private final int to;
+
+        FirstStageTask(FilterBlueprints filter, int[] coordinates, boolean[] kept, int from, int to) {
+            this.filter = filter;
+            this.coordinates = coordinates;
+            this.kept = kept;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                PointStage stage = filter.newStage(coordinates, from);
+                for (int i = from; i < to; i++) {
+                    kept[i] = stage.accept(coordinates[2 * i], coordinates[2 * i + 1]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new FirstStageTask(filter, coordinates, kept, from, middle),
+                    new FirstStageTask(filter, coordinates, kept, middle, to));
+        }
+    }
+}
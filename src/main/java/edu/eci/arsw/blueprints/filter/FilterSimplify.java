@@ -0,0 +1,136 @@
+package edu.eci.arsw.blueprints.filter;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+
+/**
+ * Simplification filter: drops the points that do not change the shape of the
+ * drawing by more than a tolerance, with the Douglas-Peucker algorithm.
+ *
+ * The first and last points are kept. Between two kept points, the point
+ * farthest from the segment joining them is kept if it is farther than the
+ * tolerance, and the two halves are simplified the same way; otherwise every
+ * point between them is dropped. So no dropped point is farther than the
+ * tolerance from the simplified drawing, and points along a straight stroke
+ * go first. The tolerance is set with {@code blueprints.simplify.tolerance},
+ * in the units of the coordinates.
+ */
+@Service("simplify")
+public class FilterSimplify implements FilterBlueprints{
+
+    public static final double DEFAULT_TOLERANCE = 2.0;
+
+    private final double tolerance;
+
+    public FilterSimplify(){
+        this(DEFAULT_TOLERANCE);
+    }
+
+    @Autowired
+    public FilterSimplify(@Value("${blueprints.simplify.tolerance:" + DEFAULT_TOLERANCE + "}") double tolerance){
+        if (tolerance < 0 || Double.isNaN(tolerance)) {
+            throw new IllegalArgumentException("Invalid tolerance: " + tolerance);
+        }
+        this.tolerance = tolerance;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    @Override
+    public void filterBlueprint(Blueprint bp) {
+        int[] coordinates = bp.copyCoordinates();
+        bp.replacePoints(coordinates, filterPacked(coordinates, bp.pointCount()));
+    }
+
+    @Override
+    public int filterPacked(int[] coordinates, int pointCount) {
+        return simplify(coordinates, pointCount, tolerance);
+    }
+
+    /**
+     * Simplifies packed coordinates in place: the kept points are moved, in
+     * order, to the start of the array. The ranges still to split are kept on
+     * an explicit stack, so a long drawing does not recurse deeply.
+     *
+     * @param coordinates packed coordinates x0, y0, x1, y1, ...
+     * @param pointCount number of points in the array
+     * @param tolerance the largest distance a dropped point may be from the
+     *    simplified drawing
+     * @return the number of points kept
+     */
+    public static int simplify(int[] coordinates, int pointCount, double tolerance) {
+        if (pointCount <= 2) {
+            return pointCount;
+        }
+        double maxDistance = tolerance * tolerance;
+        boolean[] keep = new boolean[pointCount];
+        keep[0] = true;
+        keep[pointCount - 1] = true;
+        int[] ranges = new int[64];
+        int top = 0;
+        ranges[top++] = 0;
+        ranges[top++] = pointCount - 1;
+        while (top > 0) {
+            int last = ranges[--top];
+            int first = ranges[--top];
+            int farthest = -1;
+            double farthestDistance = maxDistance;
+            for (int i = first + 1; i < last; i++) {
+                double d = distanceSquared(coordinates, i, first, last);
+                if (d > farthestDistance) {
+                    farthest = i;
+                    farthestDistance = d;
+                }
+            }
+            if (farthest < 0) {
+                continue;
+            }
+            keep[farthest] = true;
+            if (top + 4 > ranges.length) {
+                ranges = Arrays.copyOf(ranges, 2 * ranges.length);
+            }
+            if (farthest - first > 1) {
+                ranges[top++] = first;
+                ranges[top++] = farthest;
+            }
+            if (last - farthest > 1) {
+                ranges[top++] = farthest;
+                ranges[top++] = last;
+            }
+        }
+        int kept = 0;
+        for (int i = 0; i < pointCount; i++) {
+            if (keep[i]) {
+                coordinates[2 * kept] = coordinates[2 * i];
+                coordinates[2 * kept + 1] = coordinates[2 * i + 1];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return the squared distance from point p to the segment between points
+     *    a and b
+     */
+    private static double distanceSquared(int[] coordinates, int p, int a, int b) {
+        double px = coordinates[2 * p];
+        double py = coordinates[2 * p + 1];
+        double ax = coordinates[2 * a];
+        double ay = coordinates[2 * a + 1];
+        double dx = coordinates[2 * b] - ax;
+        double dy = coordinates[2 * b + 1] - ay;
+        double length = dx * dx + dy * dy;
+        double t = length == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / length;
+        t = Math.max(0, Math.min(1, t));
+        double ex = ax + t * dx - px;
+        double ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+}
@@ -1,15 +1,14 @@
 package edu.eci.arsw.blueprints.filter;
 
 import edu.eci.arsw.blueprints.model.Blueprint;
-import edu.eci.arsw.blueprints.model.Point;
 import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
 import org.springframework.stereotype.Service;
 
-import java.awt.*;
-import java.util.ArrayList;
-import java.util.List;
-
-
+/**
+ * Subsampling filter: drops one of every two points, keeping the points at odd
+ * positions.
+ */
+@Service("subsample")
 public class FilterSuprimePoints implements FilterBlueprints{
 
     public FilterSuprimePoints(){
@@ -17,15 +16,46 @@ public class FilterSuprimePoints implements FilterBlueprints{
     }
     @Override
     public void filterBlueprint(Blueprint bp) throws BlueprintPersistenceException {
-        List<Point> points = bp.getPoints();
-        List<Point> resPoints = new ArrayList<>();
+        int[] coordinates = bp.copyCoordinates();
+        bp.replacePoints(coordinates, filterPacked(coordinates, bp.pointCount()));
+    }
+
+    /**
+     * Keeps the points at odd positions, moving them to the start of the
+     * array. No objects are allocated.
+     */
+    @Override
+    public int filterPacked(int[] coordinates, int pointCount) {
+        int kept = 0;
+        for (int i = 1; i < pointCount; i += 2) {
+            coordinates[2 * kept] = coordinates[2 * i];
+            coordinates[2 * kept + 1] = coordinates[2 * i + 1];
+            kept++;
+        }
+        return kept;
+    }
+
+    @Override
+    public PointStage newStage() {
+        return new Stage(0);
+    }
+
+    @Override
+    public PointStage newStage(int[] coordinates, int start) {
+        return new Stage(start);
+    }
+
+    private static final class Stage implements PointStage {
 
-        for (int i = 0; i < points.size(); i++) {
-            if (!(i % 2 == 0)) {
-                resPoints.add(points.get(i));
-            }
+        private int index;
+
+        Stage(int index) {
+            this.index = index;
         }
 
-        bp.setPoints(resPoints);
+        @Override
+        public boolean accept(int x, int y) {
+            return index++ % 2 != 0;
+        }
     }
 }
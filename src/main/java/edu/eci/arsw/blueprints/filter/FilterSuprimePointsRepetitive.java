@@ -1,39 +1,88 @@
 package edu.eci.arsw.blueprints.filter;
 
 import edu.eci.arsw.blueprints.model.Blueprint;
-import edu.eci.arsw.blueprints.model.Point;
-import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
-
-@Service
+/**
+ * Redundancy filter: drops the points that repeat the previous point. This is
+ * the default filter of the application.
+ */
+@Primary
+@Service("redundancy")
 public class FilterSuprimePointsRepetitive implements FilterBlueprints{
 
     public FilterSuprimePointsRepetitive(){
 
     }
     public void filterBlueprint(Blueprint bp) {
-        List<Point> points = bp.getPoints();
-        if (points == null || points.size() <= 1) {
-            return; // Si no hay puntos o solo hay uno, no hay redundancias que filtrar
-        }
+        int[] coordinates = bp.copyCoordinates();
+        bp.replacePoints(coordinates, filterPacked(coordinates, bp.pointCount()));
+    }
 
-        List<Point> filteredPoints = new ArrayList<>();
-        Point previousPoint = points.get(0); // El primer punto siempre se incluye
-        filteredPoints.add(previousPoint);
+    /**
+     * Drops the points that repeat the previous point, moving the kept ones to
+     * the start of the array. No objects are allocated.
+     */
+    @Override
+    public int filterPacked(int[] coordinates, int pointCount) {
+        if (pointCount <= 1) {
+            return pointCount; // Si no hay puntos o solo hay uno, no hay redundancias que filtrar
+        }
 
-        for (int i = 1; i < points.size(); i++) {
-            Point currentPoint = points.get(i);
+        int kept = 1; // El primer punto siempre se incluye
+        int previousX = coordinates[0];
+        int previousY = coordinates[1];
+        for (int i = 1; i < pointCount; i++) {
+            int x = coordinates[2 * i];
+            int y = coordinates[2 * i + 1];
             // Solo agregar el punto si es diferente al anterior
-            if (currentPoint.getX() != previousPoint.getX() && currentPoint.getY() != previousPoint.getY()) {
-                filteredPoints.add(currentPoint);
+            if (x != previousX && y != previousY) {
+                coordinates[2 * kept] = x;
+                coordinates[2 * kept + 1] = y;
+                kept++;
             }
-            previousPoint = currentPoint;
+            previousX = x;
+            previousY = y;
         }
+        return kept;
+    }
 
-        bp.setPoints(filteredPoints);
+    @Override
+    public PointStage newStage() {
+        return new Stage();
+    }
+
+    @Override
+    public PointStage newStage(int[] coordinates, int start) {
+        Stage stage = new Stage();
+        if (start > 0) {
+            stage.seen(coordinates[2 * (start - 1)], coordinates[2 * (start - 1) + 1]);
+        }
+        return stage;
+    }
+
+    private static final class Stage implements PointStage {
+
+        private boolean first = true;
+
+        private int previousX;
+
+        private int previousY;
+
+        void seen(int x, int y) {
+            first = false;
+            previousX = x;
+            previousY = y;
+        }
+
+        @Override
+        public boolean accept(int x, int y) {
+            // Igual que filterBlueprint: se compara con el punto anterior de la entrada
+            boolean keep = first || (x != previousX && y != previousY);
+            seen(x, y);
+            return keep;
+        }
     }
 
 }
@@ -0,0 +1,17 @@
+package edu.eci.arsw.blueprints.filter;
+
+/**
+ * One filter applied to a stream of points, one point at a time.
+ *
+ * A stage is created for a single pass over a blueprint and may keep state
+ * between points, like the position of the point or the previous point.
+ */
+public interface PointStage {
+
+    /**
+     * @param x the x coordinate of the next point of this stage's input
+     * @param y the y coordinate of the next point of this stage's input
+     * @return true to keep the point, false to drop it
+     */
+    public boolean accept(int x, int y);
+}
@@ -1,37 +1,56 @@
 
 package edu.eci.arsw.blueprints.model;
 
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.AbstractList;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 
 
 public class Blueprint {
 
+    private static final int[] NO_COORDINATES = new int[0];
+
     private String author=null;
-    
-    private List<Point> points=null;
-    
+
+    // Coordenadas empaquetadas x0,y0,x1,y1,... ; las de los pointCount puntos nunca se modifican una vez asignadas
+    private int[] coordinates=NO_COORDINATES;
+
+    // Si este plano puede escribir en el espacio libre del arreglo después de sus puntos; ver withAppendedPoints
+    private boolean ownsSpareRoom;
+
+    private int pointCount=0;
+
     private String name=null;
 
     private int version; // nuevo campo para control de versiones
-            
+
+    private int hash; // hash de autor y nombre, calculado al primer uso
+
+    private volatile long contentHash; // hash de los puntos, calculado al primer uso; 0 si hay que recalcularlo. volatile: un long puede leerse a medias
+
+    private volatile int[] bounds; // caja de los puntos, calculada al primer uso; null si hay que recalcularla
+
     public Blueprint(String author,String name,Point[] pnts){
         this.author=author;
         this.name=name;
-        points=Arrays.asList(pnts);
+        coordinates=new int[pnts.length*2];
+        for (int i=0;i<pnts.length;i++){
+            coordinates[2*i]=pnts[i].getX();
+            coordinates[2*i+1]=pnts[i].getY();
+        }
+        pointCount=pnts.length;
         this.version = 0;
     }
-         
+
     public Blueprint(String author, String name){
+        this.author=author;
         this.name=name;
-        points=new ArrayList<>();
     }
 
     public Blueprint() {
-    }    
-    
+    }
+
     public String getName() {
         return name;
     }
@@ -39,27 +58,258 @@ public class Blueprint {
     public String getAuthor() {
         return author;
     }
-    
+
+    /**
+     * @return a read-only view of the points of this blueprint. Each
+     *    {@link Point} is created on access from the packed coordinates.
+     */
     public List<Point> getPoints() {
-        return points;
+        return new PointList(coordinates, pointCount);
+    }
+
+    public int pointCount() {
+        return pointCount;
+    }
+
+    public int xAt(int index) {
+        checkIndex(index);
+        return coordinates[2*index];
+    }
+
+    public int yAt(int index) {
+        checkIndex(index);
+        return coordinates[2*index+1];
     }
-    
-    public void addPoint(Point p){
-        this.points.add(p);
+
+    /**
+     * Adds a point after the others. The coordinates grow with spare room, as
+     * in {@link #withAppendedPoints(int[], int)}, so adding points one at a
+     * time does not copy them all on every call; the room is written in
+     * place only while this blueprint owns it. The whole append holds the
+     * same lock as {@link #withAppendedPoints(int[], int)}, so the two never
+     * write the same spare room.
+     */
+    public synchronized void addPoint(Point p){
+        if (!ownsSpareRoom || 2*(pointCount+1)>coordinates.length) {
+            int[] newCoordinates=new int[2*(pointCount+(pointCount>>1)+8)];
+            System.arraycopy(coordinates, 0, newCoordinates, 0, 2*pointCount);
+            coordinates=newCoordinates;
+            ownsSpareRoom=true;
+        }
+        coordinates[2*pointCount]=p.getX();
+        coordinates[2*pointCount+1]=p.getY();
+        pointCount++;
+        contentHash=0;
+        bounds=null;
     }
 
     public void setPoints(List<Point> NewPoints) {
-        points = NewPoints;
+        int[] newCoordinates=new int[NewPoints.size()*2];
+        int i=0;
+        for (Point p : NewPoints){
+            newCoordinates[i++]=p.getX();
+            newCoordinates[i++]=p.getY();
+        }
+        coordinates=newCoordinates;
+        pointCount=NewPoints.size();
+        contentHash=0;
+        bounds=null;
+        ownsSpareRoom=false;
+    }
+
+    /**
+     * @return a new array with the packed coordinates of this blueprint,
+     *    x0, y0, x1, y1, ...; the caller may modify it
+     */
+    public int[] copyCoordinates() {
+        return copyCoordinates(pointCount);
+    }
+
+    /**
+     * @param capacity the number of points the copy must have room for; at
+     *    least the number of points of this blueprint
+     * @return a new array with the packed coordinates of this blueprint
+     *    followed by room for capacity points in all; the caller may modify it
+     */
+    public int[] copyCoordinates(int capacity) {
+        int[] copy=new int[2*Math.max(capacity, pointCount)];
+        System.arraycopy(coordinates, 0, copy, 0, 2*pointCount);
+        return copy;
+    }
+
+    /**
+     * Replaces the points with the first pointCount points of a packed
+     * coordinates array. The blueprint takes ownership of the array, so the
+     * caller must not modify it afterwards.
+     *
+     * @param packedCoordinates coordinates x0, y0, x1, y1, ...
+     * @param pointCount number of points to take from the array
+     */
+    public void replacePoints(int[] packedCoordinates, int pointCount) {
+        if (pointCount<0 || 2*pointCount>packedCoordinates.length) {
+            throw new IllegalArgumentException("Invalid point count: " + pointCount);
+        }
+        this.coordinates=packedCoordinates;
+        this.pointCount=pointCount;
+        this.contentHash=0;
+        this.bounds=null;
+        this.ownsSpareRoom=false;
+    }
+
+    /**
+     * @param author the author of the copy
+     * @param name the name of the copy
+     * @return a copy of this blueprint, at the same version, under the given
+     *    author and name. The copy shares the packed coordinates of this one.
+     */
+    public Blueprint copyAs(String author, String name) {
+        Blueprint copy=new Blueprint();
+        copy.author=author;
+        copy.name=name;
+        copy.coordinates=coordinates;
+        copy.pointCount=pointCount;
+        copy.version=version;
+        copy.contentHash=contentHash;
+        copy.bounds=bounds;
+        return copy;
+    }
+
+    /**
+     * Appends points to a copy of this blueprint, at the same version and
+     * under the same author and name; this blueprint does not change.
+     *
+     * The copy is made with spare room after its points. The first blueprint
+     * appended to such a copy writes into that room and shares the array, so
+     * a drawing that grows by a few points at a time is not copied on every
+     * append. Only one successor may take the room, so a second append to
+     * the same blueprint, or an append to a blueprint made otherwise, copies
+     * the points instead.
+     *
+     * @param packedCoordinates coordinates x0, y0, x1, y1, ... of the new points
+     * @param count number of points to take from the array
+     * @return the blueprint with the new points after these
+     */
+    public Blueprint withAppendedPoints(int[] packedCoordinates, int count) {
+        if (count<0 || 2*count>packedCoordinates.length) {
+            throw new IllegalArgumentException("Invalid point count: " + count);
+        }
+        // Los puntos y la caja se leen bajo el mismo candado que addPoint
+        int base;
+        int[] target;
+        int[] box;
+        synchronized (this) {
+            base=pointCount;
+            box=bounds;
+            if (ownsSpareRoom && 2*(base+count)<=coordinates.length) {
+                target=coordinates;
+                ownsSpareRoom=false;
+            } else {
+                target=new int[2*Math.max(base+count, base+(base>>1)+8)];
+                System.arraycopy(coordinates, 0, target, 0, 2*base);
+            }
+        }
+        System.arraycopy(packedCoordinates, 0, target, 2*base, 2*count);
+        Blueprint copy=copyAs(author, name);
+        copy.coordinates=target;
+        copy.pointCount=base+count;
+        copy.contentHash=0;
+        copy.ownsSpareRoom=true;
+        if (box!=null && count>0) {
+            // La caja crece con los puntos nuevos sin volver a recorrer los anteriores
+            box=box.clone();
+            for (int i=0;i<count;i++){
+                extend(box, packedCoordinates[2*i], packedCoordinates[2*i+1]);
+            }
+        }
+        copy.bounds=base==0 ? null : box;
+        return copy;
+    }
+
+    /**
+     * @return the bounding box of the points, as {minX, minY, maxX, maxY}, or
+     *    null if the blueprint has no points. It is cached until the points
+     *    change, and carried over to copies and appends.
+     */
+    public int[] bounds() {
+        if (pointCount==0) {
+            return null;
+        }
+        int[] box=bounds;
+        if (box==null) {
+            box=new int[] {coordinates[0], coordinates[1], coordinates[0], coordinates[1]};
+            for (int i=1;i<pointCount;i++){
+                extend(box, coordinates[2*i], coordinates[2*i+1]);
+            }
+            bounds=box;
+        }
+        return box.clone();
+    }
+
+    private static void extend(int[] box, int x, int y) {
+        box[0]=Math.min(box[0], x);
+        box[1]=Math.min(box[1], y);
+        box[2]=Math.max(box[2], x);
+        box[3]=Math.max(box[3], y);
+    }
+
+    /**
+     * @param x the x coordinate of the position
+     * @param y the y coordinate of the position
+     * @return the squared distance from the position to the closest point of
+     *    this blueprint, or {@link Long#MAX_VALUE} if it has no points
+     */
+    public long distanceSquaredTo(int x, int y) {
+        long best=Long.MAX_VALUE;
+        for (int i=0;i<pointCount;i++){
+            long dx=(long) coordinates[2*i]-x;
+            long dy=(long) coordinates[2*i+1]-y;
+            best=Math.min(best, dx*dx+dy*dy);
+        }
+        return best;
+    }
+
+    /**
+     * A 64-bit hash of the points, so two blueprints with different points
+     * almost never share it. It does not include the author, the name or the
+     * version, and it is cached until the points change.
+     *
+     * @return the hash of the points of this blueprint
+     */
+    public long contentHash() {
+        long h = contentHash;
+        if (h == 0) {
+            h = pointCount;
+            for (int i=0;i<2*pointCount;i++){
+                h = (h ^ coordinates[i]) * 0x9E3779B97F4A7C15L;
+                h ^= h >>> 29;
+            }
+            if (h == 0) {
+                h = 1;
+            }
+            contentHash = h;
+        }
+        return h;
     }
 
     @Override
     public String toString() {
-        return "Blueprint{" + "author=" + author + ", name=" + name + '}' + "points=" + points; }
+        return "Blueprint{" + "author=" + author + ", name=" + name + '}' + "points=" + getPoints(); }
 
+    /**
+     * A blueprint is identified by its author and name, so the hash only uses
+     * those two fields. It is consistent with {@link #equals(Object)}, which
+     * also compares the points. The hash is cached after the first call.
+     */
     @Override
     public int hashCode() {
-        int hash = 7;
-        return hash;
+        int h = hash;
+        if (h == 0) {
+            h = 7;
+            h = 31 * h + Objects.hashCode(author);
+            h = 31 * h + Objects.hashCode(name);
+            hash = h;
+        }
+        return h;
     }
 
     @Override
@@ -80,15 +330,15 @@ public class Blueprint {
         if (!Objects.equals(this.name, other.name)) {
             return false;
         }
-        if (this.points.size()!=other.points.size()){
+        if (this.pointCount!=other.pointCount){
             return false;
         }
-        for (int i=0;i<this.points.size();i++){
-            if (this.points.get(i)!=other.points.get(i)){
+        for (int i=0;i<2*this.pointCount;i++){
+            if (this.coordinates[i]!=other.coordinates[i]){
                 return false;
             }
         }
-        
+
         return true;
     }
 
@@ -100,7 +350,39 @@ public class Blueprint {
     public void setVersion(int version) {
         this.version = version;
     }
-    
-    
-    
+
+    private void checkIndex(int index) {
+        if (index<0 || index>=pointCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + pointCount);
+        }
+    }
+
+    /**
+     * Read-only list of points backed by a packed coordinates array.
+     */
+    private static final class PointList extends AbstractList<Point> implements RandomAccess {
+
+        private final int[] coordinates;
+
+        private final int size;
+
+        PointList(int[] coordinates, int size) {
+            this.coordinates = coordinates;
+            this.size = size;
+        }
+
+        @Override
+        public Point get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return new Point(coordinates[2 * index], coordinates[2 * index + 1]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
 }
@@ -0,0 +1,42 @@
+package edu.eci.arsw.blueprints.model;
+
+/**
+ * What happened to one blueprint of a batch, with the HTTP status it would
+ * have got on its own.
+ */
+public class BlueprintBatchResult {
+
+    private final String author;
+
+    private final String name;
+
+    private final int status;
+
+    private final String message;
+
+    public BlueprintBatchResult(String author, String name, int status, String message) {
+        this.author = author;
+        this.name = name;
+        this.status = status;
+        this.message = message;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return why the blueprint was rejected, or null if it was saved
+     */
+    public String getMessage() {
+        return message;
+    }
+}
@@ -0,0 +1,59 @@
+package edu.eci.arsw.blueprints.model;
+
+/**
+ * A change to one blueprint, as published to the subscribers of the change
+ * feed.
+ */
+public class BlueprintChange {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final Type type;
+
+    private final String author;
+
+    private final String name;
+
+    private final Blueprint blueprint;
+
+    public BlueprintChange(Type type, String author, String name, Blueprint blueprint) {
+        this.type = type;
+        this.author = author;
+        this.name = name;
+        this.blueprint = blueprint;
+    }
+
+    public static BlueprintChange created(Blueprint bp) {
+        return new BlueprintChange(Type.CREATED, bp.getAuthor(), bp.getName(), bp);
+    }
+
+    public static BlueprintChange updated(Blueprint bp) {
+        return new BlueprintChange(Type.UPDATED, bp.getAuthor(), bp.getName(), bp);
+    }
+
+    public static BlueprintChange deleted(String author, String name) {
+        return new BlueprintChange(Type.DELETED, author, name, null);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the blueprint as it is after the change, or null if it was
+     *    deleted
+     */
+    public Blueprint getBlueprint() {
+        return blueprint;
+    }
+}
@@ -0,0 +1,36 @@
+package edu.eci.arsw.blueprints.model;
+
+/**
+ * The author and name that identify a blueprint, to ask for several
+ * blueprints at once.
+ */
+public class BlueprintKey {
+
+    private String author;
+
+    private String name;
+
+    public BlueprintKey() {
+    }
+
+    public BlueprintKey(String author, String name) {
+        this.author = author;
+        this.name = name;
+    }
+
+    public String getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(String author) {
+        this.author = author;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+}
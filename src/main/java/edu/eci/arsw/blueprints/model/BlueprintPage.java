@@ -0,0 +1,30 @@
+package edu.eci.arsw.blueprints.model;
+
+import java.util.List;
+
+/**
+ * One page of a blueprint listing, in (author, name) order.
+ */
+public class BlueprintPage {
+
+    private final List<Blueprint> blueprints;
+
+    private final String nextCursor;
+
+    public BlueprintPage(List<Blueprint> blueprints, String nextCursor) {
+        this.blueprints = blueprints;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Blueprint> getBlueprints() {
+        return blueprints;
+    }
+
+    /**
+     * @return the opaque cursor to request the next page with, or null if this
+     *    is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
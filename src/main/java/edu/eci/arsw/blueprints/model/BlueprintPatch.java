@@ -0,0 +1,212 @@
+package edu.eci.arsw.blueprints.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A change to the points of a blueprint, made against the version it was
+ * based on, as a list of operations applied in order:
+ * <ul>
+ *   <li>{@code append}: adds the points after the last one;</li>
+ *   <li>{@code insert}: adds the points before the point at index;</li>
+ *   <li>{@code remove}: drops count points starting at index;</li>
+ *   <li>{@code move}: gives the points starting at index the new
+ *       coordinates, one per point given.</li>
+ * </ul>
+ * Indices refer to the points as left by the operations before.
+ */
+public class BlueprintPatch {
+
+    public static final String APPEND = "append";
+
+    public static final String INSERT = "insert";
+
+    public static final String REMOVE = "remove";
+
+    public static final String MOVE = "move";
+
+    private int version;
+
+    private List<Operation> operations = new ArrayList<>();
+
+    public BlueprintPatch() {
+    }
+
+    public BlueprintPatch(int version, List<Operation> operations) {
+        this.version = version;
+        this.operations = operations;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public List<Operation> getOperations() {
+        return operations;
+    }
+
+    public void setOperations(List<Operation> operations) {
+        this.operations = operations;
+    }
+
+    /**
+     * Applies the operations to a copy of the blueprint, at the same version;
+     * the given blueprint does not change. A patch that only appends goes
+     * through {@link Blueprint#withAppendedPoints(int[], int)}, so it does not
+     * copy the points already there when it can avoid it. Any other patch
+     * copies the points once and applies every operation to that copy.
+     *
+     * @param bp the blueprint to change
+     * @return the changed copy
+     * @throws IllegalArgumentException if an operation is unknown or out of
+     *    the range of the points
+     */
+    public Blueprint applyTo(Blueprint bp) {
+        List<Operation> ops = operations == null ? Collections.<Operation>emptyList() : operations;
+        boolean onlyAppends = true;
+        int added = 0;
+        for (Operation op : ops) {
+            if (op == null || op.getOp() == null) {
+                throw new IllegalArgumentException("Every operation needs an op");
+            }
+            onlyAppends &= APPEND.equals(op.getOp());
+            added += op.size();
+        }
+        if (onlyAppends) {
+            int[] appended = new int[2 * added];
+            int count = 0;
+            for (Operation op : ops) {
+                count = op.pack(appended, count);
+            }
+            return bp.withAppendedPoints(appended, count);
+        }
+
+        int[] coordinates = bp.copyCoordinates(bp.pointCount() + added);
+        int count = bp.pointCount();
+        for (Operation op : ops) {
+            count = op.apply(coordinates, count);
+        }
+        Blueprint patched = bp.copyAs(bp.getAuthor(), bp.getName());
+        patched.replacePoints(coordinates, count);
+        return patched;
+    }
+
+    /**
+     * One operation of a patch.
+     */
+    public static class Operation {
+
+        private String op;
+
+        private int index;
+
+        private int count;
+
+        private List<Point> points = new ArrayList<>();
+
+        public Operation() {
+        }
+
+        public Operation(String op, int index, int count, List<Point> points) {
+            this.op = op;
+            this.index = index;
+            this.count = count;
+            this.points = points;
+        }
+
+        public String getOp() {
+            return op;
+        }
+
+        public void setOp(String op) {
+            this.op = op;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public void setIndex(int index) {
+            this.index = index;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+
+        public List<Point> getPoints() {
+            return points;
+        }
+
+        public void setPoints(List<Point> points) {
+            this.points = points;
+        }
+
+        private int size() {
+            return points == null ? 0 : points.size();
+        }
+
+        /**
+         * Writes the points of the operation at position count of the packed
+         * array.
+         *
+         * @return the number of points in the array afterwards
+         */
+        private int pack(int[] coordinates, int count) {
+            for (int i = 0; i < size(); i++) {
+                Point p = points.get(i);
+                if (p == null) {
+                    throw new IllegalArgumentException("The " + op + " has a null point at " + i);
+                }
+                coordinates[2 * (count + i)] = p.getX();
+                coordinates[2 * (count + i) + 1] = p.getY();
+            }
+            return count + size();
+        }
+
+        /**
+         * Applies the operation in place to packed coordinates, which have
+         * room for the points it adds.
+         *
+         * @return the number of points afterwards
+         */
+        private int apply(int[] coordinates, int count) {
+            switch (op) {
+                case APPEND:
+                    return pack(coordinates, count);
+                case INSERT:
+                    checkRange(index, 0, count);
+                    System.arraycopy(coordinates, 2 * index, coordinates, 2 * (index + size()), 2 * (count - index));
+                    pack(coordinates, index);
+                    return count + size();
+                case REMOVE:
+                    checkRange(index, this.count, count);
+                    System.arraycopy(coordinates, 2 * (index + this.count), coordinates, 2 * index,
+                            2 * (count - index - this.count));
+                    return count - this.count;
+                case MOVE:
+                    checkRange(index, size(), count);
+                    pack(coordinates, index);
+                    return count;
+                default:
+                    throw new IllegalArgumentException("Unknown operation: " + op);
+            }
+        }
+
+        private void checkRange(int from, int length, int count) {
+            if (from < 0 || length < 0 || from > count - length) {
+                throw new IllegalArgumentException("The " + op + " of " + length + " points at " + from
+                        + " is out of the " + count + " points of the blueprint");
+            }
+        }
+    }
+}
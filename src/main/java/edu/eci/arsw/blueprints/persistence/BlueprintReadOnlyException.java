@@ -0,0 +1,18 @@
+package edu.eci.arsw.blueprints.persistence;
+
+/**
+ * Thrown by a persistence that cannot be changed, such as a blueprint
+ * archive, on every save, update or delete. It is unchecked because it does
+ * not depend on the blueprint, only on where the blueprints are kept.
+ */
+public class BlueprintReadOnlyException extends UnsupportedOperationException {
+
+    public BlueprintReadOnlyException(String message) {
+        super(message);
+    }
+
+    public BlueprintReadOnlyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -6,9 +6,17 @@
 package edu.eci.arsw.blueprints.persistence;
 
 import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintKey;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  *
@@ -23,6 +31,28 @@ public interface BlueprintsPersistence {
      *    or any other low-level persistence error occurs.
      */
     public void saveBlueprint(Blueprint bp) throws BlueprintPersistenceException;
+
+    /**
+     * Saves several new blueprints. Each one is saved or rejected on its own,
+     * as by {@link #saveBlueprint(Blueprint)}; implementations share their
+     * locks and log writes among the whole batch.
+     * 
+     * @param bps the new blueprints
+     * @return for each blueprint, in order, null if it was saved, or the
+     *    exception that rejected it
+     */
+    public default List<BlueprintPersistenceException> saveBlueprints(List<Blueprint> bps) {
+        List<BlueprintPersistenceException> errors = new ArrayList<>(bps.size());
+        for (Blueprint bp : bps) {
+            try {
+                saveBlueprint(bp);
+                errors.add(null);
+            } catch (BlueprintPersistenceException ex) {
+                errors.add(ex);
+            }
+        }
+        return errors;
+    }
     
     /**
      * 
@@ -33,12 +63,175 @@ public interface BlueprintsPersistence {
      */
     public Blueprint getBlueprint(String author,String bprintname) throws BlueprintNotFoundException;
 
+    /**
+     * 
+     * @param keys the author and name of each blueprint
+     * @return for each key, in order, its blueprint, or null if there is none
+     */
+    public default List<Blueprint> getBlueprints(List<BlueprintKey> keys) {
+        List<Blueprint> found = new ArrayList<>(keys.size());
+        for (BlueprintKey key : keys) {
+            try {
+                found.add(getBlueprint(key.getAuthor(), key.getName()));
+            } catch (BlueprintNotFoundException ex) {
+                found.add(null);
+            }
+        }
+        return found;
+    }
+
     public Set<Blueprint> getBlueprintsByAuthor(String autor) throws BlueprintNotFoundException;
 
+    /**
+     * 
+     * @param author blueprint's author
+     * @return a tag of the current blueprints of the given author, that
+     *    changes whenever one of them is saved, changed or deleted, so callers
+     *    can tell whether they changed without reading them. This default
+     *    combines every blueprint of the author; implementations with an
+     *    author index keep the tag in it as the blueprints change
+     * @throws BlueprintNotFoundException if the given author has no blueprints
+     */
+    public default String getAuthorTag(String author) throws BlueprintNotFoundException {
+        Set<Blueprint> blueprints = getBlueprintsByAuthor(author);
+        if (blueprints.isEmpty()) {
+            throw new BlueprintNotFoundException("No blueprints found for author: " + author);
+        }
+        // A sum does not depend on the order of the set; the name takes part so that
+        // replacing a blueprint with another one with the same points changes it
+        long sum = 0;
+        for (Blueprint bp : blueprints) {
+            long h = (bp.contentHash() ^ ((long) Objects.hashCode(bp.getName()) << 32) ^ bp.getVersion()) * 0x9E3779B97F4A7C15L;
+            sum += h ^ (h >>> 31);
+        }
+        return blueprints.size() + "-" + Long.toHexString(sum);
+    }
+
     public Set<Blueprint> getAllBlueprints();
 
+    /**
+     * 
+     * @return a lazy stream over all the blueprints, for callers that process
+     *    them one at a time instead of collecting them
+     */
+    public default Stream<Blueprint> streamAllBlueprints() {
+        return getAllBlueprints().stream();
+    }
+
+    /**
+     * 
+     * @param author blueprint's author
+     * @return a lazy stream over the blueprints of the given author
+     * @throws BlueprintNotFoundException if the given author has no blueprints
+     */
+    public default Stream<Blueprint> streamBlueprintsByAuthor(String author) throws BlueprintNotFoundException {
+        return getBlueprintsByAuthor(author).stream();
+    }
+
+    /**
+     * 
+     * @param author author of the last blueprint already listed, or null to
+     *    start from the first blueprint
+     * @param bprintname name of the last blueprint already listed
+     * @param limit maximum number of blueprints to return
+     * @return the blueprints that follow the given one in (author, name) order
+     */
+    public default List<Blueprint> getBlueprintsAfter(String author, String bprintname, int limit) {
+        Comparator<Blueprint> order = Comparator.comparing(Blueprint::getAuthor).thenComparing(Blueprint::getName);
+        return getAllBlueprints().stream()
+                .filter(bp -> author == null || bp.getAuthor().compareTo(author) > 0
+                        || (bp.getAuthor().equals(author) && bp.getName().compareTo(bprintname) > 0))
+                .sorted(order)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 
+     * @param minX left edge of the area
+     * @param minY top edge of the area
+     * @param maxX right edge of the area, included
+     * @param maxY bottom edge of the area, included
+     * @param limit maximum number of blueprints to return
+     * @return the blueprints whose bounding box intersects the area, in
+     *    (author, name) order. Blueprints without points are never returned.
+     *    This default scans every blueprint; implementations with a spatial
+     *    index answer from the blueprints near the area.
+     */
+    public default List<Blueprint> getBlueprintsInArea(int minX, int minY, int maxX, int maxY, int limit) {
+        Comparator<Blueprint> order = Comparator.comparing(Blueprint::getAuthor).thenComparing(Blueprint::getName);
+        return streamAllBlueprints()
+                .filter(bp -> {
+                    int[] box = bp.bounds();
+                    return box != null && box[0] <= maxX && minX <= box[2] && box[1] <= maxY && minY <= box[3];
+                })
+                .sorted(order)
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 
+     * @param x x coordinate of the position
+     * @param y y coordinate of the position
+     * @param count maximum number of blueprints to return
+     * @return the blueprints with a point closest to the position, closest
+     *    first, ties in (author, name) order. Blueprints without points are
+     *    never returned. This default scans every blueprint.
+     */
+    public default List<Blueprint> getNearestBlueprints(int x, int y, int count) {
+        Comparator<Blueprint> order = Comparator.comparingLong((Blueprint bp) -> bp.distanceSquaredTo(x, y))
+                .thenComparing(Blueprint::getAuthor).thenComparing(Blueprint::getName);
+        return streamAllBlueprints()
+                .filter(bp -> bp.pointCount() > 0)
+                .sorted(order)
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
     public void updateBlueprints(Blueprint bp);
 
+    /**
+     * Atomically replaces a stored blueprint, but only if its version is still
+     * the expected one.
+     * 
+     * @param expectedVersion the version the caller read before changing the blueprint
+     * @param bp the new state of the blueprint, identified by its author and name
+     * @throws BlueprintNotFoundException if there is no such blueprint
+     * @throws BlueprintPersistenceException if the stored blueprint is no longer
+     *    at the expected version
+     */
+    public void compareAndSetBlueprint(int expectedVersion, Blueprint bp) throws BlueprintNotFoundException, BlueprintPersistenceException;
+
+    /**
+     * Applies a patch to the points of a stored blueprint, but only if its
+     * version is still the one the patch was based on. This default reads the
+     * blueprint and stores the result with
+     * {@link #compareAndSetBlueprint(int, Blueprint)}; implementations apply
+     * the patch inside their own atomic update instead.
+     * 
+     * @param author blueprint's author
+     * @param name blueprint's name
+     * @param patch the operations, and the version they were based on
+     * @return the patched blueprint, stored at the next version
+     * @throws BlueprintNotFoundException if there is no such blueprint
+     * @throws BlueprintPersistenceException if the stored blueprint is no longer
+     *    at the version of the patch
+     * @throws IllegalArgumentException if an operation of the patch is invalid
+     */
+    public default Blueprint patchBlueprint(String author, String name, BlueprintPatch patch)
+            throws BlueprintNotFoundException, BlueprintPersistenceException {
+        Blueprint current = getBlueprint(author, name);
+        if (current.getVersion() != patch.getVersion()) {
+            throw new BlueprintPersistenceException("The blueprint was updated by another user: expected version "
+                    + patch.getVersion() + " but found " + current.getVersion());
+        }
+        Blueprint patched = patch.applyTo(current);
+        patched.setVersion(patch.getVersion() + 1);
+        compareAndSetBlueprint(patch.getVersion(), patched);
+        return patched;
+    }
+
     public default void deleteBlueprint(String author, String name) throws BlueprintNotFoundException {}
 
     public void addBlueprintName(String author, String bpname, Blueprint blueprint);
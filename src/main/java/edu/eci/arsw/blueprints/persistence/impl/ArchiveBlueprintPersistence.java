@@ -0,0 +1,162 @@
+package edu.eci.arsw.blueprints.persistence.impl;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.BlueprintReadOnlyException;
+import edu.eci.arsw.blueprints.persistence.BlueprintsPersistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Read-only blueprint persistence served from a {@link BlueprintArchive}.
+ *
+ * Opening it only maps the archive, so startup does not depend on its size,
+ * and the blueprints live in the page cache instead of the heap. Each lookup
+ * builds a new {@link Blueprint} for what it returns.
+ *
+ * Every change is rejected with a {@link BlueprintReadOnlyException}: the
+ * archive is written once, with
+ * {@link BlueprintArchive#write(Path, java.util.Iterator)}.
+ */
+public class ArchiveBlueprintPersistence implements BlueprintsPersistence, Closeable {
+
+    private final BlueprintArchive archive;
+
+    // Tells the tags of this archive from those of another one opened later
+    private final long opening = ThreadLocalRandom.current().nextLong();
+
+    /**
+     * @param file the archive file
+     * @throws IOException if the file cannot be mapped or is not an archive
+     */
+    public ArchiveBlueprintPersistence(Path file) throws IOException {
+        this(BlueprintArchive.open(file));
+    }
+
+    public ArchiveBlueprintPersistence(BlueprintArchive archive) {
+        this.archive = archive;
+    }
+
+    @Override
+    public void saveBlueprint(Blueprint bp) {
+        throw readOnly(bp.getName());
+    }
+
+    @Override
+    public Blueprint getBlueprint(String author, String bprintname) throws BlueprintNotFoundException {
+        long index = author == null || bprintname == null ? -1 : archive.indexOf(author, bprintname);
+        if (index < 0) {
+            throw new BlueprintNotFoundException(
+                    "Blueprint not found for author: " + author + " and name: " + bprintname);
+        }
+        return archive.blueprintAt(index);
+    }
+
+    @Override
+    public Set<Blueprint> getBlueprintsByAuthor(String author) throws BlueprintNotFoundException {
+        Set<Blueprint> blueprints = new HashSet<>();
+        streamBlueprintsByAuthor(author).forEach(blueprints::add);
+        return blueprints;
+    }
+
+    /**
+     * The archive never changes, so the tag of an author is where its
+     * blueprints start: one binary search.
+     */
+    @Override
+    public String getAuthorTag(String author) throws BlueprintNotFoundException {
+        long first = author == null ? archive.size() : archive.lowerBound(author, "", true);
+        if (first == archive.size() || !archive.authorAt(first).equals(author)) {
+            throw new BlueprintNotFoundException("No blueprints found for author: " + author);
+        }
+        return Long.toHexString(opening) + "-" + Long.toHexString(first);
+    }
+
+    /**
+     * Builds every blueprint of the archive on the heap. Prefer
+     * {@link #streamAllBlueprints()} for large archives.
+     */
+    @Override
+    public Set<Blueprint> getAllBlueprints() {
+        Set<Blueprint> blueprints = new HashSet<>();
+        streamAllBlueprints().forEach(blueprints::add);
+        return blueprints;
+    }
+
+    @Override
+    public Stream<Blueprint> streamAllBlueprints() {
+        return LongStream.range(0, archive.size()).mapToObj(archive::blueprintAt);
+    }
+
+    @Override
+    public Stream<Blueprint> streamBlueprintsByAuthor(String author) throws BlueprintNotFoundException {
+        long first = author == null ? archive.size() : archive.lowerBound(author, "", true);
+        long end = first;
+        while (end < archive.size() && archive.authorAt(end).equals(author)) {
+            end++;
+        }
+        if (first == end) {
+            throw new BlueprintNotFoundException("No blueprints found for author: " + author);
+        }
+        return LongStream.range(first, end).mapToObj(archive::blueprintAt);
+    }
+
+    /**
+     * Lists blueprints in (author, name) order, which is the order of the
+     * archive index: one binary search, then the page.
+     */
+    @Override
+    public List<Blueprint> getBlueprintsAfter(String author, String bprintname, int limit) {
+        long from = author == null ? 0 : archive.lowerBound(author, bprintname, false);
+        long to = Math.min(archive.size(), from + limit);
+        List<Blueprint> page = new ArrayList<>((int) Math.max(0, to - from));
+        for (long i = from; i < to; i++) {
+            page.add(archive.blueprintAt(i));
+        }
+        return page;
+    }
+
+    @Override
+    public void updateBlueprints(Blueprint bp) {
+        throw readOnly(bp.getName());
+    }
+
+    @Override
+    public void compareAndSetBlueprint(int expectedVersion, Blueprint bp) {
+        throw readOnly(bp.getName());
+    }
+
+    @Override
+    public Blueprint patchBlueprint(String author, String name, BlueprintPatch patch) {
+        throw readOnly(name);
+    }
+
+    @Override
+    public void deleteBlueprint(String author, String name) {
+        throw readOnly(name);
+    }
+
+    @Override
+    public void addBlueprintName(String author, String bpname, Blueprint blueprint) {
+
+    }
+
+    @Override
+    public void close() {
+        archive.close();
+    }
+
+    private static BlueprintReadOnlyException readOnly(String name) {
+        return new BlueprintReadOnlyException("The blueprint archive is read-only: " + name);
+    }
+}
@@ -0,0 +1,338 @@
+package edu.eci.arsw.blueprints.persistence.impl;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Read-only file of blueprints, sorted by author and name, read through
+ * memory mapping so the blueprints stay off the heap until they are asked for.
+ *
+ * The file has four parts, all in big-endian ints and longs:
+ * <pre>
+ *   header: int magic, int format, long count, long keysOffset, long indexOffset
+ *   data:   per blueprint, int version, int pointCount, int x0, int y0, x1, y1, ...
+ *   keys:   per blueprint, string author, string name
+ *   index:  per blueprint in (author, name) order, long keyOffset, long dataOffset
+ * </pre>
+ * Strings are an int byte count followed by their UTF-8 bytes, padded to a
+ * multiple of four. Every int is at a multiple of four and every long at a
+ * multiple of eight, so none of them crosses a mapped region.
+ *
+ * Opening the file only maps it; a lookup is a binary search over the index,
+ * and a {@link Blueprint} is built, with its own copy of the points, only for
+ * the entry found. Files over 2 GB are mapped in several regions.
+ */
+public class BlueprintArchive implements Closeable {
+
+    private static final int MAGIC = 0x42504152; // "BPAR"
+
+    private static final int FORMAT = 1;
+
+    private static final int HEADER_SIZE = 32;
+
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private static final int DEFAULT_REGION_SIZE = 1 << 30;
+
+    private final MappedByteBuffer[] regions;
+
+    private final int regionShift;
+
+    private final long count;
+
+    private final long indexOffset;
+
+    private BlueprintArchive(MappedByteBuffer[] regions, int regionShift, long count, long indexOffset) {
+        this.regions = regions;
+        this.regionShift = regionShift;
+        this.count = count;
+        this.indexOffset = indexOffset;
+    }
+
+    /**
+     * Writes an archive with the given blueprints.
+     *
+     * @param file the file to write, replaced if it exists
+     * @param blueprints the blueprints, in any order
+     * @throws IOException if the file cannot be written
+     * @throws IllegalArgumentException if a blueprint has no author or name,
+     *    or two have the same author and name
+     */
+    public static void write(Path file, Iterator<Blueprint> blueprints) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        long position = HEADER_SIZE;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.write(new byte[HEADER_SIZE]);
+            while (blueprints.hasNext()) {
+                Blueprint bp = blueprints.next();
+                if (bp.getAuthor() == null || bp.getName() == null) {
+                    throw new IllegalArgumentException("A blueprint needs an author and a name to be archived: " + bp);
+                }
+                entries.add(new Entry(bp.getAuthor(), bp.getName(), position));
+                out.writeInt(bp.getVersion());
+                out.writeInt(bp.pointCount());
+                for (int i = 0; i < bp.pointCount(); i++) {
+                    out.writeInt(bp.xAt(i));
+                    out.writeInt(bp.yAt(i));
+                }
+                position += 8 + 8L * bp.pointCount();
+            }
+
+            entries.sort(Comparator.comparing((Entry e) -> e.author).thenComparing(e -> e.name));
+            long keysOffset = position;
+            Entry previous = null;
+            for (Entry entry : entries) {
+                if (previous != null && previous.author.equals(entry.author) && previous.name.equals(entry.name)) {
+                    throw new IllegalArgumentException("Two blueprints for author: " + entry.author + " and name: " + entry.name);
+                }
+                entry.keyOffset = position;
+                position += putString(out, entry.author);
+                position += putString(out, entry.name);
+                previous = entry;
+            }
+
+            if (position % 8 != 0) {
+                out.writeInt(0);
+                position += 4;
+            }
+            long indexOffset = position;
+            for (Entry entry : entries) {
+                out.writeLong(entry.keyOffset);
+                out.writeLong(entry.dataOffset);
+            }
+
+            out.flush();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(FORMAT).putLong(entries.size()).putLong(keysOffset).putLong(indexOffset);
+                header.flip();
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+                channel.force(true);
+            }
+        }
+    }
+
+    /**
+     * Maps an archive.
+     *
+     * @param file the archive file
+     * @return the archive, ready to read
+     * @throws IOException if the file cannot be mapped or is not an archive
+     */
+    public static BlueprintArchive open(Path file) throws IOException {
+        return open(file, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Maps an archive in regions of the given size. Smaller regions only make
+     * sense to test reads that span regions.
+     *
+     * @param file the archive file
+     * @param regionSize the size of each mapping, a power of two of at least 8
+     * @return the archive, ready to read
+     * @throws IOException if the file cannot be mapped or is not an archive
+     */
+    public static BlueprintArchive open(Path file, int regionSize) throws IOException {
+        if (regionSize < 8 || Integer.bitCount(regionSize) != 1) {
+            throw new IllegalArgumentException("The region size must be a power of two: " + regionSize);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((size + regionSize - 1) / regionSize)];
+            for (int r = 0; r < regions.length; r++) {
+                long start = (long) r * regionSize;
+                regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, size - start));
+            }
+            BlueprintArchive archive = new BlueprintArchive(regions, Integer.numberOfTrailingZeros(regionSize), 0, 0);
+            if (size < HEADER_SIZE || archive.getInt(0) != MAGIC || archive.getInt(4) != FORMAT) {
+                throw new IOException("Not a blueprint archive: " + file);
+            }
+            return new BlueprintArchive(regions, archive.regionShift, archive.getLong(8), archive.getLong(24));
+        }
+    }
+
+    /**
+     * @return the number of blueprints in the archive
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * @param author the author to look for
+     * @param name the name to look for
+     * @return the position of the blueprint in (author, name) order, or -1 if
+     *    it is not in the archive
+     */
+    public long indexOf(String author, String name) {
+        long i = lowerBound(author, name, true);
+        return i < count && compareAt(i, author, name) == 0 ? i : -1;
+    }
+
+    /**
+     * @param author the author of the key
+     * @param name the name of the key
+     * @param inclusive whether a blueprint with that same key counts
+     * @return the position of the first blueprint whose key comes after the
+     *    given one, or is equal to it if inclusive; {@link #size()} if there
+     *    is none
+     */
+    public long lowerBound(String author, String name, boolean inclusive) {
+        long low = 0;
+        long high = count;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            int cmp = compareAt(middle, author, name);
+            if (cmp < 0 || (cmp == 0 && !inclusive)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @param index a position in (author, name) order
+     * @return the author of the blueprint at that position
+     */
+    public String authorAt(long index) {
+        return getString(keyOffset(index));
+    }
+
+    /**
+     * @param index a position in (author, name) order
+     * @return a new blueprint with the content stored at that position
+     */
+    public Blueprint blueprintAt(long index) {
+        long key = keyOffset(index);
+        String author = getString(key);
+        String name = getString(key + stringSize(getInt(key)));
+        long data = getLong(indexOffset + index * INDEX_ENTRY_SIZE + 8);
+        int points = getInt(data + 4);
+        int[] coordinates = new int[2 * points];
+        getInts(data + 8, coordinates);
+        Blueprint bp = new Blueprint(author, name);
+        bp.replacePoints(coordinates, points);
+        bp.setVersion(getInt(data));
+        return bp;
+    }
+
+    /**
+     * Drops the mappings. They are released when the archive is garbage
+     * collected; the archive must not be used afterwards.
+     */
+    @Override
+    public void close() {
+        for (int r = 0; r < regions.length; r++) {
+            regions[r] = null;
+        }
+    }
+
+    private int compareAt(long index, String author, String name) {
+        long key = keyOffset(index);
+        int cmp = getString(key).compareTo(author);
+        if (cmp != 0) {
+            return cmp;
+        }
+        return getString(key + stringSize(getInt(key))).compareTo(name);
+    }
+
+    private long keyOffset(long index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        return getLong(indexOffset + index * INDEX_ENTRY_SIZE);
+    }
+
+    private int getInt(long position) {
+        return regions[(int) (position >>> regionShift)].getInt((int) (position & ((1L << regionShift) - 1)));
+    }
+
+    private long getLong(long position) {
+        return regions[(int) (position >>> regionShift)].getLong((int) (position & ((1L << regionShift) - 1)));
+    }
+
+    /**
+     * Reads consecutive ints, which may span several regions.
+     */
+    private void getInts(long position, int[] destination) {
+        int done = 0;
+        while (done < destination.length) {
+            ByteBuffer region = regions[(int) (position >>> regionShift)].duplicate();
+            region.position((int) (position & ((1L << regionShift) - 1)));
+            int n = Math.min(destination.length - done, region.remaining() / 4);
+            region.asIntBuffer().get(destination, done, n);
+            done += n;
+            position += 4L * n;
+        }
+    }
+
+    private String getString(long position) {
+        int length = getInt(position);
+        byte[] bytes = new byte[length];
+        long from = position + 4;
+        int done = 0;
+        while (done < length) {
+            ByteBuffer region = regions[(int) (from >>> regionShift)].duplicate();
+            region.position((int) (from & ((1L << regionShift) - 1)));
+            int n = Math.min(length - done, region.remaining());
+            region.get(bytes, done, n);
+            done += n;
+            from += n;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(int length) {
+        return 4 + ((length + 3) & ~3);
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    private static int putString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        int size = stringSize(bytes.length);
+        for (int i = 4 + bytes.length; i < size; i++) {
+            out.write(0);
+        }
+        return size;
+    }
+
+    private static final class Entry {
+
+        final String author;
+
+        final String name;
+
+        final long dataOffset;
+
+        long keyOffset;
+
+        Entry(String author, String name, long dataOffset) {
+            this.author = author;
+            this.name = name;
+            this.dataOffset = dataOffset;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package edu.eci.arsw.blueprints.persistence.impl;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.BlueprintsPersistence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the most recently read blueprints on the heap in front of a slower
+ * {@link BlueprintsPersistence}, such as the log or the archive.
+ *
+ * The cache is a {@link WeightedLruCache}, bounded by weight, the number of
+ * points of the cached blueprints plus a fixed cost per entry, and evicting
+ * the least recently used ones. It is split in segments by key, so reads of
+ * different blueprints rarely wait for each other.
+ *
+ * Only single blueprint reads are cached; listings go to the backing store.
+ * Every change goes to the backing store first and then drops the blueprint
+ * from the cache. A read that missed only fills the cache if no change hit its
+ * segment while it was reading from the store, so a value read before a change
+ * is never cached after it.
+ */
+public class CachingBlueprintPersistence implements BlueprintsPersistence, Closeable {
+
+    /**
+     * Weight of an entry besides its points.
+     */
+    static final int ENTRY_WEIGHT = 16;
+
+    private final BlueprintsPersistence delegate;
+
+    private final WeightedLruCache<Tuple<String, String>, Blueprint> cache;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param delegate the store to read from on a miss, and to write to
+     * @param maxWeight the total weight the cache may hold, in points
+     */
+    public CachingBlueprintPersistence(BlueprintsPersistence delegate, long maxWeight) {
+        this.delegate = delegate;
+        this.cache = new WeightedLruCache<>(maxWeight, CachingBlueprintPersistence::weigh,
+                (key, bp) -> evictions.increment());
+    }
+
+    @Override
+    public Blueprint getBlueprint(String author, String bprintname) throws BlueprintNotFoundException {
+        Tuple<String, String> key = new Tuple<>(author, bprintname);
+        // Taken before the lookup, so a change made after the miss is seen
+        long stamp = cache.stamp(key);
+        Blueprint cached = cache.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        Blueprint bp = delegate.getBlueprint(author, bprintname);
+        cache.putIfUnchanged(key, bp, stamp);
+        return bp;
+    }
+
+    @Override
+    public void saveBlueprint(Blueprint bp) throws BlueprintPersistenceException {
+        try {
+            delegate.saveBlueprint(bp);
+        } finally {
+            invalidate(bp.getAuthor(), bp.getName());
+        }
+    }
+
+    @Override
+    public List<BlueprintPersistenceException> saveBlueprints(List<Blueprint> bps) {
+        try {
+            return delegate.saveBlueprints(bps);
+        } finally {
+            for (Blueprint bp : bps) {
+                invalidate(bp.getAuthor(), bp.getName());
+            }
+        }
+    }
+
+    @Override
+    public void updateBlueprints(Blueprint bp) {
+        try {
+            delegate.updateBlueprints(bp);
+        } finally {
+            invalidate(bp.getAuthor(), bp.getName());
+        }
+    }
+
+    @Override
+    public void compareAndSetBlueprint(int expectedVersion, Blueprint bp)
+            throws BlueprintNotFoundException, BlueprintPersistenceException {
+        try {
+            delegate.compareAndSetBlueprint(expectedVersion, bp);
+        } finally {
+            invalidate(bp.getAuthor(), bp.getName());
+        }
+    }
+
+    @Override
+    public Blueprint patchBlueprint(String author, String name, BlueprintPatch patch)
+            throws BlueprintNotFoundException, BlueprintPersistenceException {
+        try {
+            return delegate.patchBlueprint(author, name, patch);
+        } finally {
+            invalidate(author, name);
+        }
+    }
+
+    @Override
+    public void deleteBlueprint(String author, String name) throws BlueprintNotFoundException {
+        try {
+            delegate.deleteBlueprint(author, name);
+        } finally {
+            invalidate(author, name);
+        }
+    }
+
+    @Override
+    public Set<Blueprint> getBlueprintsByAuthor(String autor) throws BlueprintNotFoundException {
+        return delegate.getBlueprintsByAuthor(autor);
+    }
+
+    @Override
+    public String getAuthorTag(String author) throws BlueprintNotFoundException {
+        return delegate.getAuthorTag(author);
+    }
+
+    @Override
+    public Set<Blueprint> getAllBlueprints() {
+        return delegate.getAllBlueprints();
+    }
+
+    @Override
+    public Stream<Blueprint> streamAllBlueprints() {
+        return delegate.streamAllBlueprints();
+    }
+
+    @Override
+    public Stream<Blueprint> streamBlueprintsByAuthor(String author) throws BlueprintNotFoundException {
+        return delegate.streamBlueprintsByAuthor(author);
+    }
+
+    @Override
+    public List<Blueprint> getBlueprintsAfter(String author, String bprintname, int limit) {
+        return delegate.getBlueprintsAfter(author, bprintname, limit);
+    }
+
+    @Override
+    public List<Blueprint> getBlueprintsInArea(int minX, int minY, int maxX, int maxY, int limit) {
+        return delegate.getBlueprintsInArea(minX, minY, maxX, maxY, limit);
+    }
+
+    @Override
+    public List<Blueprint> getNearestBlueprints(int x, int y, int count) {
+        return delegate.getNearestBlueprints(x, y, count);
+    }
+
+    @Override
+    public void addBlueprintName(String author, String bpname, Blueprint blueprint) {
+        delegate.addBlueprintName(author, bpname, blueprint);
+    }
+
+    /**
+     * @return the number of reads served from the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of reads that went to the backing store
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the number of blueprints dropped to make room for others
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the weight of the blueprints in the cache, in points
+     */
+    public long getWeight() {
+        return cache.getWeight();
+    }
+
+    /**
+     * Closes the backing store, if it can be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+
+    private void invalidate(String author, String name) {
+        cache.remove(new Tuple<>(author, name));
+    }
+
+    private static long weigh(Blueprint bp) {
+        return ENTRY_WEIGHT + bp.pointCount();
+    }
+}
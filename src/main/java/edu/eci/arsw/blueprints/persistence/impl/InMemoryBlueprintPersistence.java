@@ -6,13 +6,21 @@
 package edu.eci.arsw.blueprints.persistence.impl;
 
 import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
 import edu.eci.arsw.blueprints.model.Point;
 import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
 import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
 import edu.eci.arsw.blueprints.persistence.BlueprintsPersistence;
-import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * In-memory implementation of blueprint persistence.
@@ -22,14 +30,50 @@ import java.util.*;
  * searching, and deleting blueprints. Implements the
  * {@link BlueprintsPersistence} interface.
  * 
- * The class is a Spring service, annotated with {@code @Service}.
+ * The map is a {@link ConcurrentHashMap}, so it can be shared by the request
+ * threads of the REST controller: reads never block, and writes only lock the
+ * bin of the key being changed. Save, update and delete are each a single
+ * atomic map operation.
+ * 
+ * A secondary index maps every author to its blueprints by name, so lookups
+ * by author only touch that author's blueprints. The index is updated inside
+ * the same map operation that changes the blueprint, so it always agrees with
+ * the map for a given key. Names are kept sorted within each author, and the
+ * authors themselves in a sorted set, so blueprints can be listed page by page
+ * in (author, name) order. A {@link SpatialIndex} over the points of the
+ * blueprints, updated the same way, answers the area and nearest queries.
+ * 
+ * Every change to an author's blueprints also takes the next number of a
+ * sequence, kept for the author once the index shows the change, and the
+ * author's tag is made of it. Reading the tag before the blueprints, a caller
+ * may pair an old tag with newer blueprints, never the other way round. The
+ * sequence starts over with each instance, so the tag also carries a random
+ * number of the instance.
+ * 
+ * Subclasses that keep the blueprints somewhere else as well can follow every
+ * change through {@link #stored(Blueprint)} and {@link #removed(String, String)}.
+ * 
+ * The instance used by the application is created by
+ * {@link PersistenceConfiguration}.
  * 
  * @author hcadavid
  */
-@Service
 public class InMemoryBlueprintPersistence implements BlueprintsPersistence {
 
-    private final Map<Tuple<String, String>, Blueprint> blueprints = new HashMap<>();
+    private final ConcurrentMap<Tuple<String, String>, Blueprint> blueprints = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, ConcurrentNavigableMap<String, Blueprint>> authorIndex = new ConcurrentHashMap<>();
+
+    private final ConcurrentSkipListSet<String> authors = new ConcurrentSkipListSet<>();
+
+    private final SpatialIndex spatialIndex = new SpatialIndex(SpatialIndex.DEFAULT_CELL_SIZE);
+
+    // Number of the last change to each author with blueprints, from changes
+    private final ConcurrentMap<String, Long> authorChanges = new ConcurrentHashMap<>();
+
+    private final AtomicLong changes = new AtomicLong();
+
+    private final long instance = ThreadLocalRandom.current().nextLong();
 
     /**
      * Constructor that initializes stub data.
@@ -37,6 +81,16 @@ public class InMemoryBlueprintPersistence implements BlueprintsPersistence {
      * Loads some example blueprints into the in-memory persistence map.
      */
     public InMemoryBlueprintPersistence() {
+        this(true);
+    }
+
+    /**
+     * @param sampleData whether to load the example blueprints
+     */
+    protected InMemoryBlueprintPersistence(boolean sampleData) {
+        if (!sampleData) {
+            return;
+        }
         // Load example data
         Point[] pts = new Point[] { new Point(140, 140), new Point(115, 115),
                 new Point(115, 115), new Point(140, 140), new Point(140, 140) };
@@ -71,15 +125,15 @@ public class InMemoryBlueprintPersistence implements BlueprintsPersistence {
         Blueprint jp1 = new Blueprint("juan", "MyPlane1", lauraPoints);
 
         //Se agregan los blueprints a hash de blueprints
-        blueprints.put(new Tuple<>(an.getAuthor(), an.getName()), an);
-        blueprints.put(new Tuple<>(an2.getAuthor(), an2.getName()), an2);
-        blueprints.put(new Tuple<>(an3.getAuthor(), an3.getName()), an3);
-        blueprints.put(new Tuple<>(an4.getAuthor(), an4.getName()), an4);
-        blueprints.put(new Tuple<>(an5.getAuthor(), an5.getName()), an5);
+        store(an);
+        store(an2);
+        store(an3);
+        store(an4);
+        store(an5);
 
         //Mas autores xd
-        blueprints.put(new Tuple<>(jp.getAuthor(), jp.getName()), jp);
-        blueprints.put(new Tuple<>(jp1.getAuthor(), jp1.getName()), jp1);
+        store(jp);
+        store(jp1);
 
     }
 
@@ -95,11 +149,30 @@ public class InMemoryBlueprintPersistence implements BlueprintsPersistence {
      */
     @Override
     public void saveBlueprint(Blueprint bp) throws BlueprintPersistenceException {
-        if (blueprints.containsKey(new Tuple<>(bp.getAuthor(), bp.getName()))) {
-            throw new BlueprintPersistenceException("The given blueprint already exists: " + bp);
-        } else {
-            blueprints.put(new Tuple<>(bp.getAuthor(), bp.getName()), bp);
+        saveNew(bp);
+    }
+
+    /**
+     * Saves several new blueprints, each one as {@link #saveBlueprint(Blueprint)}
+     * does, without going through it, so subclasses can wrap the whole batch
+     * in a single lock or sync.
+     * 
+     * @param bps The blueprints to save.
+     * @return For each blueprint, null if it was saved, or the exception that
+     *         rejected it.
+     */
+    @Override
+    public List<BlueprintPersistenceException> saveBlueprints(List<Blueprint> bps) {
+        List<BlueprintPersistenceException> errors = new ArrayList<>(bps.size());
+        for (Blueprint bp : bps) {
+            try {
+                saveNew(bp);
+                errors.add(null);
+            } catch (BlueprintPersistenceException ex) {
+                errors.add(ex);
+            }
         }
+        return errors;
     }
 
     /**
@@ -137,20 +210,13 @@ public class InMemoryBlueprintPersistence implements BlueprintsPersistence {
      */
     @Override
     public Set<Blueprint> getBlueprintsByAuthor(String author) throws BlueprintNotFoundException {
-        Set<Blueprint> authorBlueprints = new HashSet<>();
-
-        // Iterate over the map to find the author's blueprints
-        for (Map.Entry<Tuple<String, String>, Blueprint> entry : blueprints.entrySet()) {
-            if (entry.getKey() != null && entry.getKey().first != null && entry.getKey().first.equals(author)) {
-                authorBlueprints.add(entry.getValue());
-            }
-        }
+        Map<String, Blueprint> authorBlueprints = author == null ? null : authorIndex.get(author);
 
-        if (authorBlueprints.isEmpty()) {
+        if (authorBlueprints == null || authorBlueprints.isEmpty()) {
             throw new BlueprintNotFoundException("No blueprints found for author: " + author);
         }
 
-        return authorBlueprints;
+        return new HashSet<>(authorBlueprints.values());
     }
 
     /**
@@ -163,10 +229,214 @@ public class InMemoryBlueprintPersistence implements BlueprintsPersistence {
         return new HashSet<>(blueprints.values());
     }
 
+    /**
+     * Streams all stored blueprints straight from the map, without copying
+     * them. Blueprints saved or deleted while the stream is consumed may or may
+     * not be seen.
+     * 
+     * @return A lazy stream of all blueprints.
+     */
+    @Override
+    public Stream<Blueprint> streamAllBlueprints() {
+        return blueprints.values().stream();
+    }
+
+    /**
+     * Returns the tag of an author's blueprints from the number of the last
+     * change to them, without reading them.
+     * 
+     * @param author The author whose tag is to be returned.
+     * @return The tag, which changes with every change to the author's blueprints.
+     * @throws BlueprintNotFoundException If no blueprints are found for the given
+     *                                    author.
+     */
+    @Override
+    public String getAuthorTag(String author) throws BlueprintNotFoundException {
+        Long change = author == null ? null : authorChanges.get(author);
+        if (change == null) {
+            throw new BlueprintNotFoundException("No blueprints found for author: " + author);
+        }
+        return Long.toHexString(instance) + "-" + Long.toHexString(change);
+    }
+
+    /**
+     * Streams the blueprints of an author straight from the author index.
+     * 
+     * @param author The author whose blueprints are to be streamed.
+     * @return A lazy stream of the author's blueprints.
+     * @throws BlueprintNotFoundException If no blueprints are found for the given
+     *                                    author.
+     */
+    @Override
+    public Stream<Blueprint> streamBlueprintsByAuthor(String author) throws BlueprintNotFoundException {
+        Map<String, Blueprint> authorBlueprints = author == null ? null : authorIndex.get(author);
+
+        if (authorBlueprints == null || authorBlueprints.isEmpty()) {
+            throw new BlueprintNotFoundException("No blueprints found for author: " + author);
+        }
+
+        return authorBlueprints.values().stream();
+    }
+
+    /**
+     * Lists blueprints in (author, name) order, starting right after the given
+     * position.
+     * 
+     * The authors and each author's names are sorted maps, so the cost is one
+     * seek per map plus the size of the page; no blueprint before the
+     * position is visited.
+     * 
+     * @param author The author of the last blueprint already listed, or
+     *               {@code null} to start from the beginning.
+     * @param name   The name of the last blueprint already listed.
+     * @param limit  The maximum number of blueprints to return.
+     * @return The next blueprints in order, at most {@code limit} of them.
+     */
+    @Override
+    public List<Blueprint> getBlueprintsAfter(String author, String name, int limit) {
+        List<Blueprint> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<String> authorsIterator = author == null
+                ? authors.iterator()
+                : authors.tailSet(author, true).iterator();
+        while (page.size() < limit && authorsIterator.hasNext()) {
+            String current = authorsIterator.next();
+            ConcurrentNavigableMap<String, Blueprint> names = authorIndex.get(current);
+            if (names == null) {
+                continue;
+            }
+            if (current.equals(author)) {
+                names = names.tailMap(name, false);
+            }
+            for (Iterator<Blueprint> it = names.values().iterator(); page.size() < limit && it.hasNext();) {
+                page.add(it.next());
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Lists the blueprints whose bounding box intersects an area, from the
+     * cells of the spatial index under the area.
+     * 
+     * @param minX  The left edge of the area.
+     * @param minY  The top edge of the area.
+     * @param maxX  The right edge of the area, included.
+     * @param maxY  The bottom edge of the area, included.
+     * @param limit The maximum number of blueprints to return.
+     * @return The blueprints in the area, in (author, name) order.
+     */
+    @Override
+    public List<Blueprint> getBlueprintsInArea(int minX, int minY, int maxX, int maxY, int limit) {
+        return spatialIndex.intersecting(minX, minY, maxX, maxY, limit);
+    }
+
+    /**
+     * Finds the blueprints closest to a position, from the cells of the
+     * spatial index around it.
+     * 
+     * @param x     The x coordinate of the position.
+     * @param y     The y coordinate of the position.
+     * @param count The maximum number of blueprints to return.
+     * @return The closest blueprints, closest first.
+     */
+    @Override
+    public List<Blueprint> getNearestBlueprints(int x, int y, int count) {
+        return spatialIndex.nearest(x, y, count);
+    }
+
+    /**
+     * Stores the given blueprint, replacing any blueprint with the same author
+     * and name.
+     * 
+     * @param bp The blueprint to store.
+     */
     @Override
     public void updateBlueprints(Blueprint bp) {
-        blueprints.remove(new Tuple<>(bp.getAuthor(), bp.getName()), bp);
-        blueprints.put(new Tuple<>(bp.getAuthor(), bp.getName()), bp);
+        store(bp);
+    }
+
+    /**
+     * Replaces a blueprint if its stored version is the expected one.
+     * 
+     * The version check and the replacement run inside a single map operation,
+     * so of several concurrent updates from the same version exactly one
+     * succeeds. A stale version is rejected from a plain read, without locking.
+     * 
+     * @param expectedVersion The version the caller based its change on.
+     * @param bp              The new state of the blueprint.
+     * @throws BlueprintNotFoundException    If no blueprint is found for the given
+     *                                       author and name.
+     * @throws BlueprintPersistenceException If the stored blueprint is at another
+     *                                       version.
+     */
+    @Override
+    public void compareAndSetBlueprint(int expectedVersion, Blueprint bp)
+            throws BlueprintNotFoundException, BlueprintPersistenceException {
+        Tuple<String, String> key = new Tuple<>(bp.getAuthor(), bp.getName());
+        Blueprint current = blueprints.get(key);
+        if (current != null && current.getVersion() == expectedVersion) {
+            Blueprint[] found = new Blueprint[1];
+            blueprints.computeIfPresent(key, (k, stored) -> {
+                found[0] = stored;
+                if (stored.getVersion() != expectedVersion) {
+                    return stored;
+                }
+                index(bp);
+                return bp;
+            });
+            current = found[0];
+        }
+        if (current == null) {
+            throw new BlueprintNotFoundException(
+                    "Blueprint not found for author: " + bp.getAuthor() + " and name: " + bp.getName());
+        }
+        if (current.getVersion() != expectedVersion) {
+            throw new BlueprintPersistenceException("The blueprint was updated by another user: expected version "
+                    + expectedVersion + " but found " + current.getVersion());
+        }
+    }
+
+    /**
+     * Applies a patch to a blueprint if its stored version is the one the
+     * patch was based on.
+     * 
+     * The version check, the patch and the replacement run inside a single map
+     * operation, so patches to the same blueprint apply one after the other and
+     * only the first of several based on the same version succeeds. A patch
+     * that only appends points usually shares the stored blueprint's array.
+     * 
+     * @param author The author of the blueprint.
+     * @param name   The name of the blueprint.
+     * @param patch  The operations, and the version they were based on.
+     * @return The patched blueprint, at the next version.
+     * @throws BlueprintNotFoundException    If no blueprint is found for the given
+     *                                       author and name.
+     * @throws BlueprintPersistenceException If the stored blueprint is at another
+     *                                       version.
+     */
+    @Override
+    public Blueprint patchBlueprint(String author, String name, BlueprintPatch patch)
+            throws BlueprintNotFoundException, BlueprintPersistenceException {
+        Blueprint[] found = new Blueprint[2];
+        blueprints.computeIfPresent(new Tuple<>(author, name), (key, stored) -> {
+            found[0] = stored;
+            if (stored.getVersion() != patch.getVersion()) {
+                return stored;
+            }
+            Blueprint patched = patch.applyTo(stored);
+            patched.setVersion(stored.getVersion() + 1);
+            index(patched);
+            found[1] = patched;
+            return patched;
+        });
+        if (found[0] == null) {
+            throw new BlueprintNotFoundException("Blueprint not found for author: " + author + " and name: " + name);
+        }
+        if (found[1] == null) {
+            throw new BlueprintPersistenceException("The blueprint was updated by another user: expected version "
+                    + patch.getVersion() + " but found " + found[0].getVersion());
+        }
+        return found[1];
     }
 
     /**
@@ -181,8 +451,13 @@ public class InMemoryBlueprintPersistence implements BlueprintsPersistence {
      *                                    author and name.
      */
     public void deleteBlueprint(String author, String name) throws BlueprintNotFoundException {
-        Tuple<String, String> key = new Tuple<>(author, name);
-        if (blueprints.remove(key) == null) {
+        Blueprint[] removed = new Blueprint[1];
+        blueprints.computeIfPresent(new Tuple<>(author, name), (key, bp) -> {
+            unindex(author, name);
+            removed[0] = bp;
+            return null;
+        });
+        if (removed[0] == null) {
             throw new BlueprintNotFoundException("Blueprint not found");
         }
     }
@@ -192,4 +467,145 @@ public class InMemoryBlueprintPersistence implements BlueprintsPersistence {
 
     }
 
+    /**
+     * Called from inside the map operation that stores a blueprint, before the
+     * change is visible to other threads. Operations on the same blueprint
+     * call it in the order they are applied. If it throws, the blueprint is
+     * not stored. Does nothing by default.
+     * 
+     * @param bp The blueprint being stored.
+     */
+    protected void stored(Blueprint bp) {
+    }
+
+    /**
+     * Called from inside the map operation that removes a blueprint, like
+     * {@link #stored(Blueprint)}. If it throws, the blueprint is not removed.
+     * Does nothing by default.
+     * 
+     * @param author The author of the blueprint being removed.
+     * @param name   The name of the blueprint being removed.
+     */
+    protected void removed(String author, String name) {
+    }
+
+    /**
+     * Puts a blueprint straight into the map, replacing the one with the same
+     * author and name, without indexing it or calling {@link #stored(Blueprint)}.
+     * Meant for loading many blueprints before the instance is shared, as on
+     * startup: the indexes are out of date until {@link #reindex()} is called.
+     * 
+     * @param bp The blueprint to load.
+     */
+    protected void load(Blueprint bp) {
+        blueprints.put(new Tuple<>(bp.getAuthor(), bp.getName()), bp);
+    }
+
+    /**
+     * Removes a blueprint straight from the map, like {@link #load(Blueprint)},
+     * without calling {@link #removed(String, String)}. Does nothing if there is
+     * no such blueprint.
+     * 
+     * @param author The author of the blueprint to remove.
+     * @param name   The name of the blueprint to remove.
+     */
+    protected void unload(String author, String name) {
+        blueprints.remove(new Tuple<>(author, name));
+    }
+
+    /**
+     * Builds the author and spatial indexes again from the map, once, after the
+     * blueprints were loaded with {@link #load(Blueprint)} and
+     * {@link #unload(String, String)}. Not safe while other threads change the
+     * blueprints.
+     */
+    protected void reindex() {
+        authorIndex.clear();
+        authors.clear();
+        authorChanges.clear();
+        spatialIndex.load(blueprints.values());
+        Map<String, List<Blueprint>> byAuthor = new HashMap<>();
+        for (Blueprint bp : blueprints.values()) {
+            if (bp.getAuthor() == null || bp.getName() == null) {
+                continue;
+            }
+            byAuthor.computeIfAbsent(bp.getAuthor(), author -> new ArrayList<>()).add(bp);
+        }
+        // Sorting each author's list once and filling its skip list in order is
+        // far cheaper than keeping a sorted tree while the blueprints are grouped
+        Comparator<Blueprint> byName = Comparator.comparing(Blueprint::getName);
+        for (Map.Entry<String, List<Blueprint>> names : byAuthor.entrySet()) {
+            List<Blueprint> sorted = names.getValue();
+            sorted.sort(byName);
+            ConcurrentSkipListMap<String, Blueprint> index = new ConcurrentSkipListMap<>();
+            for (Blueprint bp : sorted) {
+                index.put(bp.getName(), bp);
+            }
+            authorIndex.put(names.getKey(), index);
+            authorChanges.put(names.getKey(), changes.incrementAndGet());
+        }
+        authors.addAll(byAuthor.keySet());
+    }
+
+    private void saveNew(Blueprint bp) throws BlueprintPersistenceException {
+        Blueprint stored = blueprints.computeIfAbsent(new Tuple<>(bp.getAuthor(), bp.getName()), key -> {
+            index(bp);
+            return bp;
+        });
+        if (stored != bp) {
+            throw new BlueprintPersistenceException("The given blueprint already exists: " + bp);
+        }
+    }
+
+    private void store(Blueprint bp) {
+        blueprints.compute(new Tuple<>(bp.getAuthor(), bp.getName()), (key, old) -> {
+            index(bp);
+            return bp;
+        });
+    }
+
+    /**
+     * Adds the blueprint to the author index. Must be called from inside the
+     * map operation that stores the blueprint.
+     */
+    private void index(Blueprint bp) {
+        stored(bp);
+        if (bp.getAuthor() == null || bp.getName() == null) {
+            return;
+        }
+        spatialIndex.add(bp);
+        authorIndex.compute(bp.getAuthor(), (author, names) -> {
+            if (names == null) {
+                names = new ConcurrentSkipListMap<>();
+                authors.add(author);
+            }
+            names.put(bp.getName(), bp);
+            authorChanges.put(author, changes.incrementAndGet());
+            return names;
+        });
+    }
+
+    /**
+     * Removes the blueprint from the author index, dropping the author once it
+     * has no blueprints left. Must be called from inside the map operation that
+     * removes the blueprint.
+     */
+    private void unindex(String author, String name) {
+        removed(author, name);
+        if (author == null || name == null) {
+            return;
+        }
+        spatialIndex.remove(author, name);
+        authorIndex.computeIfPresent(author, (a, names) -> {
+            names.remove(name);
+            if (names.isEmpty()) {
+                authors.remove(a);
+                authorChanges.remove(a);
+                return null;
+            }
+            authorChanges.put(a, changes.incrementAndGet());
+            return names;
+        });
+    }
+
 }
@@ -0,0 +1,468 @@
+package edu.eci.arsw.blueprints.persistence.impl;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.BlueprintReadOnlyException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Durable blueprint persistence: the blueprints are kept in memory, as in
+ * {@link InMemoryBlueprintPersistence}, and every change is also appended to a
+ * {@link WriteAheadLog} in the given directory. On startup the log is replayed
+ * to rebuild the blueprints as they were.
+ *
+ * A change is appended from inside the map operation that applies it, so the
+ * log has the changes of each blueprint in the order they were applied. Once
+ * the map operation is done, and the blueprint unlocked, the call waits for
+ * the log to be synced, sharing the fsync with every other writer that is
+ * waiting at the same time. A call returns only when its change is on disk.
+ *
+ * If the log cannot be written or synced, the change is already in memory
+ * and cannot be taken back: other changes may have been made on top of it,
+ * and the records that failed may share the sync of other writers. The call
+ * fails with a {@link BlueprintReadOnlyException}: its change is not durable.
+ * It stays visible to readers until the persistence is opened again on the
+ * same directory, which brings back only what reached the disk, so the change
+ * is then lost. From the failure on the persistence is read-only: every
+ * change is rejected with the same exception, before it is applied, so
+ * nothing else is acknowledged that would be lost. A failure of the log while
+ * a snapshot starts a new segment has the same effect.
+ *
+ * The log is split in numbered segments, {@code blueprints-<n>.log}. When the
+ * current segment grows past a size, a background thread starts segment n+1
+ * and writes {@code snapshot-<n+1>.snap}, the state of every blueprint, then
+ * deletes the older segments and snapshots. Startup loads the newest snapshot
+ * and replays only the segments from its number on.
+ *
+ * Writers are not blocked while the snapshot is written: it iterates the live
+ * map. Starting the new segment waits for the changes in progress, so every
+ * change of the older segments is in the map when the iteration starts. Changes
+ * made during the iteration may or may not be in the snapshot, but they are
+ * all in the new segment, which is replayed after it.
+ *
+ * Unlike the in-memory persistence, it starts without example data.
+ */
+public class LogBlueprintPersistence extends InMemoryBlueprintPersistence implements Closeable {
+
+    /**
+     * Size of the current segment after which a snapshot is taken, by default.
+     */
+    public static final long DEFAULT_SNAPSHOT_AFTER_BYTES = 64L << 20;
+
+    private static final String SEGMENT_PREFIX = "blueprints-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+
+    private final long snapshotAfterBytes;
+
+    // Held for reading by every change, and for writing to start a segment
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+
+    private final ExecutorService snapshotter = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "blueprints-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+
+    // Why the log could not be written, after which every change is rejected
+    private volatile IOException failure;
+
+    // Why the last background snapshot failed, null once one succeeds
+    private volatile Exception snapshotFailure;
+
+    private final Object snapshotLock = new Object();
+
+    private final WriteAheadLog log;
+
+    // Number of the segment being written, guarded by snapshotLock
+    private long segment;
+
+    /**
+     * @param directory the directory of the log, created if it does not exist
+     * @throws IOException if the log cannot be read or opened
+     */
+    public LogBlueprintPersistence(Path directory) throws IOException {
+        this(directory, DEFAULT_SNAPSHOT_AFTER_BYTES);
+    }
+
+    /**
+     * @param directory the directory of the log, created if it does not exist
+     * @param snapshotAfterBytes size of the current segment after which a
+     *    snapshot is taken
+     * @throws IOException if the log cannot be read or opened
+     */
+    public LogBlueprintPersistence(Path directory, long snapshotAfterBytes) throws IOException {
+        super(false);
+        this.directory = directory;
+        this.snapshotAfterBytes = snapshotAfterBytes;
+        Files.createDirectories(directory);
+        for (Path tmp : list(TEMPORARY_SUFFIX)) {
+            Files.delete(tmp);
+        }
+
+        // The records only go to the map, the indexes are built once at the end
+        WriteAheadLog.Replayer replayer = new WriteAheadLog.Replayer() {
+            @Override
+            public void put(Blueprint bp) {
+                load(bp);
+            }
+
+            @Override
+            public void delete(String author, String name) {
+                // already gone or not: the record is idempotent
+                unload(author, name);
+            }
+        };
+
+        List<Long> snapshots = numbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        long first = 0;
+        if (!snapshots.isEmpty()) {
+            first = snapshots.get(snapshots.size() - 1);
+            WriteAheadLog.replay(snapshotFile(first), replayer);
+        }
+        List<Long> segments = new ArrayList<>();
+        for (long n : numbers(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (n >= first) {
+                segments.add(n);
+            }
+        }
+        segment = segments.isEmpty() ? first : segments.get(segments.size() - 1);
+        for (long n : segments) {
+            if (n != segment) {
+                WriteAheadLog.replay(segmentFile(n), replayer);
+            }
+        }
+        log = WriteAheadLog.open(segmentFile(segment), replayer);
+        reindex();
+        deleteBefore(first);
+    }
+
+    @Override
+    public void saveBlueprint(Blueprint bp) throws BlueprintPersistenceException {
+        segmentLock.readLock().lock();
+        try {
+            super.saveBlueprint(bp);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        syncOrReject(bp.getName());
+    }
+
+    /**
+     * Saves the whole batch under one hold of the segment lock and waits for a
+     * single sync. If the sync fails, the whole batch fails, as
+     * {@link #saveBlueprint(Blueprint)} would: none of it is durable.
+     */
+    @Override
+    public List<BlueprintPersistenceException> saveBlueprints(List<Blueprint> bps) {
+        checkWritable();
+        List<BlueprintPersistenceException> errors;
+        segmentLock.readLock().lock();
+        try {
+            errors = super.saveBlueprints(bps);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        syncOrReject(bps.size() + " blueprints");
+        return errors;
+    }
+
+    @Override
+    public void updateBlueprints(Blueprint bp) {
+        segmentLock.readLock().lock();
+        try {
+            super.updateBlueprints(bp);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        syncOrReject(bp.getName());
+    }
+
+    @Override
+    public void compareAndSetBlueprint(int expectedVersion, Blueprint bp)
+            throws BlueprintNotFoundException, BlueprintPersistenceException {
+        segmentLock.readLock().lock();
+        try {
+            super.compareAndSetBlueprint(expectedVersion, bp);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        syncOrReject(bp.getName());
+    }
+
+    @Override
+    public Blueprint patchBlueprint(String author, String name, BlueprintPatch patch)
+            throws BlueprintNotFoundException, BlueprintPersistenceException {
+        Blueprint patched;
+        segmentLock.readLock().lock();
+        try {
+            patched = super.patchBlueprint(author, name, patch);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        syncOrReject(name);
+        return patched;
+    }
+
+    @Override
+    public void deleteBlueprint(String author, String name) throws BlueprintNotFoundException {
+        segmentLock.readLock().lock();
+        try {
+            super.deleteBlueprint(author, name);
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        syncOrReject(name);
+    }
+
+    /**
+     * Starts a new log segment, writes a snapshot of every blueprint and
+     * deletes the segments and snapshots it replaces. Changes can go on while
+     * the snapshot is written.
+     *
+     * @throws IOException if the new segment or the snapshot cannot be written;
+     *    the older segments are then kept
+     */
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long next = segment + 1;
+            segmentLock.writeLock().lock();
+            try {
+                log.roll(segmentFile(next));
+                segment = next;
+            } catch (IOException ex) {
+                // The log closes itself if the current segment could not be synced
+                if (log.getFailure() != null) {
+                    failed(log.getFailure());
+                }
+                throw ex;
+            } finally {
+                segmentLock.writeLock().unlock();
+            }
+
+            Path tmp = directory.resolve(SNAPSHOT_PREFIX + next + TEMPORARY_SUFFIX);
+            WriteAheadLog.writeSnapshot(tmp, streamAllBlueprints().iterator());
+            Files.move(tmp, snapshotFile(next), StandardCopyOption.ATOMIC_MOVE);
+            syncDirectory();
+            deleteBefore(next);
+        }
+    }
+
+    /**
+     * @return why the log could not be written, or null if it always could.
+     *    Once set, every change is rejected.
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return why the last snapshot taken in the background failed, or null
+     *    if it succeeded or none was taken. The log keeps growing, and its
+     *    older segments are kept, until one succeeds.
+     */
+    public Exception getSnapshotFailure() {
+        return snapshotFailure;
+    }
+
+    /**
+     * Waits for a snapshot in progress, then syncs the log and closes it.
+     * Changes made afterwards fail.
+     */
+    @Override
+    public void close() throws IOException {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    /**
+     * Appends the blueprint to the log, from inside the map operation, so a
+     * persistence whose log failed rejects the change before it is applied.
+     */
+    @Override
+    protected void stored(Blueprint bp) {
+        // null while the log is being replayed
+        if (log != null) {
+            checkWritable();
+            log.appendPut(bp);
+        }
+    }
+
+    @Override
+    protected void removed(String author, String name) {
+        if (log != null) {
+            checkWritable();
+            log.appendDelete(author, name);
+        }
+    }
+
+    private void checkWritable() {
+        if (failure == null && log.getFailure() != null) {
+            failed(log.getFailure());
+        }
+        if (failure != null) {
+            throw new BlueprintReadOnlyException("The blueprint log could not be written, changes are rejected: " + directory);
+        }
+    }
+
+    /**
+     * Makes the persistence read-only, the first time the log fails.
+     */
+    private void failed(IOException ex) {
+        if (failure == null) {
+            failure = ex;
+            Logger.getLogger(LogBlueprintPersistence.class.getName()).log(Level.SEVERE,
+                    "The blueprint log of " + directory + " could not be written, it is now read-only", ex);
+        }
+    }
+
+    /**
+     * Waits for the change just made to be durable, and schedules a snapshot
+     * if the current segment has grown past its size. If the log cannot be
+     * synced, the persistence becomes read-only.
+     */
+    private void sync() throws IOException {
+        try {
+            log.sync();
+        } catch (IOException ex) {
+            failed(ex);
+            throw ex;
+        }
+        if (log.segmentSize() >= snapshotAfterBytes && snapshotScheduled.compareAndSet(false, true)) {
+            try {
+                snapshotter.execute(() -> {
+                    try {
+                        snapshot();
+                        snapshotFailure = null;
+                    } catch (IOException | RuntimeException ex) {
+                        snapshotFailure = ex;
+                        Logger.getLogger(LogBlueprintPersistence.class.getName()).log(Level.SEVERE,
+                                "The blueprint log could not be compacted into a snapshot of " + directory, ex);
+                    } finally {
+                        snapshotScheduled.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException ex) {
+                // closing: no more snapshots
+                snapshotScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Syncs the change just made, or rejects the call that made it as the
+     * ones after it will be.
+     *
+     * @param changed what the call changed, for the message
+     */
+    private void syncOrReject(String changed) {
+        try {
+            sync();
+        } catch (IOException ex) {
+            throw new BlueprintReadOnlyException("The change of " + changed
+                    + " could not be written to the log and is not durable, changes are rejected: " + directory, ex);
+        }
+    }
+
+    /**
+     * Makes the renaming of a snapshot durable. Not every platform can open a
+     * directory, so failing to is ignored.
+     */
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ex) {
+            // best effort
+        }
+    }
+
+    /**
+     * Deletes the segments and snapshots numbered below the given one.
+     */
+    private void deleteBefore(long number) throws IOException {
+        for (long n : numbers(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (n < number) {
+                Files.deleteIfExists(segmentFile(n));
+            }
+        }
+        for (long n : numbers(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (n < number) {
+                Files.deleteIfExists(snapshotFile(n));
+            }
+        }
+    }
+
+    private Path segmentFile(long number) {
+        return directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX);
+    }
+
+    private Path snapshotFile(long number) {
+        return directory.resolve(SNAPSHOT_PREFIX + number + SNAPSHOT_SUFFIX);
+    }
+
+    /**
+     * @return the numbers of the files named prefix + number + suffix, sorted
+     */
+    private List<Long> numbers(String prefix, String suffix) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException ex) {
+                    // not one of ours
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private List<Path> list(String suffix) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + suffix)) {
+            for (Path file : files) {
+                paths.add(file);
+            }
+        }
+        return paths;
+    }
+}
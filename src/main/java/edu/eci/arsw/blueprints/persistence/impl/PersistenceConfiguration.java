@@ -0,0 +1,56 @@
+package edu.eci.arsw.blueprints.persistence.impl;
+
+import edu.eci.arsw.blueprints.persistence.BlueprintsPersistence;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Chooses the blueprint persistence from the properties:
+ * <ul>
+ *   <li>{@code blueprints.persistence.archive}: serve a read-only
+ *   {@link BlueprintArchive} file;</li>
+ *   <li>{@code blueprints.persistence.dir}: keep the blueprints in memory and
+ *   log them to that directory, so they survive a restart. A snapshot is
+ *   taken each time {@code blueprints.persistence.snapshot-after-bytes} of log
+ *   are written;</li>
+ *   <li>neither: the blueprints only live in memory.</li>
+ * </ul>
+ * With {@code blueprints.persistence.cache-weight} set, the most recently read
+ * blueprints, up to that many points in total, are also kept on the heap in a
+ * {@link CachingBlueprintPersistence}.
+ */
+@Configuration
+public class PersistenceConfiguration {
+
+    @Bean
+    public BlueprintsPersistence blueprintsPersistence(@Value("${blueprints.persistence.archive:}") String archive,
+            @Value("${blueprints.persistence.dir:}") String directory,
+            @Value("${blueprints.persistence.snapshot-after-bytes:" + LogBlueprintPersistence.DEFAULT_SNAPSHOT_AFTER_BYTES + "}")
+            long snapshotAfterBytes,
+            @Value("${blueprints.persistence.cache-weight:0}") long cacheWeight) throws IOException {
+        BlueprintsPersistence store = store(archive, directory, snapshotAfterBytes);
+        if (cacheWeight > 0) {
+            return new CachingBlueprintPersistence(store, cacheWeight);
+        }
+        return store;
+    }
+
+    private static BlueprintsPersistence store(String archive, String directory, long snapshotAfterBytes)
+            throws IOException {
+        if (!archive.isEmpty() && !directory.isEmpty()) {
+            throw new IllegalStateException(
+                    "Set either blueprints.persistence.archive or blueprints.persistence.dir, not both");
+        }
+        if (!archive.isEmpty()) {
+            return new ArchiveBlueprintPersistence(Paths.get(archive));
+        }
+        if (directory.isEmpty()) {
+            return new InMemoryBlueprintPersistence();
+        }
+        return new LogBlueprintPersistence(Paths.get(directory), snapshotAfterBytes);
+    }
+}
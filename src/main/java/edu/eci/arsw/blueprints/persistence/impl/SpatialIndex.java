@@ -0,0 +1,389 @@
+package edu.eci.arsw.blueprints.persistence.impl;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A uniform grid over the bounding boxes of the stored blueprints, for the
+ * area and nearest queries of {@link InMemoryBlueprintPersistence}.
+ *
+ * The plane is split in square cells of {@code cellSize} units, and every
+ * blueprint is listed in each cell its bounding box touches. An area query
+ * only looks at the cells under the area, and a nearest query at the cells in
+ * rings around the position, growing until no cell further out can hold
+ * anything closer than what was found. Both cost about the number of
+ * blueprints near the query instead of the number stored. A blueprint whose
+ * box would span more than {@link #MAX_CELLS} cells is kept in a separate list
+ * that every query checks, so a few huge drawings do not fill the grid. When
+ * a query would visit more cells than there are blueprints, it checks every
+ * blueprint instead, so it is never worse than a scan.
+ *
+ * Blueprints without points, author or name are not indexed. There is no
+ * lock over the whole grid: the entries and the cells are concurrent maps, a
+ * change of one blueprint is made inside the compute of its key and each of
+ * its cells is changed inside the compute of that cell, so changes to
+ * blueprints in unrelated cells do not wait for each other, nor for queries.
+ * A query runs on the weakly consistent view of the maps: a blueprint moved
+ * while it runs may be found at its old place, its new one or neither, but
+ * never twice.
+ */
+final class SpatialIndex {
+
+    static final int DEFAULT_CELL_SIZE = 256;
+
+    static final int MAX_CELLS = 64;
+
+    private static final Comparator<Blueprint> ORDER = Comparator.comparing(Blueprint::getAuthor)
+            .thenComparing(Blueprint::getName);
+
+    private final int cellSize;
+
+    private final ConcurrentMap<Tuple<String, String>, Entry> entries = new ConcurrentHashMap<>();
+
+    // Each set is only changed inside the compute of its cell
+    private final ConcurrentMap<Long, Set<Entry>> cells = new ConcurrentHashMap<>();
+
+    private final Set<Entry> large = ConcurrentHashMap.newKeySet();
+
+    // Cells ever used, so rings stop at the edge of the data; never shrinks
+    private final AtomicInteger minCellX = new AtomicInteger(Integer.MAX_VALUE);
+
+    private final AtomicInteger minCellY = new AtomicInteger(Integer.MAX_VALUE);
+
+    private final AtomicInteger maxCellX = new AtomicInteger(Integer.MIN_VALUE);
+
+    private final AtomicInteger maxCellY = new AtomicInteger(Integer.MIN_VALUE);
+
+    SpatialIndex(int cellSize) {
+        if (cellSize < 1) {
+            throw new IllegalArgumentException("Invalid cell size: " + cellSize);
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Indexes the blueprint, replacing the one with the same author and name.
+     */
+    void add(Blueprint bp) {
+        if (bp.getAuthor() == null || bp.getName() == null) {
+            return;
+        }
+        Tuple<String, String> key = new Tuple<>(bp.getAuthor(), bp.getName());
+        int[] box = bp.bounds();
+        entries.compute(key, (k, old) -> {
+            unlink(old);
+            if (box == null) {
+                return null;
+            }
+            Entry entry = new Entry(k, bp, box);
+            link(entry);
+            return entry;
+        });
+    }
+
+    /**
+     * Indexes the given blueprints at once, replacing whatever was indexed. No
+     * two may have the same author and name, as the values of a map. Each cell
+     * is filled once, with all its entries, instead of being changed for every
+     * blueprint. Not safe while other threads use the index.
+     */
+    void load(Collection<Blueprint> bps) {
+        entries.clear();
+        cells.clear();
+        large.clear();
+        Map<Long, List<Entry>> byCell = new HashMap<>();
+        for (Blueprint bp : bps) {
+            int[] box = bp.bounds();
+            if (box == null || bp.getAuthor() == null || bp.getName() == null) {
+                continue;
+            }
+            Entry entry = new Entry(new Tuple<>(bp.getAuthor(), bp.getName()), bp, box);
+            entries.put(entry.key, entry);
+            int fromX = cell(entry.minX);
+            int fromY = cell(entry.minY);
+            int toX = cell(entry.maxX);
+            int toY = cell(entry.maxY);
+            minCellX.accumulateAndGet(fromX, Math::min);
+            minCellY.accumulateAndGet(fromY, Math::min);
+            maxCellX.accumulateAndGet(toX, Math::max);
+            maxCellY.accumulateAndGet(toY, Math::max);
+            if (((long) toX - fromX + 1) * ((long) toY - fromY + 1) > MAX_CELLS) {
+                large.add(entry);
+                continue;
+            }
+            for (int cx = fromX; cx <= toX; cx++) {
+                for (int cy = fromY; cy <= toY; cy++) {
+                    byCell.computeIfAbsent(key(cx, cy), k -> new ArrayList<>()).add(entry);
+                }
+            }
+        }
+        for (Map.Entry<Long, List<Entry>> cell : byCell.entrySet()) {
+            Set<Entry> linked = ConcurrentHashMap.newKeySet(cell.getValue().size());
+            linked.addAll(cell.getValue());
+            cells.put(cell.getKey(), linked);
+        }
+    }
+
+    void remove(String author, String name) {
+        entries.computeIfPresent(new Tuple<>(author, name), (k, old) -> {
+            unlink(old);
+            return null;
+        });
+    }
+
+    /**
+     * @return the blueprints whose bounding box intersects the area, in
+     *    (author, name) order, at most limit of them
+     */
+    List<Blueprint> intersecting(int minX, int minY, int maxX, int maxY, int limit) {
+        List<Blueprint> found = new ArrayList<>();
+        int fromX = Math.max(cell(minX), minCellX.get());
+        int fromY = Math.max(cell(minY), minCellY.get());
+        int toX = Math.min(cell(maxX), maxCellX.get());
+        int toY = Math.min(cell(maxY), maxCellY.get());
+        if (fromX > toX || fromY > toY) {
+            // Past the edge of every indexed box
+            return found;
+        }
+        if (((long) toX - fromX + 1) * ((long) toY - fromY + 1) <= entries.size()) {
+            // The old and the new entry of a blueprint moved meanwhile may both be seen
+            Set<Tuple<String, String>> reported = new HashSet<>();
+            for (int cx = fromX; cx <= toX; cx++) {
+                for (int cy = fromY; cy <= toY; cy++) {
+                    Set<Entry> cell = cells.get(key(cx, cy));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Entry entry : cell) {
+                        // Report an entry only from the first of its cells under the area
+                        if (entry.intersects(minX, minY, maxX, maxY)
+                                && cell(Math.max(entry.minX, minX)) == cx
+                                && cell(Math.max(entry.minY, minY)) == cy
+                                && reported.add(entry.key)) {
+                            found.add(entry.blueprint);
+                        }
+                    }
+                }
+            }
+            for (Entry entry : large) {
+                if (entry.intersects(minX, minY, maxX, maxY) && reported.add(entry.key)) {
+                    found.add(entry.blueprint);
+                }
+            }
+        } else {
+            for (Entry entry : entries.values()) {
+                if (entry.intersects(minX, minY, maxX, maxY)) {
+                    found.add(entry.blueprint);
+                }
+            }
+        }
+        found.sort(ORDER);
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    /**
+     * @return the count blueprints with a point closest to the position,
+     *    closest first, ties in (author, name) order
+     */
+    List<Blueprint> nearest(int x, int y, int count) {
+        Comparator<Candidate> closestFirst = Comparator.<Candidate>comparingLong(c -> c.distance)
+                .thenComparing(c -> c.blueprint, ORDER);
+        PriorityQueue<Candidate> best = new PriorityQueue<>(count + 1, closestFirst.reversed());
+        if (!entries.isEmpty()) {
+            Set<Tuple<String, String>> seen = new HashSet<>();
+            offer(large, seen, x, y, count, best);
+            if (!searchRings(x, y, count, seen, best)) {
+                best.clear();
+                offer(entries.values(), new HashSet<>(), x, y, count, best);
+            }
+        }
+        List<Candidate> closest = new ArrayList<>(best);
+        closest.sort(closestFirst);
+        List<Blueprint> found = new ArrayList<>(closest.size());
+        for (Candidate candidate : closest) {
+            found.add(candidate.blueprint);
+        }
+        return found;
+    }
+
+    /**
+     * Visits the rings of cells around the position until the best found are
+     * closer than any cell left.
+     *
+     * @return false if it gave up because it visited more cells than there
+     *    are blueprints
+     */
+    private boolean searchRings(int x, int y, int count, Set<Tuple<String, String>> seen,
+            PriorityQueue<Candidate> best) {
+        int minCellX = this.minCellX.get();
+        int minCellY = this.minCellY.get();
+        int maxCellX = this.maxCellX.get();
+        int maxCellY = this.maxCellY.get();
+        int cx = cell(x);
+        int cy = cell(y);
+        long first = Math.max(Math.max((long) minCellX - cx, (long) cx - maxCellX),
+                Math.max((long) minCellY - cy, (long) cy - maxCellY));
+        long last = Math.max(Math.max((long) cx - minCellX, (long) maxCellX - cx),
+                Math.max((long) cy - minCellY, (long) maxCellY - cy));
+        long visited = 0;
+        for (long r = Math.max(0, first); r <= last; r++) {
+            if (best.size() == count) {
+                // Every cell of this ring and beyond is at least (r - 1) cells away
+                long reach = (r - 1) * cellSize;
+                if (r > 0 && best.peek().distance < reach * reach) {
+                    return true;
+                }
+            }
+            for (long i = cx - r; i <= cx + r; i++) {
+                long step = (i == cx - r || i == cx + r) ? 1 : 2 * r;
+                for (long j = cy - r; j <= cy + r; j += Math.max(1, step)) {
+                    if (i < minCellX || i > maxCellX || j < minCellY || j > maxCellY) {
+                        continue;
+                    }
+                    if (++visited > entries.size()) {
+                        return false;
+                    }
+                    Set<Entry> cell = cells.get(key((int) i, (int) j));
+                    if (cell != null) {
+                        offer(cell, seen, x, y, count, best);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Offers the candidates not seen before, by author and name, so a
+     * blueprint is offered once even if it is listed in several cells or
+     * moved meanwhile.
+     */
+    private void offer(Collection<Entry> candidates, Set<Tuple<String, String>> seen, int x, int y, int count,
+            PriorityQueue<Candidate> best) {
+        for (Entry entry : candidates) {
+            if (seen.add(entry.key)) {
+                offer(entry, x, y, count, best);
+            }
+        }
+    }
+
+    private void offer(Entry entry, int x, int y, int count, PriorityQueue<Candidate> best) {
+        if (best.size() == count && entry.boxDistanceSquared(x, y) > best.peek().distance) {
+            return;
+        }
+        best.add(new Candidate(entry.blueprint, entry.blueprint.distanceSquaredTo(x, y)));
+        if (best.size() > count) {
+            best.poll();
+        }
+    }
+
+    private void link(Entry entry) {
+        int fromX = cell(entry.minX);
+        int fromY = cell(entry.minY);
+        int toX = cell(entry.maxX);
+        int toY = cell(entry.maxY);
+        minCellX.accumulateAndGet(fromX, Math::min);
+        minCellY.accumulateAndGet(fromY, Math::min);
+        maxCellX.accumulateAndGet(toX, Math::max);
+        maxCellY.accumulateAndGet(toY, Math::max);
+        if (((long) toX - fromX + 1) * ((long) toY - fromY + 1) > MAX_CELLS) {
+            large.add(entry);
+            return;
+        }
+        for (int cx = fromX; cx <= toX; cx++) {
+            for (int cy = fromY; cy <= toY; cy++) {
+                cells.compute(key(cx, cy), (k, cell) -> {
+                    Set<Entry> linked = cell == null ? ConcurrentHashMap.newKeySet() : cell;
+                    linked.add(entry);
+                    return linked;
+                });
+            }
+        }
+    }
+
+    private void unlink(Entry entry) {
+        if (entry == null || large.remove(entry)) {
+            return;
+        }
+        for (int cx = cell(entry.minX); cx <= cell(entry.maxX); cx++) {
+            for (int cy = cell(entry.minY); cy <= cell(entry.maxY); cy++) {
+                cells.computeIfPresent(key(cx, cy), (k, cell) -> {
+                    cell.remove(entry);
+                    return cell.isEmpty() ? null : cell;
+                });
+            }
+        }
+    }
+
+    private int cell(int coordinate) {
+        return Math.floorDiv(coordinate, cellSize);
+    }
+
+    private static Long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+
+    /**
+     * A blueprint and the bounding box it had when it was indexed.
+     */
+    private static final class Entry {
+
+        final Tuple<String, String> key;
+
+        final Blueprint blueprint;
+
+        final int minX;
+
+        final int minY;
+
+        final int maxX;
+
+        final int maxY;
+
+        Entry(Tuple<String, String> key, Blueprint blueprint, int[] box) {
+            this.key = key;
+            this.blueprint = blueprint;
+            this.minX = box[0];
+            this.minY = box[1];
+            this.maxX = box[2];
+            this.maxY = box[3];
+        }
+
+        boolean intersects(int minX, int minY, int maxX, int maxY) {
+            return this.minX <= maxX && minX <= this.maxX && this.minY <= maxY && minY <= this.maxY;
+        }
+
+        /**
+         * @return a lower bound of the distance to the points, from the box
+         */
+        long boxDistanceSquared(int x, int y) {
+            long dx = x < minX ? (long) minX - x : x > maxX ? (long) x - maxX : 0;
+            long dy = y < minY ? (long) minY - y : y > maxY ? (long) y - maxY : 0;
+            return dx * dx + dy * dy;
+        }
+    }
+
+    private static final class Candidate {
+
+        final Blueprint blueprint;
+
+        final long distance;
+
+        Candidate(Blueprint blueprint, long distance) {
+            this.blueprint = blueprint;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package edu.eci.arsw.blueprints.persistence.impl;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.ToLongFunction;
+
+/**
+ * A cache bounded by weight that evicts the least recently used entries, for
+ * {@link CachingBlueprintPersistence} and for the copies the service keeps of
+ * stored blueprints.
+ *
+ * It is split in segments by key, each an access-ordered map with its own lock
+ * and its own share of the weight, so lookups of different keys rarely wait
+ * for each other. An entry heavier than a segment is not kept, and drops the
+ * value cached for its key. The weight of an entry is taken when it is put,
+ * and again on {@link #reweigh(Object, Object)} if the value grows in place.
+ *
+ * Each segment counts the removals it has seen, so a value read from
+ * elsewhere after a miss can be put with
+ * {@link #putIfUnchanged(Object, Object, long)} only if no removal hit its
+ * segment in between: a value read before a change is never cached after it.
+ */
+public final class WeightedLruCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final ToLongFunction<? super V> weigher;
+
+    private final BiConsumer<? super K, ? super V> evicted;
+
+    private final List<Segment> segments = new ArrayList<>(SEGMENTS);
+
+    /**
+     * @param maxWeight the total weight the cache may hold
+     * @param weigher the weight of a value
+     */
+    public WeightedLruCache(long maxWeight, ToLongFunction<? super V> weigher) {
+        this(maxWeight, weigher, (key, value) -> { });
+    }
+
+    /**
+     * @param maxWeight the total weight the cache may hold
+     * @param weigher the weight of a value
+     * @param evicted told of every entry dropped to make room for others,
+     *    holding the lock of its segment
+     */
+    public WeightedLruCache(long maxWeight, ToLongFunction<? super V> weigher,
+                            BiConsumer<? super K, ? super V> evicted) {
+        this.weigher = weigher;
+        this.evicted = evicted;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(new Segment(maxWeight / SEGMENTS));
+        }
+    }
+
+    /**
+     * @return the value of the key, or null if it is not cached
+     */
+    public V get(K key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Node<V> node = segment.entries.get(key);
+            return node == null ? null : node.value;
+        }
+    }
+
+    public void put(K key, V value) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    /**
+     * @return the removals seen by the segment of the key, to pass to
+     *    {@link #putIfUnchanged(Object, Object, long)}
+     */
+    public long stamp(K key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.removals;
+        }
+    }
+
+    /**
+     * Puts the value only if no key of its segment was removed since the
+     * stamp was taken.
+     */
+    public void putIfUnchanged(K key, V value, long stamp) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            if (segment.removals == stamp) {
+                segment.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * Puts the value, or the result of combining it with the cached one.
+     */
+    public void merge(K key, V value, BinaryOperator<V> combine) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Node<V> old = segment.entries.get(key);
+            segment.put(key, old == null ? value : combine.apply(old.value, value));
+        }
+    }
+
+    /**
+     * Drops the value of the key, if any, and counts the removal even if
+     * there was none, so a value read before it is not put afterwards.
+     */
+    public void remove(K key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.removals++;
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Weighs a value again after it grew, if it is still the one cached for
+     * the key.
+     */
+    public void reweigh(K key, V value) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Node<V> node = segment.entries.get(key);
+            if (node != null && node.value == value) {
+                segment.put(key, value);
+            }
+        }
+    }
+
+    /**
+     * @return the weight of the cached values
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    private Segment segmentFor(K key) {
+        int h = key.hashCode();
+        return segments.get((h ^ (h >>> 16)) & (SEGMENTS - 1));
+    }
+
+    private static final class Node<V> {
+
+        final V value;
+
+        final long weight;
+
+        Node(V value, long weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A share of the cache. All its fields are guarded by the segment itself.
+     */
+    private final class Segment {
+
+        final Map<K, Node<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        final long maxWeight;
+
+        long weight;
+
+        // Removals seen by the segment, to reject fills that started before one
+        long removals;
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        void put(K key, V value) {
+            long added = weigher.applyAsLong(value);
+            if (added > maxWeight) {
+                remove(key);
+                return;
+            }
+            Node<V> old = entries.put(key, new Node<>(value, added));
+            weight += added - (old == null ? 0 : old.weight);
+            for (Iterator<Map.Entry<K, Node<V>>> it = entries.entrySet().iterator(); weight > maxWeight && it.hasNext();) {
+                Map.Entry<K, Node<V>> eldest = it.next();
+                it.remove();
+                weight -= eldest.getValue().weight;
+                evicted.accept(eldest.getKey(), eldest.getValue().value);
+            }
+        }
+
+        void remove(K key) {
+            Node<V> old = entries.remove(key);
+            if (old != null) {
+                weight -= old.weight;
+            }
+        }
+    }
+}
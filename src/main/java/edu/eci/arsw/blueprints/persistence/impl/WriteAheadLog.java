@@ -0,0 +1,504 @@
+package edu.eci.arsw.blueprints.persistence.impl;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of blueprint changes.
+ *
+ * Every record holds the whole new state of one blueprint (PUT) or its
+ * removal (DELETE), so replaying a record twice gives the same result and the
+ * log can be rebuilt into a map just by applying the records in order.
+ *
+ * A record is an int payload length, the CRC32 of the payload and the payload:
+ * <pre>
+ *   byte type, string author, string name
+ *   PUT only: int version, int pointCount, int x0, int y0, x1, y1, ...
+ * </pre>
+ * Strings are an int byte count (-1 for null) followed by their UTF-8 bytes.
+ *
+ * Appending only copies the record to a buffer in memory. {@link #sync()}
+ * writes the buffer and forces it to disk, with group commit: the first thread
+ * to sync writes everything appended so far, and the threads that arrive while
+ * it forces wait for it and then find their records already durable, so they
+ * share one fsync instead of doing one each.
+ *
+ * The log can be split in segments with {@link #roll(Path)}, and a snapshot,
+ * written with {@link #writeSnapshot(Path, Iterator)}, is a file of PUT records
+ * in the same format.
+ */
+public class WriteAheadLog implements Closeable {
+
+    /**
+     * Receives the records of a log being replayed.
+     */
+    public interface Replayer {
+
+        void put(Blueprint bp);
+
+        void delete(String author, String name);
+    }
+
+    private static final byte PUT = 1;
+
+    private static final byte DELETE = 2;
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private final Object appendLock = new Object();
+
+    // A lock and not a monitor: it is held across the write and the force, and
+    // a virtual thread blocked in a monitor would keep its carrier thread
+    private final Lock syncLock = new ReentrantLock();
+
+    private final CRC32 crc = new CRC32();
+
+    // Segment being written, guarded by syncLock
+    private FileChannel channel;
+
+    // Records appended and not yet written, guarded by appendLock
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+
+    // Buffer swapped with pending by the thread that writes, guarded by syncLock
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+
+    // Bytes appended since the log was opened, guarded by appendLock
+    private long appended;
+
+    private volatile long durable;
+
+    // Value of durable when the current segment was started
+    private volatile long segmentStart;
+
+    private volatile boolean closed;
+
+    // First write or force that failed, set holding syncLock
+    private volatile IOException failure;
+
+    private WriteAheadLog(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Replays the log in the given file, if there is one, and opens it to
+     * append new records after the last one.
+     *
+     * Replay stops at the first record that is incomplete or does not match
+     * its checksum, which is what a crash in the middle of a write leaves
+     * behind; the file is cut there, so new records follow the last good one.
+     *
+     * @param file the log file, created if it does not exist
+     * @param replayer receives the records already in the log, in order
+     * @return the log, ready to append
+     * @throws IOException if the file cannot be read or opened
+     */
+    public static WriteAheadLog open(Path file, Replayer replayer) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long end = replay(channel, replayer);
+            if (end < channel.size()) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+            channel.position(end);
+            return new WriteAheadLog(channel);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Replays a file that must be complete: a log segment that is no longer
+     * written, or a snapshot.
+     *
+     * @param file the file to replay
+     * @param replayer receives the records in the file, in order
+     * @throws IOException if the file cannot be read, or if it has an
+     *    incomplete or corrupt record
+     */
+    public static void replay(Path file, Replayer replayer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = replay(channel, replayer);
+            if (end < channel.size()) {
+                throw new IOException("Corrupt record in " + file + " at byte " + end);
+            }
+        }
+    }
+
+    /**
+     * Writes the given blueprints to a new file as PUT records and forces it
+     * to disk. Replaying the file stores the blueprints again.
+     *
+     * @param file the file to write, replaced if it exists
+     * @param blueprints the blueprints to write
+     * @throws IOException if the file cannot be written
+     */
+    public static void writeSnapshot(Path file, Iterator<Blueprint> blueprints) throws IOException {
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            CRC32 crc = new CRC32();
+            while (blueprints.hasNext()) {
+                Blueprint bp = blueprints.next();
+                byte[] author = bytes(bp.getAuthor());
+                byte[] name = bytes(bp.getName());
+                int payload = putSize(author, name, bp.pointCount());
+                if (buffer.remaining() < HEADER_SIZE + payload) {
+                    write(out, buffer);
+                    if (buffer.capacity() < HEADER_SIZE + payload) {
+                        buffer = ByteBuffer.allocate(HEADER_SIZE + payload);
+                    }
+                }
+                putRecord(buffer, crc, bp, author, name, payload);
+            }
+            write(out, buffer);
+            out.force(true);
+        }
+    }
+
+    /**
+     * Appends the new state of a blueprint.
+     *
+     * @param bp the blueprint as stored
+     * @throws IllegalStateException if the log is closed
+     */
+    public void appendPut(Blueprint bp) {
+        byte[] author = bytes(bp.getAuthor());
+        byte[] name = bytes(bp.getName());
+        int payload = putSize(author, name, bp.pointCount());
+        synchronized (appendLock) {
+            putRecord(reserve(payload), crc, bp, author, name, payload);
+            appended += HEADER_SIZE + payload;
+        }
+    }
+
+    /**
+     * Appends the removal of a blueprint.
+     *
+     * @param author the author of the removed blueprint
+     * @param name the name of the removed blueprint
+     * @throws IllegalStateException if the log is closed
+     */
+    public void appendDelete(String author, String name) {
+        byte[] authorBytes = bytes(author);
+        byte[] nameBytes = bytes(name);
+        int payload = 1 + stringSize(authorBytes) + stringSize(nameBytes);
+        synchronized (appendLock) {
+            ByteBuffer buffer = reserve(payload);
+            int start = buffer.position() + HEADER_SIZE;
+            buffer.position(start);
+            buffer.put(DELETE);
+            putString(buffer, authorBytes);
+            putString(buffer, nameBytes);
+            seal(buffer, crc, start, payload);
+            appended += HEADER_SIZE + payload;
+        }
+    }
+
+    /**
+     * Makes every record appended before the call durable.
+     *
+     * @throws IOException if the records cannot be written or forced to disk;
+     *    the log is then closed, since the file may end with a partial record
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized (appendLock) {
+            target = appended;
+        }
+        if (durable >= target) {
+            return;
+        }
+        syncLock.lock();
+        try {
+            if (durable < target) {
+                flush();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Starts a new segment: the records appended so far are made durable in
+     * the current file, which is then closed, and the next records go to the
+     * given file.
+     *
+     * @param next the file of the new segment; it must not exist
+     * @throws IOException if the current segment cannot be synced or the new
+     *    one cannot be created
+     */
+    public void roll(Path next) throws IOException {
+        syncLock.lock();
+        try {
+            FileChannel nextChannel = FileChannel.open(next, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try {
+                flush();
+            } catch (IOException ex) {
+                nextChannel.close();
+                Files.deleteIfExists(next);
+                throw ex;
+            }
+            channel.close();
+            channel = nextChannel;
+            segmentStart = durable;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * @return the first write or force that failed, after which the log is
+     *    closed, or null if none did
+     */
+    public IOException getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return the number of bytes made durable in the current segment
+     */
+    public long segmentSize() {
+        return durable - segmentStart;
+    }
+
+    /**
+     * Syncs the records appended so far and closes the file. Appending to a
+     * closed log fails.
+     */
+    @Override
+    public void close() throws IOException {
+        boolean open;
+        synchronized (appendLock) {
+            open = !closed;
+            closed = true;
+        }
+        syncLock.lock();
+        try {
+            try {
+                if (open && failure == null) {
+                    flush();
+                }
+            } finally {
+                channel.close();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the records appended so far to the current segment and forces
+     * them to disk. Must be called holding syncLock.
+     */
+    private void flush() throws IOException {
+        if (failure != null) {
+            throw new IOException("The blueprint log could not be written", failure);
+        }
+        ByteBuffer batch;
+        long end;
+        synchronized (appendLock) {
+            batch = pending;
+            pending = spare;
+            end = appended;
+        }
+        try {
+            write(channel, batch);
+            channel.force(false);
+        } catch (IOException ex) {
+            failure = ex;
+            closed = true;
+            throw ex;
+        } finally {
+            batch.clear();
+            spare = batch;
+        }
+        durable = end;
+    }
+
+    private ByteBuffer reserve(int payload) {
+        if (closed) {
+            throw new IllegalStateException("The blueprint log is closed");
+        }
+        int needed = HEADER_SIZE + payload;
+        if (pending.remaining() < needed) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(2 * pending.capacity(), pending.position() + needed));
+            pending.flip();
+            bigger.put(pending);
+            pending = bigger;
+        }
+        return pending;
+    }
+
+    /**
+     * Writes a PUT record at the position of the buffer, which must have room
+     * for it.
+     */
+    private static void putRecord(ByteBuffer buffer, CRC32 crc, Blueprint bp, byte[] author, byte[] name,
+            int payload) {
+        int start = buffer.position() + HEADER_SIZE;
+        int points = bp.pointCount();
+        buffer.position(start);
+        buffer.put(PUT);
+        putString(buffer, author);
+        putString(buffer, name);
+        buffer.putInt(bp.getVersion());
+        buffer.putInt(points);
+        for (int i = 0; i < points; i++) {
+            buffer.putInt(bp.xAt(i));
+            buffer.putInt(bp.yAt(i));
+        }
+        seal(buffer, crc, start, payload);
+    }
+
+    /**
+     * Fills in the header of the record whose payload starts at start.
+     */
+    private static void seal(ByteBuffer buffer, CRC32 crc, int start, int payload) {
+        crc.reset();
+        crc.update(buffer.array(), start, payload);
+        buffer.putInt(start - HEADER_SIZE, payload);
+        buffer.putInt(start - HEADER_SIZE + 4, (int) crc.getValue());
+    }
+
+    private static int putSize(byte[] author, byte[] name, int points) {
+        return 1 + stringSize(author) + stringSize(name) + 8 + 8 * points;
+    }
+
+    /**
+     * Writes the content of the buffer and clears it.
+     */
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * @return the position right after the last good record
+     */
+    private static long replay(FileChannel channel, Replayer replayer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        CRC32 crc = new CRC32();
+        long size = channel.size();
+        long position = 0;
+        boolean eof = false;
+        buffer.limit(0);
+        while (true) {
+            if (buffer.remaining() < HEADER_SIZE && !eof) {
+                eof = fill(channel, buffer);
+                continue;
+            }
+            if (buffer.remaining() < HEADER_SIZE) {
+                return position;
+            }
+            int payload = buffer.getInt(buffer.position());
+            int checksum = buffer.getInt(buffer.position() + 4);
+            if (payload <= 0 || payload > size - position - HEADER_SIZE) {
+                return position;
+            }
+            if (buffer.remaining() < HEADER_SIZE + payload) {
+                if (eof) {
+                    return position;
+                }
+                if (buffer.capacity() < HEADER_SIZE + payload) {
+                    ByteBuffer bigger = ByteBuffer.allocate(HEADER_SIZE + payload);
+                    bigger.put(buffer);
+                    bigger.flip();
+                    buffer = bigger;
+                }
+                eof = fill(channel, buffer);
+                continue;
+            }
+            int start = buffer.position() + HEADER_SIZE;
+            crc.reset();
+            crc.update(buffer.array(), start, payload);
+            if ((int) crc.getValue() != checksum) {
+                return position;
+            }
+            buffer.position(start);
+            apply(buffer, replayer);
+            buffer.position(start + payload);
+            position += HEADER_SIZE + payload;
+        }
+    }
+
+    /**
+     * Moves the unread bytes to the start of the buffer and reads more after
+     * them.
+     *
+     * @return whether the end of the file was reached
+     */
+    private static boolean fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.compact();
+        int read = 0;
+        while (buffer.hasRemaining() && (read = channel.read(buffer)) >= 0) {
+            // keep reading until the buffer is full or the file ends
+        }
+        buffer.flip();
+        return read < 0;
+    }
+
+    private static void apply(ByteBuffer buffer, Replayer replayer) {
+        byte type = buffer.get();
+        String author = getString(buffer);
+        String name = getString(buffer);
+        if (type == DELETE) {
+            replayer.delete(author, name);
+            return;
+        }
+        int version = buffer.getInt();
+        int points = buffer.getInt();
+        int[] coordinates = new int[2 * points];
+        buffer.asIntBuffer().get(coordinates);
+        Blueprint bp = new Blueprint(author, name);
+        bp.replacePoints(coordinates, points);
+        bp.setVersion(version);
+        replayer.put(bp);
+    }
+
+    private static byte[] bytes(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringSize(byte[] bytes) {
+        return 4 + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return s;
+    }
+}
@@ -0,0 +1,13 @@
+package edu.eci.arsw.blueprints.services;
+
+import edu.eci.arsw.blueprints.model.BlueprintChange;
+
+/**
+ * Told by {@link BlueprintsServices} about every blueprint it creates, updates
+ * or deletes, on the thread that made the change, right after it.
+ * Implementations must return quickly and must not block.
+ */
+public interface BlueprintChangeListener {
+
+    void changed(BlueprintChange change);
+}
@@ -0,0 +1,175 @@
+package edu.eci.arsw.blueprints.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.persistence.impl.Tuple;
+import edu.eci.arsw.blueprints.persistence.impl.WeightedLruCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the JSON of recently served blueprints, and its gzip encoding once it
+ * is asked for, so a blueprint that did not change is written to the response
+ * as it is instead of going through Jackson again.
+ *
+ * An entry is kept by (author, name) and only served for the blueprint it was
+ * encoded from, compared by version and point hash, so an entry left behind by
+ * a change is encoded again rather than served. {@link BlueprintsServices}
+ * still drops entries on every change, to free their bytes early.
+ *
+ * The cache is bounded by the bytes it holds, set with
+ * {@code blueprints.response-cache.max-bytes}, and evicts the least recently
+ * served blueprints. It is a {@link WeightedLruCache}, split in segments with
+ * their own lock and share of the bytes, so serving different blueprints
+ * does not contend on one lock; a blueprint whose encodings take more than a
+ * segment's share is encoded on every call. With 0 it keeps nothing.
+ */
+@Component
+public class BlueprintResponseCache {
+
+    public static final long DEFAULT_MAX_BYTES = 16L << 20;
+
+    private final ObjectWriter writer;
+
+    private final WeightedLruCache<Tuple<String, String>, Encoded> entries;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    @Autowired
+    public BlueprintResponseCache(ObjectMapper objectMapper,
+            @Value("${blueprints.response-cache.max-bytes:" + DEFAULT_MAX_BYTES + "}") long maxBytes) {
+        this.writer = objectMapper.writerFor(Blueprint.class);
+        this.entries = new WeightedLruCache<>(maxBytes, Encoded::size);
+    }
+
+    /**
+     * @param bp the blueprint to serve
+     * @return its JSON, from the cache if it was encoded before at the same
+     *    version and with the same points
+     */
+    public Encoded encode(Blueprint bp) {
+        Tuple<String, String> key = new Tuple<>(bp.getAuthor(), bp.getName());
+        Encoded cached = entries.get(key);
+        if (cached != null && cached.version == bp.getVersion() && cached.contentHash == bp.contentHash()) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        byte[] json;
+        try {
+            json = writer.writeValueAsBytes(bp);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        Encoded encoded = new Encoded(key, bp.getVersion(), bp.contentHash(), json);
+        entries.put(key, encoded);
+        return encoded;
+    }
+
+    /**
+     * Drops the encoded blueprint, if it is cached.
+     */
+    public void invalidate(String author, String name) {
+        entries.remove(new Tuple<>(author, name));
+    }
+
+    /**
+     * @return the number of blueprints served from the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of blueprints that had to be encoded
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return the bytes held by the cache
+     */
+    public long getBytes() {
+        return entries.getWeight();
+    }
+
+    /**
+     * The encodings of one version of a blueprint. They must not be modified.
+     */
+    public final class Encoded {
+
+        private final Tuple<String, String> key;
+
+        private final int version;
+
+        private final long contentHash;
+
+        private final byte[] json;
+
+        private volatile byte[] gzip;
+
+        Encoded(Tuple<String, String> key, int version, long contentHash, byte[] json) {
+            this.key = key;
+            this.version = version;
+            this.contentHash = contentHash;
+            this.json = json;
+        }
+
+        /**
+         * @return the JSON of the blueprint, in UTF-8
+         */
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * @return the JSON of the blueprint compressed with gzip, compressed
+         *    on the first call and kept with the entry afterwards
+         */
+        public byte[] getGzip() {
+            byte[] compressed = gzip;
+            if (compressed == null) {
+                compressed = compress(json);
+                boolean first;
+                synchronized (this) {
+                    first = gzip == null;
+                    if (first) {
+                        gzip = compressed;
+                    }
+                    compressed = gzip;
+                }
+                if (first) {
+                    entries.reweigh(key, this);
+                }
+            }
+            return compressed;
+        }
+
+        private long size() {
+            byte[] compressed = gzip;
+            return json.length + (compressed == null ? 0 : compressed.length);
+        }
+    }
+
+    private static byte[] compress(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+}
@@ -5,17 +5,29 @@
  */
 package edu.eci.arsw.blueprints.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import edu.eci.arsw.blueprints.filter.FilterBlueprints;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSimplify;
 import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintChange;
+import edu.eci.arsw.blueprints.model.BlueprintKey;
+import edu.eci.arsw.blueprints.model.BlueprintPage;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
 import edu.eci.arsw.blueprints.model.Point;
 import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
 import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
 import edu.eci.arsw.blueprints.persistence.BlueprintsPersistence;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
 
 import edu.eci.arsw.blueprints.persistence.impl.Tuple;
+import edu.eci.arsw.blueprints.persistence.impl.WeightedLruCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 /**
@@ -25,14 +37,107 @@ import org.springframework.stereotype.Service;
 @Service
 public class BlueprintsServices {
    
-    @Autowired
-    BlueprintsPersistence bpp;
+    private final BlueprintsPersistence bpp;
+
+    private final FilterBlueprints fpp;
+
+    private final FilterPipeline filterPipeline;
+
+    /**
+     * Coarsest level of detail of {@link #getBlueprintAtLevel(String, String, int)}.
+     */
+    public static final int MAX_LEVEL = 3;
+
+    // Tolerancia de simplificación de cada nivel de detalle, desde el nivel 1
+    private static final double[] LEVEL_TOLERANCES = { 2, 8, 32 };
+
+    /**
+     * Most filters in a chain of {@link #getFilteredBlueprint(String, String, List)}.
+     */
+    public static final int MAX_FILTERS = 8;
+
+    /**
+     * Default weight of the filtered copies kept, in points.
+     */
+    public static final long DEFAULT_FILTER_CACHE_WEIGHT = 1L << 22;
+
+    /**
+     * Default weight of the levels of detail kept, in points.
+     */
+    public static final long DEFAULT_LEVEL_CACHE_WEIGHT = 1L << 22;
+
+    // Peso de una copia filtrada además de sus puntos
+    private static final int FILTERED_ENTRY_WEIGHT = 16;
+
+    // Planos filtrados por (autor, nombre) y cadena de filtros; una entrada sirve mientras su versión y sus puntos sean los del plano guardado
+    private final WeightedLruCache<Tuple<String, String>, Map<String, Derived<Blueprint>>> filteredBlueprints;
+
+    // Niveles de detalle de cada plano, del 1 al MAX_LEVEL, todos de la misma versión y los mismos puntos
+    private final WeightedLruCache<Tuple<String, String>, Derived<Blueprint[]>> simplifiedBlueprints;
+
+    private final BlueprintResponseCache responses;
+
+    private final List<BlueprintChangeListener> listeners = new CopyOnWriteArrayList<>();
 
+    public BlueprintsServices(BlueprintsPersistence bpp, FilterBlueprints fpp, FilterPipeline filterPipeline) {
+        this(bpp, fpp, filterPipeline, new BlueprintResponseCache(new ObjectMapper(), BlueprintResponseCache.DEFAULT_MAX_BYTES));
+    }
+
+    public BlueprintsServices(BlueprintsPersistence bpp, FilterBlueprints fpp, FilterPipeline filterPipeline,
+                              BlueprintResponseCache responses) {
+        this(bpp, fpp, filterPipeline, responses, DEFAULT_FILTER_CACHE_WEIGHT);
+    }
+
+    /**
+     * @param filterCacheWeight the points the filtered copies may hold in
+     *    all, set with {@code blueprints.filter-cache.max-points}
+     */
+    public BlueprintsServices(BlueprintsPersistence bpp, FilterBlueprints fpp, FilterPipeline filterPipeline,
+                              BlueprintResponseCache responses, long filterCacheWeight) {
+        this(bpp, fpp, filterPipeline, responses, filterCacheWeight, DEFAULT_LEVEL_CACHE_WEIGHT);
+    }
+
+    /**
+     * @param filterCacheWeight the points the filtered copies may hold in
+     *    all, set with {@code blueprints.filter-cache.max-points}
+     * @param levelCacheWeight the points the levels of detail may hold in
+     *    all, set with {@code blueprints.level-cache.max-points}
+     */
     @Autowired
-    FilterBlueprints fpp;
+    public BlueprintsServices(BlueprintsPersistence bpp, FilterBlueprints fpp, FilterPipeline filterPipeline,
+                              BlueprintResponseCache responses,
+                              @Value("${blueprints.filter-cache.max-points:" + DEFAULT_FILTER_CACHE_WEIGHT + "}") long filterCacheWeight,
+                              @Value("${blueprints.level-cache.max-points:" + DEFAULT_LEVEL_CACHE_WEIGHT + "}") long levelCacheWeight) {
+        this.bpp = bpp;
+        this.fpp = fpp;
+        this.filterPipeline = filterPipeline;
+        this.responses = responses;
+        this.filteredBlueprints = new WeightedLruCache<>(filterCacheWeight, BlueprintsServices::weighFiltered);
+        this.simplifiedBlueprints = new WeightedLruCache<>(levelCacheWeight, BlueprintsServices::weighLevels);
+    }
     
     public void addNewBlueprint(Blueprint bp) throws BlueprintPersistenceException {
         bpp.saveBlueprint(bp);
+        invalidate(bp.getAuthor(), bp.getName());
+        publish(BlueprintChange.created(bp));
+    }
+
+    /**
+     * 
+     * @param bps new blueprints
+     * @return for each blueprint, in order, null if it was saved, or the
+     *    exception that rejected it
+     */
+    public List<BlueprintPersistenceException> addNewBlueprints(List<Blueprint> bps) {
+        List<BlueprintPersistenceException> errors = bpp.saveBlueprints(bps);
+        for (int i = 0; i < bps.size(); i++) {
+            if (errors.get(i) == null) {
+                Blueprint bp = bps.get(i);
+                invalidate(bp.getAuthor(), bp.getName());
+                publish(BlueprintChange.created(bp));
+            }
+        }
+        return errors;
     }
 
     public Set<String> getAllBlueprints(){
@@ -54,6 +159,49 @@ public class BlueprintsServices {
         return bpp.getBlueprint(author, name);
     }
     
+    /**
+     * 
+     * @param keys the author and name of each blueprint
+     * @return for each key, in order, its blueprint, or null if there is none
+     */
+    public List<Blueprint> getBlueprints(List<BlueprintKey> keys){
+        return bpp.getBlueprints(keys);
+    }
+
+    /**
+     * 
+     * @param minX left edge of the area
+     * @param minY top edge of the area
+     * @param maxX right edge of the area, included
+     * @param maxY bottom edge of the area, included
+     * @param limit maximum number of blueprints to return
+     * @return the blueprints whose bounding box intersects the area, in
+     *    (author, name) order
+     */
+    public List<Blueprint> getBlueprintsInArea(int minX, int minY, int maxX, int maxY, int limit){
+        return bpp.getBlueprintsInArea(minX, minY, maxX, maxY, limit);
+    }
+
+    /**
+     * 
+     * @param x x coordinate of the position
+     * @param y y coordinate of the position
+     * @param count maximum number of blueprints to return
+     * @return the blueprints with a point closest to the position, closest first
+     */
+    public List<Blueprint> getNearestBlueprints(int x, int y, int count){
+        return bpp.getNearestBlueprints(x, y, count);
+    }
+
+    /**
+     * 
+     * @param blueprint a blueprint read from this service
+     * @return its JSON, reused while the blueprint does not change
+     */
+    public BlueprintResponseCache.Encoded getEncodedBlueprint(Blueprint blueprint){
+        return responses.encode(blueprint);
+    }
+
     /**
      * 
      * @param author blueprint's author
@@ -65,39 +213,329 @@ public class BlueprintsServices {
         return authorBlueprints;
     }
 
-    public Blueprint FilterSuprimePoints(int blueprint) throws BlueprintPersistenceException {
-        Set<Blueprint> authorBlueprints = bpp.getAllBlueprints();
-        List<Blueprint> myList = new ArrayList<>(authorBlueprints);
-        Blueprint blueprint1Filter = myList.get(blueprint);
-        fpp.filterBlueprint(blueprint1Filter);
-        return blueprint1Filter;
+    /**
+     * 
+     * @param author blueprint's author
+     * @return a tag that changes whenever a blueprint of the given author is
+     *    saved, changed or deleted
+     * @throws BlueprintNotFoundException if the given author doesn't exist
+     */
+    public String getAuthorTag(String author) throws BlueprintNotFoundException {
+        return bpp.getAuthorTag(author);
     }
 
-    public void updateBlueprint(String author, String bpname, Blueprint updatedBlueprint) throws BlueprintNotFoundException, BlueprintPersistenceException {
-        Blueprint existingBlueprint = getBlueprintsByAuthor(author)
-                .stream()
-                .filter(bp -> bp.getName().equals(bpname))
-                .findFirst()
-                .orElseThrow(() -> new BlueprintNotFoundException("Blueprint not found"));
+    /**
+     * 
+     * @return a lazy stream over all the blueprints
+     */
+    public Stream<Blueprint> streamAllBlueprints(){
+        return bpp.streamAllBlueprints();
+    }
+
+    /**
+     * 
+     * @param author blueprint's author
+     * @return a lazy stream over the blueprints of the given author
+     * @throws BlueprintNotFoundException if the given author doesn't exist
+     */
+    public Stream<Blueprint> streamBlueprintsByAuthor(String author) throws BlueprintNotFoundException{
+        return bpp.streamBlueprintsByAuthor(author);
+    }
+
+    /**
+     * 
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit maximum number of blueprints in the page
+     * @return the page of blueprints, in (author, name) order
+     * @throws IllegalArgumentException if the cursor is not one returned by this service
+     */
+    public BlueprintPage getBlueprintsPage(String cursor, int limit){
+        String author = null;
+        String name = null;
+        if (cursor != null) {
+            String position;
+            try {
+                position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+            int separator = position.indexOf(':');
+            int authorLength;
+            try {
+                authorLength = Integer.parseInt(position.substring(0, Math.max(separator, 0)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+            }
+            if (authorLength < 0 || separator + 1 + authorLength > position.length()) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            author = position.substring(separator + 1, separator + 1 + authorLength);
+            name = position.substring(separator + 1 + authorLength);
+        }
+
+        List<Blueprint> blueprints = bpp.getBlueprintsAfter(author, name, limit + 1);
+        if (blueprints.size() <= limit) {
+            return new BlueprintPage(blueprints, null);
+        }
+        blueprints = blueprints.subList(0, limit);
+        Blueprint last = blueprints.get(limit - 1);
+        String position = last.getAuthor().length() + ":" + last.getAuthor() + last.getName();
+        String nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+        return new BlueprintPage(blueprints, nextCursor);
+    }
 
-        if (existingBlueprint.getVersion() != updatedBlueprint.getVersion()) {
-            throw new BlueprintPersistenceException("El blueprint ha sido actualizado por otro usuario.");
+    /**
+     * Filters a blueprint with the default filter, without changing the stored
+     * one. Filtered blueprints are cached by version and points, so filtering
+     * the same blueprint again is a lookup.
+     * 
+     * @param author blueprint's author
+     * @param name blueprint's name
+     * @return the filtered copy of the blueprint
+     * @throws BlueprintNotFoundException if there is no such blueprint
+     * @throws BlueprintPersistenceException if the blueprint cannot be filtered
+     */
+    public Blueprint getFilteredBlueprint(String author, String name) throws BlueprintNotFoundException, BlueprintPersistenceException {
+        return getFilteredBlueprint(author, name, Collections.emptyList());
+    }
+
+    /**
+     * Filters a blueprint with a chain of filters, without changing the stored
+     * one. Filtered blueprints are cached by chain, and served only for the
+     * version and points they were filtered from. The cache is bounded by
+     * the points it holds, and evicts the least recently filtered blueprints,
+     * so clients asking for many different chains cannot make it grow
+     * without limit.
+     * 
+     * @param author blueprint's author
+     * @param name blueprint's name
+     * @param filterNames the filters to apply, in order; the default filter if empty
+     * @return the filtered copy of the blueprint
+     * @throws BlueprintNotFoundException if there is no such blueprint
+     * @throws BlueprintPersistenceException if the blueprint cannot be filtered
+     * @throws IllegalArgumentException if a filter name is unknown, or there
+     *    are more than {@link #MAX_FILTERS}
+     */
+    public Blueprint getFilteredBlueprint(String author, String name, List<String> filterNames) throws BlueprintNotFoundException, BlueprintPersistenceException {
+        if (filterNames.size() > MAX_FILTERS) {
+            throw new IllegalArgumentException("At most " + MAX_FILTERS + " filters can be chained");
+        }
+        Blueprint blueprint = bpp.getBlueprint(author, name);
+        String chain = String.join(",", filterNames);
+        Tuple<String, String> key = new Tuple<>(author, name);
+        Map<String, Derived<Blueprint>> byChain = filteredBlueprints.get(key);
+        Derived<Blueprint> filtered = byChain == null ? null : byChain.get(chain);
+        if (filtered == null || !filtered.isFrom(blueprint)) {
+            filtered = new Derived<>(blueprint,
+                    filterNames.isEmpty() ? fpp.filteredCopy(blueprint) : filterPipeline.apply(blueprint, filterNames));
+            filteredBlueprints.merge(key, Collections.singletonMap(chain, filtered), BlueprintsServices::addChain);
         }
+        return filtered.value;
+    }
 
-        existingBlueprint.setPoints(updatedBlueprint.getPoints());
-        existingBlueprint.setVersion(existingBlueprint.getVersion() + 1);
+    /**
+     * Simplifies a blueprint to a level of detail, for clients that draw it
+     * small, without changing the stored one. Each level drops the points
+     * closer than its tolerance to the simplified drawing, with
+     * {@link FilterSimplify}: 2 units at level 1, 8 at level 2 and 32 at
+     * level 3. All the levels of a version are simplified together the first
+     * time one is asked for, each from the points of the level before, and
+     * served only for the version and points they were simplified from; a
+     * level that keeps as many points as the one before shares its copy. The
+     * levels kept are bounded by the points they hold, evicting the least
+     * recently simplified blueprints.
+     * 
+     * @param author blueprint's author
+     * @param name blueprint's name
+     * @param level 0 for the blueprint itself, up to {@link #MAX_LEVEL} for
+     *    the coarsest
+     * @return the blueprint at that level of detail, at its version
+     * @throws BlueprintNotFoundException if there is no such blueprint
+     * @throws IllegalArgumentException if the level is out of range
+     */
+    public Blueprint getBlueprintAtLevel(String author, String name, int level) throws BlueprintNotFoundException {
+        if (level < 0 || level > MAX_LEVEL) {
+            throw new IllegalArgumentException("level must be between 0 and " + MAX_LEVEL);
+        }
+        Blueprint blueprint = bpp.getBlueprint(author, name);
+        if (level == 0) {
+            return blueprint;
+        }
+        Tuple<String, String> key = new Tuple<>(author, name);
+        Derived<Blueprint[]> simplified = simplifiedBlueprints.get(key);
+        if (simplified == null || !simplified.isFrom(blueprint)) {
+            Blueprint[] levels = new Blueprint[MAX_LEVEL];
+            Blueprint previous = blueprint;
+            for (int i = 0; i < MAX_LEVEL; i++) {
+                // Cada nivel se simplifica desde el anterior, que ya tiene menos puntos
+                int[] coordinates = previous.copyCoordinates();
+                int count = FilterSimplify.simplify(coordinates, previous.pointCount(), LEVEL_TOLERANCES[i]);
+                // Los niveles están anidados: con el mismo número de puntos son el mismo dibujo
+                if (count != previous.pointCount()) {
+                    previous = blueprint.copyAs(author, name);
+                    previous.replacePoints(coordinates, count);
+                }
+                levels[i] = previous;
+            }
+            simplified = new Derived<>(blueprint, levels);
+            simplifiedBlueprints.put(key, simplified);
+        }
+        return simplified.value[level - 1];
+    }
+
+    /**
+     * 
+     * @return the names of the filters that can be chained
+     */
+    public Set<String> getFilterNames(){
+        return filterPipeline.getFilterNames();
+    }
+
+    /**
+     * Replaces the points of a blueprint, using its version for optimistic locking.
+     * 
+     * @param author blueprint's author
+     * @param bpname blueprint's name
+     * @param updatedBlueprint the new points, carrying the version they were based on
+     * @throws BlueprintNotFoundException if there is no such blueprint
+     * @throws BlueprintPersistenceException if the blueprint was updated by someone else
+     */
+    public void updateBlueprint(String author, String bpname, Blueprint updatedBlueprint) throws BlueprintNotFoundException, BlueprintPersistenceException {
+        Blueprint newBlueprint = updatedBlueprint.copyAs(author, bpname);
+        newBlueprint.setVersion(updatedBlueprint.getVersion() + 1);
 
-        saveBlueprint(existingBlueprint);
+        bpp.compareAndSetBlueprint(updatedBlueprint.getVersion(), newBlueprint);
+        invalidate(author, bpname);
+        publish(BlueprintChange.updated(newBlueprint));
     }
 
 
 
+    /**
+     * Changes some of the points of a blueprint, using the version of the
+     * patch for optimistic locking, without sending the points that stay.
+     * 
+     * @param author blueprint's author
+     * @param bpname blueprint's name
+     * @param patch the operations, and the version they were based on
+     * @return the patched blueprint, at the next version
+     * @throws BlueprintNotFoundException if there is no such blueprint
+     * @throws BlueprintPersistenceException if the blueprint was updated by someone else
+     * @throws IllegalArgumentException if an operation of the patch is invalid
+     */
+    public Blueprint patchBlueprint(String author, String bpname, BlueprintPatch patch) throws BlueprintNotFoundException, BlueprintPersistenceException {
+        Blueprint patched = bpp.patchBlueprint(author, bpname, patch);
+        invalidate(author, bpname);
+        publish(BlueprintChange.updated(patched));
+        return patched;
+    }
+
     public void saveBlueprint(Blueprint blueprint) throws BlueprintPersistenceException {
         // Implementa la lógica para guardar el plano en tu repositorio
         bpp.updateBlueprints(blueprint);
+        invalidate(blueprint.getAuthor(), blueprint.getName());
+        publish(BlueprintChange.updated(blueprint));
     }
 
     public void deleteBlueprint(String author, String bpname) throws BlueprintNotFoundException {
         bpp.deleteBlueprint(author,bpname);
+        invalidate(author, bpname);
+        publish(BlueprintChange.deleted(author, bpname));
+    }
+
+    /**
+     * Registers a listener to be told about every change made through this
+     * service from now on.
+     * 
+     * @param listener the listener; it must not block
+     */
+    public void addChangeListener(BlueprintChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Drops the encoded, filtered and simplified copies of a blueprint that
+     * changed.
+     */
+    private void invalidate(String author, String name) {
+        responses.invalidate(author, name);
+        Tuple<String, String> key = new Tuple<>(author, name);
+        filteredBlueprints.remove(key);
+        simplifiedBlueprints.remove(key);
+    }
+
+    /**
+     * @return the chains of a blueprint with one more, dropping the ones
+     *    filtered from another version or other points. The maps are not
+     *    changed once cached.
+     */
+    private static Map<String, Derived<Blueprint>> addChain(Map<String, Derived<Blueprint>> chains,
+                                                            Map<String, Derived<Blueprint>> added) {
+        Derived<Blueprint> source = added.values().iterator().next();
+        Map<String, Derived<Blueprint>> merged = new HashMap<>();
+        for (Map.Entry<String, Derived<Blueprint>> chain : chains.entrySet()) {
+            if (chain.getValue().isFromSameAs(source)) {
+                merged.put(chain.getKey(), chain.getValue());
+            }
+        }
+        merged.putAll(added);
+        return merged;
+    }
+
+    private static long weighFiltered(Map<String, Derived<Blueprint>> chains) {
+        long weight = 0;
+        for (Derived<Blueprint> filtered : chains.values()) {
+            weight += FILTERED_ENTRY_WEIGHT + filtered.value.pointCount();
+        }
+        return weight;
+    }
+
+    private static long weighLevels(Derived<Blueprint[]> levels) {
+        long weight = 0;
+        Blueprint previous = null;
+        for (Blueprint level : levels.value) {
+            // Un nivel que comparte la copia del anterior no pesa de nuevo
+            if (level != previous) {
+                weight += FILTERED_ENTRY_WEIGHT + level.pointCount();
+            }
+            previous = level;
+        }
+        return weight;
+    }
+
+    private void publish(BlueprintChange change) {
+        for (BlueprintChangeListener listener : listeners) {
+            listener.changed(change);
+        }
+    }
+
+    /**
+     * A copy made from a stored blueprint, served only for the blueprint it
+     * was made from, compared by version and point hash. The version alone is
+     * not enough: a plain update keeps it and a delete starts it over, so a
+     * reader that filled the cache with an older blueprint after a change
+     * would have it served from then on.
+     */
+    private static final class Derived<T> {
+
+        final int version;
+
+        final long contentHash;
+
+        final T value;
+
+        Derived(Blueprint source, T value) {
+            this.version = source.getVersion();
+            this.contentHash = source.contentHash();
+            this.value = value;
+        }
+
+        boolean isFrom(Blueprint source) {
+            return version == source.getVersion() && contentHash == source.contentHash();
+        }
+
+        boolean isFromSameAs(Derived<?> other) {
+            return version == other.version && contentHash == other.contentHash;
+        }
     }
 }
@@ -0,0 +1,30 @@
+package edu.eci.arsw.blueprints.ui;
+
+import edu.eci.arsw.blueprints.persistence.impl.BlueprintArchive;
+import edu.eci.arsw.blueprints.persistence.impl.LogBlueprintPersistence;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Freezes the blueprints of a log directory into a read-only archive.
+ *
+ * Usage: {@code ArchiveWriter <log directory> <archive file>}
+ */
+public class ArchiveWriter {
+
+    public static void main(String a[]) throws IOException {
+        if (a.length != 2) {
+            System.err.println("Usage: ArchiveWriter <log directory> <archive file>");
+            System.exit(2);
+        }
+        Path archive = Paths.get(a[1]);
+        try (LogBlueprintPersistence log = new LogBlueprintPersistence(Paths.get(a[0]))) {
+            BlueprintArchive.write(archive, log.streamAllBlueprints().iterator());
+        }
+        try (BlueprintArchive written = BlueprintArchive.open(archive)) {
+            System.out.println("Archived " + written.size() + " blueprints to " + archive);
+        }
+    }
+}
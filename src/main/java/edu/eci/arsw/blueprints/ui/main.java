@@ -3,14 +3,14 @@ package edu.eci.arsw.blueprints.ui;
 import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
 import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
 import edu.eci.arsw.blueprints.services.BlueprintsServices;
-import org.springframework.context.ApplicationContext;
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 
 public class main {
 
     public static void main(String a[]) throws BlueprintNotFoundException, BlueprintPersistenceException {
-        ApplicationContext ac = new ClassPathXmlApplicationContext("applicationContext.xml");
-        BlueprintsServices gc = ac.getBean(BlueprintsServices.class);
-        System.out.println(gc.FilterSuprimePoints(0));
+        try (ClassPathXmlApplicationContext ac = new ClassPathXmlApplicationContext("applicationContext.xml")) {
+            BlueprintsServices gc = ac.getBean(BlueprintsServices.class);
+            System.out.println(gc.getFilteredBlueprint("andres", "MyPlane"));
+        }
     }
 }
\ No newline at end of file
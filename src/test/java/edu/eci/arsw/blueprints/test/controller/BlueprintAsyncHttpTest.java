@@ -0,0 +1,125 @@
+package edu.eci.arsw.blueprints.test.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.Controller.RequestExecutors;
+import edu.eci.arsw.blueprints.Controller.RequestExecutors.Pool;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprintsapi.BlueprintsAPIApplication;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Tests the running application with its handlers on the pools of
+ * {@link RequestExecutors}: a read pool of one thread and a queue of one.
+ */
+public class BlueprintAsyncHttpTest {
+
+    private static ServletWebServerApplicationContext context;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeClass
+    public static void start() {
+        context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(BlueprintsAPIApplication.class)
+                .properties("server.port=0", "blueprints.async.enabled=true", "blueprints.async.reads.threads=1",
+                        "blueprints.async.queue=1", "blueprints.async.retry-after-seconds=3",
+                        "blueprints.async.timeout-seconds=1")
+                .run();
+    }
+
+    @AfterClass
+    public static void stop() {
+        context.close();
+    }
+
+    /**
+     * Tests that the blueprints are streamed over HTTP from the read pool.
+     */
+    @Test
+    public void shouldStreamBlueprintsFromThePool() throws IOException {
+        HttpURLConnection connection = get("/api/blueprints/juan", MediaType.APPLICATION_NDJSON_VALUE);
+        try {
+            assertEquals(200, connection.getResponseCode());
+            assertTrue(MediaType.APPLICATION_NDJSON.isCompatibleWith(MediaType.parseMediaType(connection.getContentType())));
+            List<String> lines;
+            try (BufferedReader body = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                lines = body.lines().collect(Collectors.toList());
+            }
+            assertEquals("The sample author juan has two blueprints", 2, lines.size());
+            for (String line : lines) {
+                assertEquals("juan", mapper.readValue(line, Blueprint.class).getAuthor());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Tests that while the read pool is busy, a queued stream is answered
+     * with 503 once the configured timeout passes, and that a stream that
+     * does not fit in the queue is answered with 503 and Retry-After at once.
+     */
+    @Test
+    public void shouldAnswerBusyWhenTheReadPoolIsFull() throws Exception {
+        RequestExecutors executors = context.getBean(RequestExecutors.class);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<String>> running = executors.submit(Pool.READS, () -> {
+            started.countDown();
+            release.await();
+            return ResponseEntity.ok("read");
+        });
+        try {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            HttpURLConnection queued = get("/api/blueprints", MediaType.APPLICATION_NDJSON_VALUE);
+            queued.setReadTimeout(10000);
+            long start = System.nanoTime();
+            try {
+                assertEquals("A stream still queued should time out", 503, queued.getResponseCode());
+                assertTrue("The stream should time out after the configured second",
+                        System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+            } finally {
+                queued.disconnect();
+            }
+
+            HttpURLConnection rejected = get("/api/blueprints", MediaType.APPLICATION_NDJSON_VALUE);
+            try {
+                assertEquals(503, rejected.getResponseCode());
+                assertEquals("3", rejected.getHeaderField(HttpHeaders.RETRY_AFTER));
+            } finally {
+                rejected.disconnect();
+            }
+        } finally {
+            release.countDown();
+        }
+        running.get(5, TimeUnit.SECONDS);
+    }
+
+    private static HttpURLConnection get(String path, String accept) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:"
+                + context.getWebServer().getPort() + path).openConnection();
+        connection.setRequestProperty("Accept", accept);
+        return connection;
+    }
+}
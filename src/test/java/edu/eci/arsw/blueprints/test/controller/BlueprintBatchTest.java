@@ -0,0 +1,101 @@
+package edu.eci.arsw.blueprints.test.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.Controller.BlueprintApiController;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintBatchResult;
+import edu.eci.arsw.blueprints.model.BlueprintKey;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the batch import and lookup endpoints of the
+ * BlueprintApiController.
+ */
+public class BlueprintBatchTest {
+
+    private BlueprintsServices services;
+
+    private BlueprintApiController controller;
+
+    @Before
+    public void setUp() {
+        services = new BlueprintsServices(new InMemoryBlueprintPersistence(), new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+        controller = new BlueprintApiController(services, new ObjectMapper());
+    }
+
+    /**
+     * Tests that a large array is saved in several batches, with one result
+     * per blueprint in order, and that duplicates and blueprints without a
+     * name are rejected on their own.
+     */
+    @Test
+    public void shouldImportLargeArraysWithOneResultPerBlueprint() throws Exception {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 2500; i++) {
+            json.append("{\"author\":\"bulk\",\"name\":\"plan").append(i).append("\",\"points\":[{\"x\":1,\"y\":2}]},");
+        }
+        json.append("{\"author\":\"juan\",\"name\":\"MyPlane\",\"points\":[]},{\"author\":\"bulk\"}]");
+
+        ResponseEntity<List<BlueprintBatchResult>> response = controller.addNewBlueprints(stream(json.toString())).join();
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        List<BlueprintBatchResult> results = response.getBody();
+        assertEquals(2502, results.size());
+        assertEquals(201, results.get(1234).getStatus());
+        assertEquals("plan1234", results.get(1234).getName());
+        assertEquals("An existing blueprint should be rejected", 409, results.get(2500).getStatus());
+        assertEquals("A blueprint without a name should be rejected", 400, results.get(2501).getStatus());
+        assertEquals(2500, services.getBlueprintsByAuthor("bulk").size());
+    }
+
+    /**
+     * Tests that a malformed array keeps the blueprints read before the error
+     * and says where it stopped.
+     */
+    @Test
+    public void shouldKeepWhatWasReadBeforeAMalformedBlueprint() throws Exception {
+        ResponseEntity<List<BlueprintBatchResult>> response = controller.addNewBlueprints(
+                stream("[{\"author\":\"bulk\",\"name\":\"first\",\"points\":[]},{\"author\":")).join();
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(2, response.getBody().size());
+        assertEquals(201, response.getBody().get(0).getStatus());
+        assertTrue(response.getBody().get(1).getMessage().contains("index 1"));
+        assertEquals("first", services.getBlueprint("bulk", "first").getName());
+    }
+
+    /**
+     * Tests that a lookup answers in the order of the keys, with null for the
+     * keys that have no blueprint.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldLookUpBlueprintsInOrder() {
+        ResponseEntity<?> response = controller.getBlueprints(Arrays.asList(
+                new BlueprintKey("juan", "MyPlane1"), new BlueprintKey("nobody", "x"), new BlueprintKey("andres", "MyPlane"))).join();
+
+        List<Blueprint> found = (List<Blueprint>) response.getBody();
+        assertEquals("MyPlane1", found.get(0).getName());
+        assertNull(found.get(1));
+        assertEquals("andres", found.get(2).getAuthor());
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
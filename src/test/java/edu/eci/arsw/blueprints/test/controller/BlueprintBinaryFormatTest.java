@@ -0,0 +1,94 @@
+package edu.eci.arsw.blueprints.test.controller;
+
+import edu.eci.arsw.blueprints.Controller.BlueprintBinaryFormat;
+import edu.eci.arsw.blueprints.Controller.BlueprintBinaryHttpMessageConverter;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import org.junit.Test;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Tests for the BlueprintBinaryFormat and its message converter.
+ */
+public class BlueprintBinaryFormatTest {
+
+    /**
+     * Tests that a blueprint is read back as it was written, including
+     * coordinates whose differences overflow an int and non-ASCII names.
+     */
+    @Test
+    public void shouldReadBackWhatWasWritten() throws IOException {
+        Blueprint bp = new Blueprint("año", "plaza", new Point[] {
+            new Point(0, 0), new Point(-1, 1), new Point(Integer.MAX_VALUE, Integer.MIN_VALUE),
+            new Point(Integer.MIN_VALUE, Integer.MAX_VALUE), new Point(12345, -67890) });
+        bp.setVersion(7);
+
+        Blueprint read = roundTrip(bp);
+        assertEquals(bp, read);
+        assertEquals(7, read.getVersion());
+
+        Blueprint empty = roundTrip(new Blueprint(null, "nameless"));
+        assertNull(empty.getAuthor());
+        assertEquals(0, empty.pointCount());
+    }
+
+    /**
+     * Tests that points close to each other take a couple of bytes each, far
+     * less than their JSON.
+     */
+    @Test
+    public void shouldEncodeNearbyPointsCompactly() throws IOException {
+        Point[] points = new Point[10000];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point(1000 + i % 50, 2000 - i % 30);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BlueprintBinaryFormat.write(new Blueprint("john", "walk", points), out);
+
+        assertTrue("Too large: " + out.size(), out.size() < 3 * points.length);
+    }
+
+    /**
+     * Tests that a truncated message is rejected instead of read as a
+     * shorter blueprint.
+     */
+    @Test(expected = IOException.class)
+    public void shouldRejectTruncatedMessages() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BlueprintBinaryFormat.write(new Blueprint("john", "house", new Point[] { new Point(1, 2), new Point(3, 4) }), out);
+        byte[] bytes = out.toByteArray();
+        BlueprintBinaryFormat.read(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+    }
+
+    /**
+     * Tests that the converter writes single blueprints and nothing else, not
+     * even collections of them, which must go to Jackson.
+     */
+    @Test
+    public void shouldOnlyConvertBlueprints() {
+        BlueprintBinaryHttpMessageConverter converter = new BlueprintBinaryHttpMessageConverter();
+        MediaType binary = BlueprintBinaryFormat.MEDIA_TYPE;
+
+        assertTrue(converter.canWrite(Blueprint.class, Blueprint.class, binary));
+        assertFalse(converter.canWrite(new ParameterizedTypeReference<Set<Blueprint>>() { }.getType(), Set.class, binary));
+        assertFalse(converter.canWrite(new ParameterizedTypeReference<Set<Blueprint>>() { }.getType(), Set.class, null));
+        assertFalse(converter.canWrite(new ParameterizedTypeReference<Set<String>>() { }.getType(), Set.class, binary));
+        assertFalse(converter.canWrite(Blueprint.class, Blueprint.class, MediaType.APPLICATION_JSON));
+        assertTrue(converter.canRead(Blueprint.class, null, binary));
+        assertFalse(converter.canRead(String.class, null, binary));
+    }
+
+    private static Blueprint roundTrip(Blueprint bp) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BlueprintBinaryFormat.write(bp, out);
+        return BlueprintBinaryFormat.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+}
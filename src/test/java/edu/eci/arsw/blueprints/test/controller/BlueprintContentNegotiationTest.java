@@ -0,0 +1,73 @@
+package edu.eci.arsw.blueprints.test.controller;
+
+import edu.eci.arsw.blueprints.Controller.BlueprintBinaryFormat;
+import edu.eci.arsw.blueprintsapi.BlueprintsAPIApplication;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.MediaType;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Tests which representation the running application chooses from the Accept
+ * header: JSON unless the client asks for the {@link BlueprintBinaryFormat}.
+ */
+public class BlueprintContentNegotiationTest {
+
+    private static ServletWebServerApplicationContext context;
+
+    @BeforeClass
+    public static void start() {
+        context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(BlueprintsAPIApplication.class)
+                .properties("server.port=0")
+                .run();
+    }
+
+    @AfterClass
+    public static void stop() {
+        context.close();
+    }
+
+    /**
+     * Tests that a client accepting any type gets the blueprints of an
+     * author, and a single blueprint, as JSON.
+     */
+    @Test
+    public void shouldServeJsonToAnyType() throws IOException {
+        assertContentType(MediaType.APPLICATION_JSON, "/api/blueprints/juan", "*/*");
+        assertContentType(MediaType.APPLICATION_JSON, "/api/blueprints/juan/MyPlane", "*/*");
+    }
+
+    /**
+     * Tests that a client asking for the binary format gets it for the
+     * blueprints of an author and for a single blueprint.
+     */
+    @Test
+    public void shouldServeBinaryWhenAsked() throws IOException {
+        assertContentType(BlueprintBinaryFormat.MEDIA_TYPE, "/api/blueprints/juan", BlueprintBinaryFormat.MEDIA_TYPE_VALUE);
+        assertContentType(BlueprintBinaryFormat.MEDIA_TYPE, "/api/blueprints/juan/MyPlane", BlueprintBinaryFormat.MEDIA_TYPE_VALUE);
+    }
+
+    private static void assertContentType(MediaType expected, String path, String accept) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:"
+                + context.getWebServer().getPort() + path).openConnection();
+        connection.setRequestProperty("Accept", accept);
+        try {
+            assertEquals(path, 200, connection.getResponseCode());
+            assertTrue(path + " answered " + connection.getContentType(),
+                    expected.isCompatibleWith(MediaType.parseMediaType(connection.getContentType())));
+            try (InputStream body = connection.getInputStream()) {
+                assertTrue(path + " answered no body", body.read() >= 0);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
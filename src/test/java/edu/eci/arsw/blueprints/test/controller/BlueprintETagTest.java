@@ -0,0 +1,176 @@
+package edu.eci.arsw.blueprints.test.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.Controller.BlueprintApiController;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Tests for the ETags and conditional GETs of the BlueprintApiController.
+ */
+public class BlueprintETagTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private BlueprintsServices services;
+
+    private BlueprintApiController controller;
+
+    @Before
+    public void setUp() {
+        services = new BlueprintsServices(new InMemoryBlueprintPersistence(), new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+        controller = new BlueprintApiController(services, new ObjectMapper());
+    }
+
+    /**
+     * Tests that a blueprint is answered with 304 and no body while it does
+     * not change, and with 200 and a new tag once it does.
+     */
+    @Test
+    public void shouldAnswerNotModifiedUntilTheBlueprintChanges() throws Exception {
+        ResponseEntity<byte[]> first = controller.getBlueprintByAuthorAndName("juan", "MyPlane", null, null).join();
+        String etag = first.getHeaders().getETag();
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertNotNull("The blueprint should carry an ETag", etag);
+
+        ResponseEntity<byte[]> unchanged = controller.getBlueprintByAuthorAndName("juan", "MyPlane", etag, null).join();
+        assertEquals(HttpStatus.NOT_MODIFIED, unchanged.getStatusCode());
+        assertNull(unchanged.getBody());
+        assertEquals(HttpStatus.NOT_MODIFIED,
+                controller.getBlueprintByAuthorAndName("juan", "MyPlane", "\"other\", W/" + etag, null).join().getStatusCode());
+
+        Blueprint updated = new Blueprint("juan", "MyPlane", new Point[] { new Point(7, 7) });
+        updated.setVersion(services.getBlueprint("juan", "MyPlane").getVersion());
+        services.updateBlueprint("juan", "MyPlane", updated);
+
+        ResponseEntity<byte[]> changed = controller.getBlueprintByAuthorAndName("juan", "MyPlane", etag, null).join();
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(etag, changed.getHeaders().getETag());
+        assertEquals(updated, mapper.readValue(changed.getBody(), Blueprint.class));
+    }
+
+    /**
+     * Tests that a client that accepts gzip gets the compressed JSON, under
+     * its own tag.
+     */
+    @Test
+    public void shouldServeGzipUnderItsOwnTag() throws Exception {
+        ResponseEntity<byte[]> plain = controller.getBlueprintByAuthorAndName("juan", "MyPlane", null, null).join();
+        ResponseEntity<byte[]> gzip = controller.getBlueprintByAuthorAndName("juan", "MyPlane", null, "deflate, gzip;q=0.8").join();
+
+        assertEquals("gzip", gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertNotEquals(plain.getHeaders().getETag(), gzip.getHeaders().getETag());
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.getBody()))) {
+            byte[] buffer = new byte[4096];
+            for (int n; (n = in.read(buffer)) > 0;) {
+                json.write(buffer, 0, n);
+            }
+        }
+        assertArrayEquals(plain.getBody(), json.toByteArray());
+        assertNull("gzip;q=0 refuses gzip", controller.getBlueprintByAuthorAndName("juan", "MyPlane", null, "gzip;q=0").join()
+                .getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    /**
+     * Tests that a blueprint deleted and saved again with other points gets a
+     * new tag, even though its version starts over.
+     */
+    @Test
+    public void shouldChangeTheTagWhenTheBlueprintIsReplaced() throws Exception {
+        String etag = controller.getBlueprintByAuthorAndName("juan", "MyPlane", null, null).join().getHeaders().getETag();
+        services.deleteBlueprint("juan", "MyPlane");
+        services.addNewBlueprint(new Blueprint("juan", "MyPlane", new Point[] { new Point(3, 4) }));
+
+        assertEquals(HttpStatus.OK, controller.getBlueprintByAuthorAndName("juan", "MyPlane", etag, null).join().getStatusCode());
+    }
+
+    /**
+     * Tests that the tag of an author listing changes whenever one of the
+     * blueprints of the author changes, and only then.
+     */
+    @Test
+    public void shouldChangeTheAuthorTagWhenAnyBlueprintChanges() throws Exception {
+        ResponseEntity<Set<Blueprint>> first = controller.getBlueprintsByAuthor("juan", null).join();
+        String etag = first.getHeaders().getETag();
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals(HttpStatus.NOT_MODIFIED, controller.getBlueprintsByAuthor("juan", etag).join().getStatusCode());
+
+        services.addNewBlueprint(new Blueprint("andres", "NewPlane", new Point[] { new Point(1, 1) }));
+        assertEquals("Another author's change should not matter",
+                HttpStatus.NOT_MODIFIED, controller.getBlueprintsByAuthor("juan", etag).join().getStatusCode());
+
+        Blueprint updated = new Blueprint("juan", "MyPlane", new Point[] { new Point(5, 5) });
+        updated.setVersion(services.getBlueprint("juan", "MyPlane").getVersion());
+        services.updateBlueprint("juan", "MyPlane", updated);
+        ResponseEntity<Set<Blueprint>> changed = controller.getBlueprintsByAuthor("juan", etag).join();
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(etag, changed.getHeaders().getETag());
+    }
+
+    /**
+     * Tests that a listing answered with 304 does not read the blueprints of
+     * the author.
+     */
+    @Test
+    public void shouldNotReadTheBlueprintsOfAnUnchangedAuthor() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        BlueprintsServices counted = new BlueprintsServices(new InMemoryBlueprintPersistence() {
+            @Override
+            public Set<Blueprint> getBlueprintsByAuthor(String author) throws BlueprintNotFoundException {
+                reads.incrementAndGet();
+                return super.getBlueprintsByAuthor(author);
+            }
+        }, new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+        BlueprintApiController countedController = new BlueprintApiController(counted, new ObjectMapper());
+
+        String etag = countedController.getBlueprintsByAuthor("juan", null).join().getHeaders().getETag();
+        assertEquals(1, reads.get());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(HttpStatus.NOT_MODIFIED, countedController.getBlueprintsByAuthor("juan", etag).join().getStatusCode());
+        }
+        assertEquals("A 304 should not read the blueprints", 1, reads.get());
+    }
+
+    /**
+     * Tests that once all the blueprints of an author are deleted, saving the
+     * same ones again does not bring back the old tag: a client could hold a
+     * listing from in between.
+     */
+    @Test
+    public void shouldNotReuseTheTagOfADeletedAuthor() throws Exception {
+        Set<Blueprint> blueprints = services.getBlueprintsByAuthor("juan");
+        String etag = controller.getBlueprintsByAuthor("juan", null).join().getHeaders().getETag();
+        for (Blueprint bp : blueprints) {
+            services.deleteBlueprint("juan", bp.getName());
+        }
+        assertEquals(HttpStatus.NOT_FOUND, controller.getBlueprintsByAuthor("juan", etag).join().getStatusCode());
+        for (Blueprint bp : blueprints) {
+            services.addNewBlueprint(bp);
+        }
+        ResponseEntity<Set<Blueprint>> again = controller.getBlueprintsByAuthor("juan", etag).join();
+        assertEquals(HttpStatus.OK, again.getStatusCode());
+        assertNotEquals(etag, again.getHeaders().getETag());
+    }
+}
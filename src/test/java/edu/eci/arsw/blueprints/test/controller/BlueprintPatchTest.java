@@ -0,0 +1,87 @@
+package edu.eci.arsw.blueprints.test.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.Controller.BlueprintApiController;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Tests for the PATCH of blueprint points in the BlueprintApiController.
+ */
+public class BlueprintPatchTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private BlueprintsServices services;
+
+    private BlueprintApiController controller;
+
+    @Before
+    public void setUp() {
+        services = new BlueprintsServices(new InMemoryBlueprintPersistence(), new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+        controller = new BlueprintApiController(services, mapper);
+    }
+
+    /**
+     * Tests that successive patches each based on the version the one before
+     * answered build up the blueprint, and that the answer carries the ETag a
+     * GET gives.
+     */
+    @Test
+    public void shouldApplyPatchesOneVersionAfterTheOther() throws Exception {
+        ResponseEntity<?> first = controller.patchBlueprint("juan", "MyPlane", mapper.readValue(
+                "{\"version\":0,\"operations\":[{\"op\":\"append\",\"points\":[{\"x\":1,\"y\":2}]}]}",
+                BlueprintPatch.class)).join();
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        Map<?, ?> result = (Map<?, ?>) first.getBody();
+        assertEquals(1, result.get("version"));
+        assertEquals(6, result.get("pointCount"));
+
+        ResponseEntity<?> second = controller.patchBlueprint("juan", "MyPlane", mapper.readValue(
+                "{\"version\":1,\"operations\":[{\"op\":\"remove\",\"index\":0,\"count\":5}]}",
+                BlueprintPatch.class)).join();
+        assertEquals(HttpStatus.OK, second.getStatusCode());
+
+        Blueprint stored = services.getBlueprint("juan", "MyPlane");
+        assertEquals(2, stored.getVersion());
+        assertEquals(Collections.singletonList(new Point(1, 2)), stored.getPoints());
+        assertEquals(controller.getBlueprintByAuthorAndName("juan", "MyPlane", null, null).join().getHeaders().getETag(),
+                second.getHeaders().getETag());
+    }
+
+    /**
+     * Tests the answers to a stale version, an unknown blueprint and an
+     * invalid operation, none of which change the blueprint.
+     */
+    @Test
+    public void shouldRejectStaleAndInvalidPatches() throws Exception {
+        BlueprintPatch append = new BlueprintPatch(5, Collections.singletonList(new BlueprintPatch.Operation(
+                BlueprintPatch.APPEND, 0, 0, Collections.singletonList(new Point(1, 1)))));
+        assertEquals(HttpStatus.CONFLICT, controller.patchBlueprint("juan", "MyPlane", append).join().getStatusCode());
+        assertEquals(HttpStatus.NOT_FOUND, controller.patchBlueprint("nobody", "MyPlane", append).join().getStatusCode());
+
+        BlueprintPatch outOfRange = new BlueprintPatch(0, Arrays.asList(
+                new BlueprintPatch.Operation(BlueprintPatch.APPEND, 0, 0, Collections.singletonList(new Point(1, 1))),
+                new BlueprintPatch.Operation(BlueprintPatch.REMOVE, 10, 1, null)));
+        assertEquals(HttpStatus.BAD_REQUEST, controller.patchBlueprint("juan", "MyPlane", outOfRange).join().getStatusCode());
+
+        Blueprint stored = services.getBlueprint("juan", "MyPlane");
+        assertEquals(0, stored.getVersion());
+        assertEquals(5, stored.pointCount());
+    }
+}
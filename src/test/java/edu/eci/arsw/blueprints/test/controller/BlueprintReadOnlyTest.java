@@ -0,0 +1,89 @@
+package edu.eci.arsw.blueprints.test.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.Controller.BlueprintApiController;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.impl.ArchiveBlueprintPersistence;
+import edu.eci.arsw.blueprints.persistence.impl.BlueprintArchive;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+
+/**
+ * Tests that the BlueprintApiController answers every change to blueprints
+ * served from a read-only archive with 405, and still serves them.
+ */
+public class BlueprintReadOnlyTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private ArchiveBlueprintPersistence archive;
+
+    private BlueprintApiController controller;
+
+    @Before
+    public void setUp() throws Exception {
+        Path file = folder.newFile("blueprints.archive").toPath();
+        BlueprintArchive.write(file, Arrays.asList(
+                new Blueprint("john", "house", new Point[] { new Point(1, 2) })).iterator());
+        archive = new ArchiveBlueprintPersistence(file);
+        controller = new BlueprintApiController(new BlueprintsServices(archive, new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive()))), mapper);
+    }
+
+    @After
+    public void tearDown() {
+        archive.close();
+    }
+
+    /**
+     * Tests that POST, PUT, PATCH and DELETE are all rejected as not allowed,
+     * telling the client it can only read.
+     */
+    @Test
+    public void shouldRejectEveryWriteWith405() throws Exception {
+        assertReadOnly(controller.addNewBlueprint(MediaType.APPLICATION_JSON_VALUE,
+                json(new Blueprint("john", "garage", new Point[] { new Point(3, 4) }))).join());
+        assertReadOnly(controller.updateBlueprint("john", "house", MediaType.APPLICATION_JSON_VALUE,
+                json(new Blueprint("john", "house", new Point[] { new Point(5, 6) }))).join());
+        assertReadOnly(controller.patchBlueprint("john", "house", mapper.readValue(
+                "{\"version\":0,\"operations\":[{\"op\":\"append\",\"points\":[{\"x\":7,\"y\":8}]}]}",
+                BlueprintPatch.class)).join());
+        assertReadOnly(controller.deleteBlueprint("john", "house").join());
+
+        ResponseEntity<?> read = controller.getBlueprintByAuthorAndName("john", "house", null, null).join();
+        assertEquals(HttpStatus.OK, read.getStatusCode());
+    }
+
+    private InputStream json(Blueprint bp) throws IOException {
+        return new ByteArrayInputStream(mapper.writeValueAsBytes(bp));
+    }
+
+    private static void assertReadOnly(ResponseEntity<?> response) {
+        assertEquals(HttpStatus.METHOD_NOT_ALLOWED, response.getStatusCode());
+        assertEquals(EnumSet.of(HttpMethod.GET, HttpMethod.HEAD), response.getHeaders().getAllow());
+    }
+}
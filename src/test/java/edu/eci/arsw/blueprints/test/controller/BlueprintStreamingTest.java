@@ -0,0 +1,248 @@
+package edu.eci.arsw.blueprints.test.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.Controller.BlueprintApiController;
+import edu.eci.arsw.blueprints.Controller.RequestExecutors;
+import edu.eci.arsw.blueprints.Controller.RequestExecutors.Pool;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import static org.junit.Assert.*;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Tests for the newline-delimited JSON endpoints of the BlueprintApiController.
+ * 
+ * The large test feeds the controller from a persistence that creates each
+ * blueprint on demand, so the only blueprints alive at any time are the ones
+ * being written. Together with the small heap the build runs this test on, it
+ * fails if the controller collects the blueprints before writing them.
+ */
+public class BlueprintStreamingTest {
+
+    private static final int LARGE_COUNT = 500_000;
+
+    private static final int POINTS_PER_BLUEPRINT = 20;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Tests that all blueprints are streamed, one JSON document per line.
+     * 
+     * @throws IOException If the stream cannot be written.
+     */
+    @Test
+    public void shouldStreamManyBlueprintsOnePerLine() throws IOException {
+        InMemoryBlueprintPersistence generated = new InMemoryBlueprintPersistence() {
+            @Override
+            public Stream<Blueprint> streamAllBlueprints() {
+                return IntStream.range(0, LARGE_COUNT).mapToObj(BlueprintStreamingTest::generate);
+            }
+        };
+        BlueprintApiController controller = controllerFor(generated);
+
+        LineCountingOutputStream out = new LineCountingOutputStream();
+        StreamedResponse response = new StreamedResponse(out);
+        assertNull("A written stream needs no answer from Spring", controller.streamAllBlueprints(response).join());
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        assertEquals(MediaType.APPLICATION_NDJSON_VALUE, response.getContentType());
+
+        assertEquals("Every blueprint should be written on its own line", LARGE_COUNT, out.lines);
+        Blueprint first = mapper.readValue(out.firstLine(), Blueprint.class);
+        assertEquals("The first line should hold the first blueprint", generate(0), first);
+    }
+
+    /**
+     * Tests that the blueprints of an author are streamed, and that an unknown
+     * author is answered with 404 before anything is streamed.
+     * 
+     * @throws IOException If the stream cannot be written.
+     */
+    @Test
+    public void shouldStreamBlueprintsByAuthor() throws IOException {
+        BlueprintApiController controller = controllerFor(new InMemoryBlueprintPersistence());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreamedResponse response = new StreamedResponse(out);
+        controller.streamBlueprintsByAuthor("juan", response).join();
+        assertEquals(HttpStatus.OK.value(), response.getStatus());
+        String[] lines = new String(out.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals("The sample author juan has two blueprints", 2, lines.length);
+        for (String line : lines) {
+            assertEquals("juan", mapper.readValue(line, Blueprint.class).getAuthor());
+        }
+
+        ByteArrayOutputStream none = new ByteArrayOutputStream();
+        assertEquals(HttpStatus.NOT_FOUND,
+                controller.streamBlueprintsByAuthor("nobody", new StreamedResponse(none)).join().getStatusCode());
+        assertEquals("Nothing should be streamed for an unknown author", 0, none.size());
+    }
+
+    /**
+     * Tests that the streams are written on the read pool, and rejected with
+     * 503 before anything is written when it is full.
+     */
+    @Test
+    public void shouldRejectStreamsWhenTheReadPoolIsFull() throws Exception {
+        try (RequestExecutors executors = new RequestExecutors(true, 1, 1, 1, 1, 1)) {
+            BlueprintApiController controller = new BlueprintApiController(
+                    new BlueprintsServices(new InMemoryBlueprintPersistence(), new FilterSuprimePointsRepetitive(),
+                            new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive()))),
+                    new ObjectMapper(), executors);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            CompletableFuture<ResponseEntity<String>> running = executors.submit(Pool.READS, () -> {
+                started.countDown();
+                release.await();
+                return ResponseEntity.ok("read");
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<ResponseEntity<String>> queued = executors.submit(Pool.READS, () -> ResponseEntity.ok("queued"));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ResponseEntity<?> rejected = controller.streamAllBlueprints(new StreamedResponse(out)).get(5, TimeUnit.SECONDS);
+            assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+            assertEquals(0, out.size());
+
+            release.countDown();
+            running.get(5, TimeUnit.SECONDS);
+            queued.get(5, TimeUnit.SECONDS);
+            controller.streamAllBlueprints(new StreamedResponse(out)).get(5, TimeUnit.SECONDS);
+            assertTrue("The stream should be written once the pool has room", out.size() > 0);
+        }
+    }
+
+    private static BlueprintApiController controllerFor(InMemoryBlueprintPersistence persistence) {
+        return new BlueprintApiController(
+                new BlueprintsServices(persistence, new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive()))), new ObjectMapper());
+    }
+
+    private static Blueprint generate(int i) {
+        Point[] points = new Point[POINTS_PER_BLUEPRINT];
+        for (int p = 0; p < points.length; p++) {
+            points[p] = new Point(i, p);
+        }
+        return new Blueprint("author" + (i % 1000), "plan" + i, points);
+    }
+
+    /**
+     * The part of a servlet response the streams use, writing to the given
+     * stream. Anything else is not supported.
+     */
+    private static final class StreamedResponse extends HttpServletResponseWrapper {
+
+        private final ServletOutputStream out;
+
+        private int status = HttpServletResponse.SC_OK;
+
+        private String contentType;
+
+        StreamedResponse(OutputStream target) {
+            super((HttpServletResponse) Proxy.newProxyInstance(HttpServletResponse.class.getClassLoader(),
+                    new Class<?>[] { HttpServletResponse.class }, (proxy, method, args) -> {
+                        throw new UnsupportedOperationException(method.getName());
+                    }));
+            this.out = new ServletOutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    target.write(b);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    target.write(b, off, len);
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setWriteListener(WriteListener listener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public void setContentType(String contentType) {
+            this.contentType = contentType;
+        }
+
+        @Override
+        public String getContentType() {
+            return contentType;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+
+    /**
+     * Counts lines and keeps only the first one, so the test itself does not
+     * hold the streamed output in memory.
+     */
+    private static final class LineCountingOutputStream extends OutputStream {
+
+        private final ByteArrayOutputStream first = new ByteArrayOutputStream();
+
+        private int lines;
+
+        @Override
+        public void write(int b) {
+            if (lines == 0 && b != '\n') {
+                first.write(b);
+            }
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        String firstLine() {
+            return new String(first.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
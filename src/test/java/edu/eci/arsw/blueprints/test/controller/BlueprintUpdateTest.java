@@ -0,0 +1,83 @@
+package edu.eci.arsw.blueprints.test.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.Controller.BlueprintApiController;
+import edu.eci.arsw.blueprints.Controller.BlueprintBinaryFormat;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Tests for the PUT of blueprint points in the BlueprintApiController, whose
+ * body the handler reads itself.
+ */
+public class BlueprintUpdateTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private BlueprintsServices services;
+
+    private BlueprintApiController controller;
+
+    @Before
+    public void setUp() {
+        services = new BlueprintsServices(new InMemoryBlueprintPersistence(), new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+        controller = new BlueprintApiController(services, mapper);
+    }
+
+    /**
+     * Tests that points sent in JSON and then in the binary format each
+     * replace the stored ones, and that a stale version is a conflict.
+     */
+    @Test
+    public void shouldUpdateFromJsonAndBinaryBodies() throws Exception {
+        Blueprint json = new Blueprint("juan", "MyPlane", new Point[] { new Point(1, 2) });
+        assertEquals(HttpStatus.OK, controller.updateBlueprint("juan", "MyPlane", "application/json;charset=UTF-8",
+                new ByteArrayInputStream(mapper.writeValueAsBytes(json))).join().getStatusCode());
+        assertEquals(Arrays.asList(new Point(1, 2)), services.getBlueprint("juan", "MyPlane").getPoints());
+
+        Blueprint binary = new Blueprint("juan", "MyPlane", new Point[] { new Point(3, 4), new Point(5, 6) });
+        binary.setVersion(1);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        BlueprintBinaryFormat.write(binary, body);
+        assertEquals(HttpStatus.OK, controller.updateBlueprint("juan", "MyPlane", BlueprintBinaryFormat.MEDIA_TYPE_VALUE,
+                new ByteArrayInputStream(body.toByteArray())).join().getStatusCode());
+        Blueprint stored = services.getBlueprint("juan", "MyPlane");
+        assertEquals(Arrays.asList(new Point(3, 4), new Point(5, 6)), stored.getPoints());
+        assertEquals(2, stored.getVersion());
+
+        assertEquals(HttpStatus.CONFLICT, controller.updateBlueprint("juan", "MyPlane", MediaType.APPLICATION_JSON_VALUE,
+                new ByteArrayInputStream(mapper.writeValueAsBytes(json))).join().getStatusCode());
+    }
+
+    /**
+     * Tests that a body that is not a blueprint is a bad request, and an
+     * unknown blueprint is not found.
+     */
+    @Test
+    public void shouldRejectMalformedBodiesAndUnknownBlueprints() throws Exception {
+        assertEquals(HttpStatus.BAD_REQUEST, controller.updateBlueprint("juan", "MyPlane", MediaType.APPLICATION_JSON_VALUE,
+                new ByteArrayInputStream("{\"points\":".getBytes(StandardCharsets.UTF_8))).join().getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, controller.updateBlueprint("juan", "MyPlane", BlueprintBinaryFormat.MEDIA_TYPE_VALUE,
+                new ByteArrayInputStream(new byte[] { 1 })).join().getStatusCode());
+
+        Blueprint bp = new Blueprint("nobody", "nothing", new Point[] { new Point(1, 2) });
+        assertEquals(HttpStatus.NOT_FOUND, controller.updateBlueprint("nobody", "nothing", MediaType.APPLICATION_JSON_VALUE,
+                new ByteArrayInputStream(mapper.writeValueAsBytes(bp))).join().getStatusCode());
+    }
+}
@@ -0,0 +1,84 @@
+package edu.eci.arsw.blueprints.test.controller;
+
+import edu.eci.arsw.blueprints.Controller.RequestExecutors;
+import edu.eci.arsw.blueprints.Controller.RequestExecutors.Pool;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the RequestExecutors class: a full pool answers 503 without
+ * holding up the other pools.
+ */
+public class RequestExecutorsTest {
+
+    private RequestExecutors executors;
+
+    @After
+    public void tearDown() {
+        if (executors != null) {
+            executors.close();
+        }
+    }
+
+    /**
+     * Tests that once the write pool and its queue are busy, the next write
+     * is answered with 503 and Retry-After, while reads still run.
+     */
+    @Test
+    public void shouldRejectWritesPastTheQueueAndKeepServingReads() throws Exception {
+        executors = new RequestExecutors(true, 1, 1, 1, 1, 3);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ResponseEntity<String>> running = executors.submit(Pool.WRITES, () -> {
+            started.countDown();
+            release.await();
+            return ResponseEntity.ok("written");
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<ResponseEntity<String>> queued = executors.submit(Pool.WRITES, () -> ResponseEntity.ok("queued"));
+
+        ResponseEntity<String> rejected = executors.submit(Pool.WRITES, () -> ResponseEntity.ok("rejected"))
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatusCode());
+        assertEquals("3", rejected.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals("read", executors.submit(Pool.READS, () -> ResponseEntity.ok("read"))
+                .get(5, TimeUnit.SECONDS).getBody());
+
+        release.countDown();
+        assertEquals("written", running.get(5, TimeUnit.SECONDS).getBody());
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS).getBody());
+    }
+
+    /**
+     * Tests that without async the handler runs on the calling thread, and
+     * what it throws fails the future as is.
+     */
+    @Test
+    public void shouldRunOnTheCallingThreadWhenDisabled() throws Exception {
+        executors = new RequestExecutors(false, 0, 0, 0, 1, 1);
+        assertFalse(executors.isEnabled());
+        Thread caller = Thread.currentThread();
+        assertEquals(Boolean.TRUE, executors.submit(Pool.FILTERS,
+                () -> ResponseEntity.ok(Thread.currentThread() == caller)).join().getBody());
+
+        CompletableFuture<ResponseEntity<String>> failed = executors.submit(Pool.READS, () -> {
+            throw new BlueprintNotFoundException("missing");
+        });
+        try {
+            failed.get();
+            fail("The future should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof BlueprintNotFoundException);
+        }
+    }
+}
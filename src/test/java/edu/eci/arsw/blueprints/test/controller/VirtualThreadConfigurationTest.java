@@ -0,0 +1,102 @@
+package edu.eci.arsw.blueprints.test.controller;
+
+import edu.eci.arsw.blueprints.Controller.VirtualThreadConfiguration;
+import edu.eci.arsw.blueprintsapi.BlueprintsAPIApplication;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import static org.junit.Assert.*;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the VirtualThreadConfiguration class, on the JDK running the
+ * tests: from Java 21 the tasks run on virtual threads, before that the
+ * executor cannot be made.
+ */
+public class VirtualThreadConfigurationTest {
+
+    @Test
+    public void shouldRunOnVirtualThreadsOnlyFromJava21() throws Exception {
+        ExecutorService executor;
+        try {
+            executor = VirtualThreadConfiguration.newVirtualThreadPerTaskExecutor();
+        } catch (IllegalStateException e) {
+            assertFalse("Java " + javaVersion() + " has virtual threads", supported());
+            return;
+        }
+        assertTrue("Java " + javaVersion() + " has no virtual threads", supported());
+        try {
+            assertEquals(Boolean.TRUE, executor.submit(VirtualThreadConfigurationTest::isVirtual).get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Tests that the application started with the property gives Tomcat the
+     * virtual-thread executor and serves requests with it, and that before
+     * Java 21 it does not start.
+     */
+    @Test
+    public void shouldServeRequestsOnVirtualThreadsFromJava21() throws Exception {
+        SpringApplicationBuilder application = new SpringApplicationBuilder(BlueprintsAPIApplication.class)
+                .properties("server.port=0", "blueprints.virtual-threads.enabled=true");
+        if (!supported()) {
+            try {
+                application.run().close();
+                fail("Java " + javaVersion() + " has no virtual threads, the application should not start");
+            } catch (RuntimeException e) {
+                Throwable cause = e;
+                while (cause != null && !(cause instanceof IllegalStateException)) {
+                    cause = cause.getCause();
+                }
+                assertNotNull("The failure should say why", cause);
+                assertTrue(cause.getMessage(), cause.getMessage().contains("Java 21"));
+            }
+            return;
+        }
+        try (ConfigurableApplicationContext context = application.run()) {
+            TomcatWebServer server = (TomcatWebServer) ((ServletWebServerApplicationContext) context).getWebServer();
+            Executor executor = server.getTomcat().getConnector().getProtocolHandler().getExecutor();
+            CompletableFuture<Object> virtual = new CompletableFuture<>();
+            executor.execute(() -> {
+                try {
+                    virtual.complete(isVirtual());
+                } catch (Exception e) {
+                    virtual.completeExceptionally(e);
+                }
+            });
+            assertEquals("Tomcat should run its requests on virtual threads",
+                    Boolean.TRUE, virtual.get(5, TimeUnit.SECONDS));
+
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:"
+                    + server.getPort() + "/api/blueprints/juan/MyPlane").openConnection();
+            try {
+                assertEquals(200, connection.getResponseCode());
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static Object isVirtual() throws Exception {
+        return Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+    }
+
+    private static String javaVersion() {
+        return System.getProperty("java.specification.version");
+    }
+
+    private static boolean supported() {
+        String version = javaVersion();
+        return !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+    }
+}
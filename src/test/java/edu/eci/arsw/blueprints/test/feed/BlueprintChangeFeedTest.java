@@ -0,0 +1,202 @@
+package edu.eci.arsw.blueprints.test.feed;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.feed.BlueprintChangeFeed;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintChange;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the BlueprintChangeFeed class, sending to a channel that keeps
+ * the messages instead of to WebSocket sessions.
+ */
+public class BlueprintChangeFeedTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final BlockingQueue<Message<?>> sent = new LinkedBlockingQueue<>();
+
+    private BlueprintsServices services;
+
+    private BlueprintChangeFeed feed;
+
+    @Before
+    public void setUp() {
+        services = new BlueprintsServices(new InMemoryBlueprintPersistence(), new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+    }
+
+    @After
+    public void tearDown() {
+        if (feed != null) {
+            feed.close();
+        }
+    }
+
+    /**
+     * Tests that a burst of updates to a blueprint reaches a subscriber as a
+     * few messages, the last with the latest version.
+     */
+    @Test
+    public void shouldCoalesceUpdatesOfABlueprint() throws Exception {
+        feed = new BlueprintChangeFeed(services, capturing(), mapper, 256, 200);
+        feed.subscribe("s1", "sub-0", "/feed/blueprints/andres/MyPlane");
+        feed.subscribe("s1", "sub-1", "/feed/blueprints/juan");
+
+        for (int version = 0; version < 100; version++) {
+            Blueprint bp = new Blueprint("andres", "MyPlane", new Point[] { new Point(version, version) });
+            bp.setVersion(version);
+            services.updateBlueprint("andres", "MyPlane", bp);
+        }
+
+        List<Message<?>> messages = receive(1);
+        Thread.sleep(300);
+        sent.drainTo(messages);
+        assertTrue("The updates should be coalesced, got " + messages.size(), messages.size() < 10);
+        Message<?> last = messages.get(messages.size() - 1);
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(last);
+        assertEquals("s1", headers.getSessionId());
+        assertEquals("sub-0", headers.getSubscriptionId());
+        assertEquals("/feed/blueprints/andres/MyPlane", headers.getDestination());
+        JsonNode change = json(last);
+        assertEquals("UPDATED", change.get("type").asText());
+        assertEquals(100, change.get("blueprint").get("version").asInt());
+    }
+
+    /**
+     * Tests that a subscriber that falls behind loses the oldest changes, and
+     * is told how many first.
+     */
+    @Test
+    public void shouldDropTheOldestChangesOnOverflow() throws Exception {
+        feed = new BlueprintChangeFeed(services, capturing(), mapper, 4, 200);
+        feed.subscribe("s1", "sub-0", "/feed/blueprints");
+
+        for (int i = 0; i < 10; i++) {
+            services.addNewBlueprint(new Blueprint("maria", "plan" + i, new Point[] { new Point(i, i) }));
+        }
+
+        List<Message<?>> messages = receive(5);
+        JsonNode overflow = json(messages.get(0));
+        assertEquals("OVERFLOW", overflow.get("type").asText());
+        assertEquals(6, overflow.get("dropped").asInt());
+        for (int i = 0; i < 4; i++) {
+            JsonNode change = json(messages.get(i + 1));
+            assertEquals("CREATED", change.get("type").asText());
+            assertEquals("plan" + (i + 6), change.get("name").asText());
+        }
+    }
+
+    /**
+     * Tests that writers go on while the channel to a client is stuck.
+     */
+    @Test(timeout = 10000)
+    public void shouldNotBlockWritersOnASlowClient() throws Exception {
+        CountDownLatch stuck = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        MessageChannel blocking = (message, timeout) -> {
+            stuck.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        };
+        feed = new BlueprintChangeFeed(services, blocking, mapper, 16, 0);
+        feed.subscribe("s1", "sub-0", "/feed/blueprints");
+        try {
+            services.addNewBlueprint(new Blueprint("maria", "first", new Point[] {}));
+            stuck.await();
+            for (int i = 0; i < 1000; i++) {
+                services.addNewBlueprint(new Blueprint("maria", "plan" + i, new Point[] { new Point(i, i) }));
+            }
+        } finally {
+            released.countDown();
+        }
+    }
+
+    /**
+     * Tests that a change published after a newer one of the same blueprint
+     * is dropped, whether the newer one was sent already or is still queued,
+     * and that only a creation follows a deletion.
+     */
+    @Test
+    public void shouldDropChangesOlderThanTheLastQueued() throws Exception {
+        feed = new BlueprintChangeFeed(services, capturing(), mapper, 256, 0);
+        feed.subscribe("s1", "sub-0", "/feed/blueprints/andres");
+
+        feed.changed(BlueprintChange.updated(version(3)));
+        assertEquals(3, json(receive(1).get(0)).get("blueprint").get("version").asInt());
+        feed.changed(BlueprintChange.updated(version(2)));
+        assertNull("A late update should not follow a newer one that was sent", sent.poll(200, TimeUnit.MILLISECONDS));
+
+        feed.changed(BlueprintChange.deleted("andres", "MyPlane"));
+        feed.changed(BlueprintChange.updated(version(4)));
+        assertEquals("DELETED", json(receive(1).get(0)).get("type").asText());
+        assertNull("A late update should not follow a deletion", sent.poll(200, TimeUnit.MILLISECONDS));
+
+        feed.changed(BlueprintChange.created(version(0)));
+        JsonNode created = json(receive(1).get(0));
+        assertEquals("CREATED", created.get("type").asText());
+        assertEquals(0, created.get("blueprint").get("version").asInt());
+    }
+
+    /**
+     * Tests that a subscription gets nothing after it is dropped.
+     */
+    @Test
+    public void shouldStopSendingOnDisconnect() throws Exception {
+        feed = new BlueprintChangeFeed(services, capturing(), mapper, 256, 0);
+        feed.subscribe("s1", "sub-0", "/feed/blueprints/maria");
+        feed.disconnect("s1");
+
+        services.addNewBlueprint(new Blueprint("maria", "plan", new Point[] {}));
+
+        assertNull(sent.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private static Blueprint version(int version) {
+        Blueprint bp = new Blueprint("andres", "MyPlane", new Point[] { new Point(version, version) });
+        bp.setVersion(version);
+        return bp;
+    }
+
+    private MessageChannel capturing() {
+        return (message, timeout) -> sent.add(message);
+    }
+
+    private List<Message<?>> receive(int count) throws InterruptedException {
+        List<Message<?>> messages = new ArrayList<>();
+        while (messages.size() < count) {
+            Message<?> message = sent.poll(5, TimeUnit.SECONDS);
+            assertNotNull("Expected " + count + " messages, got " + messages.size(), message);
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private JsonNode json(Message<?> message) throws Exception {
+        return mapper.readTree((byte[]) message.getPayload());
+    }
+}
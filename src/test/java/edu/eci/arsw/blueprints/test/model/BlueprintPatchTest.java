@@ -0,0 +1,85 @@
+package edu.eci.arsw.blueprints.test.model;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
+import edu.eci.arsw.blueprints.model.BlueprintPatch.Operation;
+import edu.eci.arsw.blueprints.model.Point;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * Unit tests for the BlueprintPatch class, and the appends it makes through
+ * {@link Blueprint#withAppendedPoints(int[], int)}.
+ */
+public class BlueprintPatchTest {
+
+    /**
+     * Tests that the operations apply in order, each on the points left by
+     * the ones before, without changing the given blueprint.
+     */
+    @Test
+    public void shouldApplyOperationsInOrder() {
+        Blueprint bp = new Blueprint("a", "b", new Point[] { new Point(0, 0), new Point(1, 1), new Point(2, 2),
+                new Point(3, 3) });
+        BlueprintPatch patch = new BlueprintPatch(0, Arrays.asList(
+                new Operation(BlueprintPatch.INSERT, 1, 0, Arrays.asList(new Point(9, 9), new Point(8, 8))),
+                new Operation(BlueprintPatch.REMOVE, 4, 1, null),
+                new Operation(BlueprintPatch.MOVE, 0, 0, Collections.singletonList(new Point(-1, -1))),
+                new Operation(BlueprintPatch.APPEND, 0, 0, Collections.singletonList(new Point(7, 7)))));
+
+        Blueprint patched = patch.applyTo(bp);
+
+        assertEquals(Arrays.asList(new Point(-1, -1), new Point(9, 9), new Point(8, 8), new Point(1, 1),
+                new Point(3, 3), new Point(7, 7)), patched.getPoints());
+        assertEquals("The given blueprint should not change", 4, bp.pointCount());
+        assertEquals(new Point(0, 0), bp.getPoints().get(0));
+    }
+
+    /**
+     * Tests that operations out of the range of the points are rejected.
+     */
+    @Test
+    public void shouldRejectOperationsOutOfRange() {
+        Blueprint bp = new Blueprint("a", "b", new Point[] { new Point(0, 0), new Point(1, 1) });
+        for (Operation op : Arrays.asList(
+                new Operation(BlueprintPatch.INSERT, 3, 0, Collections.singletonList(new Point(1, 1))),
+                new Operation(BlueprintPatch.REMOVE, 1, 2, null),
+                new Operation(BlueprintPatch.REMOVE, -1, 1, null),
+                new Operation(BlueprintPatch.MOVE, 1, 0, Arrays.asList(new Point(1, 1), new Point(2, 2))),
+                new Operation("rotate", 0, 0, null))) {
+            try {
+                new BlueprintPatch(0, Collections.singletonList(op)).applyTo(bp);
+                fail("The " + op.getOp() + " at " + op.getIndex() + " should be rejected");
+            } catch (IllegalArgumentException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Tests that appends sharing spare room never show up in another
+     * blueprint: only the first append to a blueprint may use its room.
+     */
+    @Test
+    public void shouldKeepAppendsToTheSameBlueprintApart() {
+        Blueprint base = new Blueprint("a", "b", new Point[] { new Point(0, 0) });
+        Blueprint first = base.withAppendedPoints(new int[] { 1, 1 }, 1);
+        Blueprint second = first.withAppendedPoints(new int[] { 2, 2 }, 1);
+        Blueprint branch = first.withAppendedPoints(new int[] { 3, 3 }, 1);
+        Blueprint third = second.withAppendedPoints(new int[] { 4, 4, 5, 5 }, 2);
+
+        assertEquals(Arrays.asList(new Point(0, 0)), base.getPoints());
+        assertEquals(Arrays.asList(new Point(0, 0), new Point(1, 1)), first.getPoints());
+        assertEquals(Arrays.asList(new Point(0, 0), new Point(1, 1), new Point(2, 2)), second.getPoints());
+        assertEquals(Arrays.asList(new Point(0, 0), new Point(1, 1), new Point(3, 3)), branch.getPoints());
+        assertEquals(Arrays.asList(new Point(0, 0), new Point(1, 1), new Point(2, 2), new Point(4, 4),
+                new Point(5, 5)), third.getPoints());
+        assertNotEquals(second.contentHash(), branch.contentHash());
+        assertArrayEquals(new int[] { 0, 0, 1, 1 }, first.bounds());
+        assertArrayEquals(new int[] { 0, 0, 5, 5 }, third.bounds());
+        assertArrayEquals(new int[] { 0, 0, 3, 3 }, branch.bounds());
+    }
+}
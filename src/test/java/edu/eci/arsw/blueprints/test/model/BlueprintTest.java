@@ -0,0 +1,133 @@
+package edu.eci.arsw.blueprints.test.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Unit tests for the Blueprint class.
+ * 
+ * These tests check that the packed point storage behaves like the list of
+ * points it replaces: same points, same JSON shape, and no way to change a
+ * blueprint through a list obtained before.
+ */
+public class BlueprintTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Tests that the points of a blueprint are read back in order.
+     */
+    @Test
+    public void shouldKeepPointsInOrder() {
+        Blueprint bp = new Blueprint("John", "HousePlan",
+                new Point[] { new Point(10, 20), new Point(30, 40), new Point(-5, 7) });
+
+        assertEquals("The points should be read back as stored",
+                Arrays.asList(new Point(10, 20), new Point(30, 40), new Point(-5, 7)), bp.getPoints());
+        assertEquals(3, bp.pointCount());
+        assertEquals(30, bp.xAt(1));
+        assertEquals(7, bp.yAt(2));
+    }
+
+    /**
+     * Tests that replacing or adding points does not change lists obtained
+     * before.
+     */
+    @Test
+    public void shouldNotChangePreviouslyReadPoints() {
+        Blueprint bp = new Blueprint("John", "HousePlan", new Point[] { new Point(1, 1) });
+        List<Point> before = bp.getPoints();
+
+        bp.addPoint(new Point(2, 2));
+        assertEquals("A list read before adding a point should not change", 1, before.size());
+
+        bp.setPoints(Arrays.asList(new Point(3, 3)));
+        assertEquals("A list read before replacing the points should not change",
+                Arrays.asList(new Point(1, 1)), before);
+        assertEquals(Arrays.asList(new Point(3, 3)), bp.getPoints());
+    }
+
+    /**
+     * Tests that points added one at a time are all kept, and that neither a
+     * copy, nor a blueprint appended to this one, sees the points added to it
+     * afterwards in the room they share.
+     */
+    @Test
+    public void shouldAddPointsOneAtATimeWithoutDisturbingSharers() {
+        Blueprint bp = new Blueprint("John", "HousePlan");
+        for (int i = 0; i < 1000; i++) {
+            bp.addPoint(new Point(i, -i));
+        }
+        assertEquals(1000, bp.pointCount());
+        assertEquals(999, bp.xAt(999));
+        assertEquals(-500, bp.yAt(500));
+
+        Blueprint copy = bp.copyAs("John", "Copy");
+        Blueprint appended = bp.withAppendedPoints(new int[] { 7, 7 }, 1);
+        bp.addPoint(new Point(8, 8));
+        assertEquals(1000, copy.pointCount());
+        assertEquals(new Point(7, 7), appended.getPoints().get(1000));
+        assertEquals(new Point(8, 8), bp.getPoints().get(1000));
+    }
+
+    /**
+     * Tests that the points of a blueprint cannot be changed through its list.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void shouldNotAllowChangingPointsThroughTheList() {
+        Blueprint bp = new Blueprint("John", "HousePlan", new Point[] { new Point(1, 1) });
+        bp.getPoints().add(new Point(2, 2));
+    }
+
+    /**
+     * Tests that equal blueprints have the same hash and that blueprints with
+     * different names are spread over different hashes.
+     */
+    @Test
+    public void shouldHashByAuthorAndName() {
+        Blueprint bp = new Blueprint("John", "HousePlan", new Point[] { new Point(1, 1) });
+        Blueprint same = new Blueprint("John", "HousePlan", new Point[] { new Point(1, 1) });
+        assertEquals(bp, same);
+        assertEquals("Equal blueprints should have the same hash", bp.hashCode(), same.hashCode());
+
+        Set<Integer> hashes = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            hashes.add(new Blueprint("John", "Plan" + i, new Point[] {}).hashCode());
+        }
+        assertEquals("Blueprints with different names should have different hashes", 1000, hashes.size());
+    }
+
+    /**
+     * Tests that a blueprint is written to JSON with its points as x/y objects
+     * and read back to an equal blueprint.
+     * 
+     * @throws Exception If the blueprint cannot be written or read.
+     */
+    @Test
+    public void shouldKeepJsonShape() throws Exception {
+        Blueprint bp = new Blueprint("John", "HousePlan", new Point[] { new Point(10, 20), new Point(30, 40) });
+        bp.setVersion(3);
+
+        JsonNode json = mapper.readTree(mapper.writeValueAsString(bp));
+        assertEquals("John", json.get("author").asText());
+        assertEquals("HousePlan", json.get("name").asText());
+        assertEquals(3, json.get("version").asInt());
+        assertEquals(2, json.get("points").size());
+        assertEquals(30, json.get("points").get(1).get("x").asInt());
+        assertEquals(40, json.get("points").get(1).get("y").asInt());
+        assertEquals("No other properties should be written", 4, json.size());
+
+        Blueprint read = mapper.readValue(mapper.writeValueAsString(bp), Blueprint.class);
+        assertEquals("The blueprint read from JSON should equal the written one", bp, read);
+        assertEquals(3, read.getVersion());
+    }
+}
@@ -0,0 +1,118 @@
+package edu.eci.arsw.blueprints.test.persistence.impl;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.BlueprintReadOnlyException;
+import edu.eci.arsw.blueprints.persistence.impl.ArchiveBlueprintPersistence;
+import edu.eci.arsw.blueprints.persistence.impl.BlueprintArchive;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for the ArchiveBlueprintPersistence class, reading archives written
+ * with BlueprintArchive.
+ */
+public class ArchivePersistenceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that blueprints are found by key and by author, in (author, name)
+     * order, whatever order they were written in.
+     */
+    @Test
+    public void shouldFindArchivedBlueprints() throws Exception {
+        Blueprint house = new Blueprint("john", "house", new Point[] { new Point(1, 2), new Point(3, 4) });
+        house.setVersion(3);
+        Path file = write(Arrays.asList(
+                new Blueprint("john", "garden", new Point[] { new Point(5, 6) }),
+                house,
+                new Blueprint("ana", "bridge", new Point[0]),
+                new Blueprint("zoe", "tower", new Point[] { new Point(7, 8) })));
+
+        try (ArchiveBlueprintPersistence abpp = new ArchiveBlueprintPersistence(file)) {
+            Blueprint found = abpp.getBlueprint("john", "house");
+            assertEquals(house, found);
+            assertEquals(3, found.getVersion());
+            assertEquals(0, abpp.getBlueprint("ana", "bridge").pointCount());
+            assertEquals(2, abpp.getBlueprintsByAuthor("john").size());
+            assertNotEquals(abpp.getAuthorTag("john"), abpp.getAuthorTag("zoe"));
+            assertEquals(4, abpp.getAllBlueprints().size());
+            assertEquals(Arrays.asList("john/garden", "john/house", "zoe/tower"),
+                    keys(abpp.getBlueprintsAfter("ana", "bridge", 10)));
+            assertEquals(Arrays.asList("ana/bridge"), keys(abpp.getBlueprintsAfter(null, null, 1)));
+            try {
+                abpp.getBlueprint("john", "pool");
+                fail("A blueprint that is not in the archive should not be found");
+            } catch (BlueprintNotFoundException ex) {
+                // expected
+            }
+            try {
+                abpp.getBlueprintsByAuthor("mia");
+                fail("An author that is not in the archive should not be found");
+            } catch (BlueprintNotFoundException ex) {
+                // expected
+            }
+            try {
+                abpp.getAuthorTag("jo");
+                fail("An author that is not in the archive should have no tag");
+            } catch (BlueprintNotFoundException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Tests that the archive cannot be changed.
+     */
+    @Test(expected = BlueprintReadOnlyException.class)
+    public void shouldRejectChanges() throws Exception {
+        Path file = write(Arrays.asList(new Blueprint("john", "house", new Point[] { new Point(1, 2) })));
+        try (ArchiveBlueprintPersistence abpp = new ArchiveBlueprintPersistence(file)) {
+            abpp.saveBlueprint(new Blueprint("john", "garden", new Point[] { new Point(1, 2) }));
+        }
+    }
+
+    /**
+     * Tests that blueprints, keys and index entries that span mapped regions
+     * are read back whole, using regions much smaller than the blueprints.
+     */
+    @Test
+    public void shouldReadAcrossRegions() throws Exception {
+        List<Blueprint> blueprints = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Point[] points = new Point[i * 7];
+            for (int p = 0; p < points.length; p++) {
+                points[p] = new Point(i, p);
+            }
+            blueprints.add(new Blueprint("author-with-a-long-name-" + (i % 3), "plan" + i, points));
+        }
+        Path file = write(blueprints);
+
+        try (ArchiveBlueprintPersistence abpp = new ArchiveBlueprintPersistence(BlueprintArchive.open(file, 64))) {
+            for (Blueprint bp : blueprints) {
+                assertEquals(bp, abpp.getBlueprint(bp.getAuthor(), bp.getName()));
+            }
+        }
+    }
+
+    private Path write(List<Blueprint> blueprints) throws Exception {
+        Path file = folder.newFile("blueprints.archive").toPath();
+        BlueprintArchive.write(file, blueprints.iterator());
+        return file;
+    }
+
+    private static List<String> keys(List<Blueprint> blueprints) {
+        return blueprints.stream().map(bp -> bp.getAuthor() + "/" + bp.getName()).collect(Collectors.toList());
+    }
+}
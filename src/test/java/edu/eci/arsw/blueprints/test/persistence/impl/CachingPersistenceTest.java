@@ -0,0 +1,131 @@
+package edu.eci.arsw.blueprints.test.persistence.impl;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.impl.CachingBlueprintPersistence;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Tests for the CachingBlueprintPersistence class, in front of an
+ * InMemoryBlueprintPersistence.
+ */
+public class CachingPersistenceTest {
+
+    private InMemoryBlueprintPersistence store;
+
+    private CachingBlueprintPersistence cbpp;
+
+    @Before
+    public void setUp() {
+        store = new InMemoryBlueprintPersistence();
+        cbpp = new CachingBlueprintPersistence(store, 1 << 20);
+    }
+
+    /**
+     * Tests that the second read of a blueprint is served from the cache.
+     */
+    @Test
+    public void shouldCountHitsAndMisses() throws Exception {
+        Blueprint first = cbpp.getBlueprint("andres", "MyPlane");
+        Blueprint second = cbpp.getBlueprint("andres", "MyPlane");
+
+        assertSame(first, second);
+        assertEquals(1, cbpp.getMissCount());
+        assertEquals(1, cbpp.getHitCount());
+    }
+
+    /**
+     * Tests that a change is seen by the next read, through the cache.
+     */
+    @Test
+    public void shouldDropChangedBlueprints() throws Exception {
+        cbpp.getBlueprint("andres", "MyPlane");
+        Blueprint updated = new Blueprint("andres", "MyPlane", new Point[] { new Point(9, 9) });
+        updated.setVersion(1);
+        cbpp.compareAndSetBlueprint(0, updated);
+        assertEquals(updated, cbpp.getBlueprint("andres", "MyPlane"));
+        assertEquals(1, cbpp.getBlueprint("andres", "MyPlane").getVersion());
+
+        cbpp.deleteBlueprint("andres", "MyPlane");
+        try {
+            cbpp.getBlueprint("andres", "MyPlane");
+            fail("A deleted blueprint should not be served from the cache");
+        } catch (BlueprintNotFoundException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests that the cache stays within its weight, evicting the least
+     * recently read blueprints first.
+     */
+    @Test
+    public void shouldEvictByWeight() throws Exception {
+        // a single blueprint of 100 points fills a segment of 1/16 of the weight
+        long maxWeight = 16 * (100 + 16);
+        CachingBlueprintPersistence small = new CachingBlueprintPersistence(store, maxWeight);
+        Point[] points = new Point[100];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point(i, i);
+        }
+        for (int i = 0; i < 200; i++) {
+            store.saveBlueprint(new Blueprint("heavy", "plan" + i, points));
+        }
+        for (int i = 0; i < 200; i++) {
+            small.getBlueprint("heavy", "plan" + i);
+        }
+
+        assertTrue("The cache holds more than its weight: " + small.getWeight(), small.getWeight() <= maxWeight);
+        assertTrue("Blueprints should have been evicted", small.getEvictionCount() > 0);
+        small.getBlueprint("heavy", "plan199");
+        assertEquals("The last blueprint read should still be cached", 1, small.getHitCount());
+    }
+
+    /**
+     * Tests that a read that started before a change does not leave the old
+     * blueprint in the cache after it.
+     */
+    @Test
+    public void shouldNotCacheAReadThatRacedWithAChange() throws Exception {
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch changed = new CountDownLatch(1);
+        InMemoryBlueprintPersistence slow = new InMemoryBlueprintPersistence() {
+            @Override
+            public Blueprint getBlueprint(String author, String bprintname) throws BlueprintNotFoundException {
+                Blueprint bp = super.getBlueprint(author, bprintname);
+                if (reading.getCount() > 0) {
+                    reading.countDown();
+                    try {
+                        changed.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return bp;
+            }
+        };
+        CachingBlueprintPersistence racing = new CachingBlueprintPersistence(slow, 1 << 20);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Blueprint> staleRead = executor.submit(() -> racing.getBlueprint("juan", "MyPlane"));
+            reading.await();
+            Blueprint updated = new Blueprint("juan", "MyPlane", new Point[] { new Point(1, 1) });
+            racing.updateBlueprints(updated);
+            changed.countDown();
+            staleRead.get();
+
+            assertEquals(updated, racing.getBlueprint("juan", "MyPlane"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -3,10 +3,16 @@ package edu.eci.arsw.blueprints.test.persistence.impl;
 import edu.eci.arsw.blueprints.model.Blueprint;
 import edu.eci.arsw.blueprints.model.Point;
 import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.filter.FilterSimplify;
 import edu.eci.arsw.blueprints.filter.FilterSuprimePoints;
 import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * Unit tests for the blueprint filtering functionality.
@@ -130,4 +136,86 @@ public class FilterBlueprintsTest {
         assertEquals("The blueprint with no repetitive points should remain unchanged", expectedBlueprint.getPoints(),
                 pBlueprint.getPoints());
     }
+
+    /**
+     * Tests that both filters work in place over packed coordinates, moving
+     * the kept points to the start of the array.
+     * 
+     * @throws BlueprintPersistenceException If there is an issue with the filtering
+     *                                       process.
+     */
+    @Test
+    public void shouldFilterPackedCoordinatesInPlace() throws BlueprintPersistenceException {
+        fsp = new FilterSuprimePoints();
+        int[] coordinates = { 1, 1, 2, 2, 3, 3, 4, 4, 5, 5 };
+        int kept = fsp.filterPacked(coordinates, 5);
+        assertEquals("Subsampling 5 points should keep 2", 2, kept);
+        assertArrayEquals(new int[] { 2, 2, 4, 4 }, Arrays.copyOf(coordinates, 2 * kept));
+
+        fpr = new FilterSuprimePointsRepetitive();
+        coordinates = new int[] { 1, 1, 1, 1, 2, 2, 2, 2, 3, 3 };
+        kept = fpr.filterPacked(coordinates, 5);
+        assertEquals("Removing repetitions should keep 3 points", 3, kept);
+        assertArrayEquals(new int[] { 1, 1, 2, 2, 3, 3 }, Arrays.copyOf(coordinates, 2 * kept));
+    }
+
+    /**
+     * Tests that simplifying drops the points along straight strokes and
+     * keeps the corners.
+     */
+    @Test
+    public void shouldSimplifyStraightStrokes() {
+        FilterSimplify simplify = new FilterSimplify(1.0);
+        Blueprint bp = new Blueprint("a", "square", new Point[] { new Point(0, 0), new Point(5, 0),
+                new Point(10, 0), new Point(10, 5), new Point(10, 10), new Point(5, 10), new Point(0, 10),
+                new Point(0, 5), new Point(0, 0) });
+        simplify.filterBlueprint(bp);
+
+        assertEquals(Arrays.asList(new Point(0, 0), new Point(10, 0), new Point(10, 10), new Point(0, 10),
+                new Point(0, 0)), bp.getPoints());
+    }
+
+    /**
+     * Tests that no dropped point is farther than the tolerance from the
+     * segment between the kept points around it.
+     */
+    @Test
+    public void shouldSimplifyWithinTolerance() {
+        Random random = new Random(42);
+        int count = 5000;
+        int[] original = new int[2 * count];
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < count; i++) {
+            x += random.nextInt(7) - 3;
+            y += random.nextInt(7) - 3;
+            original[2 * i] = x;
+            original[2 * i + 1] = y;
+        }
+        double tolerance = 4.0;
+        int[] coordinates = original.clone();
+        int kept = FilterSimplify.simplify(coordinates, count, tolerance);
+        assertTrue("A random walk should lose points, kept " + kept, kept < count / 2);
+
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            if (original[2 * i] == coordinates[2 * next] && original[2 * i + 1] == coordinates[2 * next + 1]
+                    && (next < kept - 1 || i == count - 1)) {
+                next++;
+                continue;
+            }
+            double distance = segmentDistance(original[2 * i], original[2 * i + 1], coordinates[2 * next - 2],
+                    coordinates[2 * next - 1], coordinates[2 * next], coordinates[2 * next + 1]);
+            assertTrue("Point " + i + " is " + distance + " away", distance <= tolerance);
+        }
+        assertEquals("Every kept point should be in order", kept, next);
+    }
+
+    private static double segmentDistance(int px, int py, int ax, int ay, int bx, int by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double length = dx * dx + dy * dy;
+        double t = length == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / length));
+        return Math.hypot(ax + t * dx - px, ay + t * dy - py);
+    }
 }
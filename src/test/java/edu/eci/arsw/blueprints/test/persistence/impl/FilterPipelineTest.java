@@ -0,0 +1,101 @@
+package edu.eci.arsw.blueprints.test.persistence.impl;
+
+import edu.eci.arsw.blueprints.filter.FilterBlueprints;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePoints;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for the {@link FilterPipeline} class.
+ * 
+ * The pipeline must give the same points as applying each filter's
+ * {@code filterBlueprint} one after the other, both on small blueprints, which
+ * run in a single sequential pass, and on large ones, which are split in
+ * chunks processed in parallel.
+ */
+public class FilterPipelineTest {
+
+    private FilterPipeline pipeline;
+
+    @Before
+    public void setUp() {
+        Map<String, FilterBlueprints> filters = new HashMap<>();
+        filters.put("subsample", new FilterSuprimePoints());
+        filters.put("redundancy", new FilterSuprimePointsRepetitive());
+        pipeline = new FilterPipeline(filters);
+    }
+
+    /**
+     * Tests that chained filters give the same result as applying the filters
+     * one by one, for small and large blueprints and for both orders.
+     * 
+     * @throws BlueprintPersistenceException If a filter fails.
+     */
+    @Test
+    public void shouldMatchFiltersAppliedOneByOne() throws BlueprintPersistenceException {
+        for (int size : new int[] { 0, 1, 7, 1000, 300_000 }) {
+            Blueprint bp = randomBlueprint(size);
+            assertPipelineMatches(bp, "redundancy");
+            assertPipelineMatches(bp, "subsample");
+            assertPipelineMatches(bp, "redundancy", "subsample");
+            assertPipelineMatches(bp, "subsample", "redundancy");
+        }
+    }
+
+    /**
+     * Tests that the pipeline does not change the blueprint it filters.
+     * 
+     * @throws BlueprintPersistenceException If a filter fails.
+     */
+    @Test
+    public void shouldNotChangeFilteredBlueprint() throws BlueprintPersistenceException {
+        Blueprint bp = randomBlueprint(100);
+        List<Point> before = bp.getPoints();
+        Blueprint filtered = pipeline.apply(bp, Arrays.asList("subsample", "redundancy"));
+        assertEquals("The filtered blueprint should not change", before, bp.getPoints());
+        assertEquals(bp.getVersion(), filtered.getVersion());
+    }
+
+    /**
+     * Tests that an unknown filter name is rejected.
+     * 
+     * @throws BlueprintPersistenceException If a filter fails.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnknownFilter() throws BlueprintPersistenceException {
+        pipeline.apply(randomBlueprint(10), Arrays.asList("redundancy", "nope"));
+    }
+
+    private void assertPipelineMatches(Blueprint bp, String... names) throws BlueprintPersistenceException {
+        Blueprint expected = bp.copyAs(bp.getAuthor(), bp.getName());
+        for (String name : names) {
+            FilterBlueprints filter = name.equals("subsample") ? new FilterSuprimePoints() : new FilterSuprimePointsRepetitive();
+            filter.filterBlueprint(expected);
+        }
+        Blueprint actual = pipeline.apply(bp, Arrays.asList(names));
+        assertEquals("Pipeline " + Arrays.toString(names) + " on " + bp.pointCount() + " points",
+                expected.getPoints(), actual.getPoints());
+    }
+
+    private static Blueprint randomBlueprint(int size) {
+        Random random = new Random(size);
+        Point[] points = new Point[size];
+        for (int i = 0; i < size; i++) {
+            // Pocos valores distintos, para que haya muchos puntos repetidos
+            points[i] = new Point(random.nextInt(3), random.nextInt(3));
+        }
+        return new Blueprint("john", "plan" + size, points);
+    }
+}
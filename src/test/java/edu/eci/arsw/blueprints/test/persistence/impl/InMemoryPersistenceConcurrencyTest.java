@@ -0,0 +1,217 @@
+package edu.eci.arsw.blueprints.test.persistence.impl;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress tests for the InMemoryBlueprintPersistence class.
+ * 
+ * Every test starts {@link #THREADS} threads behind a common start gate, so
+ * they hit the persistence at the same time, and then checks that no write
+ * was lost and that each conflicting operation had exactly one winner.
+ */
+public class InMemoryPersistenceConcurrencyTest {
+
+    private static final int THREADS = 64;
+
+    private static final int OPERATIONS_PER_THREAD = 500;
+
+    private InMemoryBlueprintPersistence ibpp;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        ibpp = new InMemoryBlueprintPersistence();
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Tests that concurrent saves of distinct blueprints are all stored.
+     */
+    @Test
+    public void shouldNotLoseConcurrentSaves() throws Exception {
+        final int initial = ibpp.getAllBlueprints().size();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                ibpp.saveBlueprint(new Blueprint("author" + thread, "plan" + i,
+                        new Point[] { new Point(thread, i) }));
+            }
+            return null;
+        });
+
+        assertEquals("Every saved blueprint should be stored",
+                initial + THREADS * OPERATIONS_PER_THREAD, ibpp.getAllBlueprints().size());
+        for (int thread = 0; thread < THREADS; thread++) {
+            assertEquals("Every author should keep all of its blueprints",
+                    OPERATIONS_PER_THREAD, ibpp.getBlueprintsByAuthor("author" + thread).size());
+        }
+    }
+
+    /**
+     * Tests that when all threads save the same blueprints only one save per
+     * key succeeds, and that the stored blueprint is the winner's.
+     */
+    @Test
+    public void shouldAcceptExactlyOneSavePerKey() throws Exception {
+        final AtomicInteger saved = new AtomicInteger();
+        final Blueprint[] winners = new Blueprint[OPERATIONS_PER_THREAD];
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                Blueprint bp = new Blueprint("shared", "plan" + i, new Point[] { new Point(thread, i) });
+                try {
+                    ibpp.saveBlueprint(bp);
+                    saved.incrementAndGet();
+                    synchronized (winners) {
+                        assertNull("Two saves of the same blueprint succeeded", winners[i]);
+                        winners[i] = bp;
+                    }
+                } catch (BlueprintPersistenceException ex) {
+                    // Expected for every thread but the winner
+                }
+            }
+            return null;
+        });
+
+        assertEquals("Exactly one save per key should succeed", OPERATIONS_PER_THREAD, saved.get());
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            assertSame("The stored blueprint should be the one whose save succeeded",
+                    winners[i], ibpp.getBlueprint("shared", "plan" + i));
+        }
+    }
+
+    /**
+     * Tests that concurrent updates of distinct blueprints all end with the last
+     * version written by their thread.
+     */
+    @Test
+    public void shouldNotLoseConcurrentUpdates() throws Exception {
+        for (int thread = 0; thread < THREADS; thread++) {
+            ibpp.saveBlueprint(new Blueprint("updater", "plan" + thread, new Point[] {}));
+        }
+
+        runConcurrently(thread -> {
+            for (int i = 1; i <= OPERATIONS_PER_THREAD; i++) {
+                Blueprint bp = new Blueprint("updater", "plan" + thread, new Point[] { new Point(thread, i) });
+                bp.setVersion(i);
+                ibpp.updateBlueprints(bp);
+            }
+            return null;
+        });
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            Blueprint bp = ibpp.getBlueprint("updater", "plan" + thread);
+            assertEquals("The last update of every blueprint should be kept",
+                    OPERATIONS_PER_THREAD, bp.getVersion());
+        }
+    }
+
+    /**
+     * Tests that when all threads keep updating the same blueprint from the
+     * version they last read, every version is won by exactly one thread.
+     */
+    @Test
+    public void shouldAcceptExactlyOneVersionedUpdatePerVersion() throws Exception {
+        ibpp.saveBlueprint(new Blueprint("contended", "plan", new Point[] {}));
+        final AtomicInteger[] winners = new AtomicInteger[OPERATIONS_PER_THREAD];
+        for (int v = 0; v < OPERATIONS_PER_THREAD; v++) {
+            winners[v] = new AtomicInteger();
+        }
+
+        runConcurrently(thread -> {
+            int version;
+            while ((version = ibpp.getBlueprint("contended", "plan").getVersion()) < OPERATIONS_PER_THREAD) {
+                Blueprint bp = new Blueprint("contended", "plan", new Point[] { new Point(thread, version) });
+                bp.setVersion(version + 1);
+                try {
+                    ibpp.compareAndSetBlueprint(version, bp);
+                    winners[version].incrementAndGet();
+                } catch (BlueprintPersistenceException ex) {
+                    // Another thread won this version
+                }
+            }
+            return null;
+        });
+
+        for (int v = 0; v < OPERATIONS_PER_THREAD; v++) {
+            assertEquals("Exactly one update should win version " + v, 1, winners[v].get());
+        }
+        assertEquals("The blueprint should end at the last version", OPERATIONS_PER_THREAD,
+                ibpp.getBlueprint("contended", "plan").getVersion());
+    }
+
+    /**
+     * Tests that when all threads delete the same blueprints only one delete per
+     * key succeeds.
+     */
+    @Test
+    public void shouldAcceptExactlyOneDeletePerKey() throws Exception {
+        for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+            ibpp.saveBlueprint(new Blueprint("doomed", "plan" + i, new Point[] { new Point(i, i) }));
+        }
+        final AtomicInteger deleted = new AtomicInteger();
+
+        runConcurrently(thread -> {
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                try {
+                    ibpp.deleteBlueprint("doomed", "plan" + i);
+                    deleted.incrementAndGet();
+                } catch (BlueprintNotFoundException ex) {
+                    // Expected for every thread but the winner
+                }
+            }
+            return null;
+        });
+
+        assertEquals("Exactly one delete per key should succeed", OPERATIONS_PER_THREAD, deleted.get());
+        try {
+            ibpp.getBlueprintsByAuthor("doomed");
+            fail("Expected BlueprintNotFoundException was not thrown");
+        } catch (BlueprintNotFoundException e) {
+            // Expected exception
+        }
+    }
+
+    private interface ThreadBody {
+        Void run(int thread) throws Exception;
+    }
+
+    private void runConcurrently(ThreadBody body) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int thread = t;
+            futures.add(executor.submit((Callable<Void>) () -> {
+                start.await();
+                return body.run(thread);
+            }));
+        }
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get();
+        }
+    }
+}
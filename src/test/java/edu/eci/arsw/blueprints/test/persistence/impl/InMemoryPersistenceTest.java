@@ -10,6 +10,7 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -138,6 +139,64 @@ public class InMemoryPersistenceTest {
                 ibpp.getBlueprintsByAuthor("John"));
     }
 
+    /**
+     * Tests that lookups by author reflect updates and deletions of the
+     * author's blueprints.
+     * 
+     * @throws BlueprintPersistenceException If there is an issue with saving the
+     *                                       blueprints.
+     * @throws BlueprintNotFoundException    If no blueprints are found for the
+     *                                       given author.
+     */
+    @Test
+    public void shouldKeepBlueprintsByAuthorUpToDate() throws BlueprintPersistenceException, BlueprintNotFoundException {
+        Blueprint first = new Blueprint("Mary", "FirstPlan", new Point[] { new Point(1, 1) });
+        Blueprint second = new Blueprint("Mary", "SecondPlan", new Point[] { new Point(2, 2) });
+        ibpp.saveBlueprint(first);
+        ibpp.saveBlueprint(second);
+
+        Blueprint updated = new Blueprint("Mary", "FirstPlan", new Point[] { new Point(3, 3) });
+        ibpp.updateBlueprints(updated);
+        ibpp.deleteBlueprint("Mary", "SecondPlan");
+
+        Set<Blueprint> maryBlueprints = ibpp.getBlueprintsByAuthor("Mary");
+        assertEquals("Only the remaining blueprint should be listed for the author", 1, maryBlueprints.size());
+        assertSame("The listed blueprint should be the updated one", updated, maryBlueprints.iterator().next());
+
+        ibpp.deleteBlueprint("Mary", "FirstPlan");
+        try {
+            ibpp.getBlueprintsByAuthor("Mary");
+            fail("Expected BlueprintNotFoundException was not thrown");
+        } catch (BlueprintNotFoundException e) {
+            // Expected exception
+        }
+    }
+
+    /**
+     * Tests that blueprints are listed in (author, name) order starting right
+     * after the given position.
+     * 
+     * @throws BlueprintPersistenceException If there is an issue with saving the
+     *                                       blueprints.
+     */
+    @Test
+    public void shouldListBlueprintsAfterPosition() throws BlueprintPersistenceException {
+        ibpp.saveBlueprint(new Blueprint("bob", "b", new Point[] {}));
+        ibpp.saveBlueprint(new Blueprint("bob", "a", new Point[] {}));
+        ibpp.saveBlueprint(new Blueprint("carl", "a", new Point[] {}));
+
+        List<Blueprint> page = ibpp.getBlueprintsAfter("andres", "MyPlane5", 3);
+        assertEquals(3, page.size());
+        assertEquals("bob", page.get(0).getAuthor());
+        assertEquals("a", page.get(0).getName());
+        assertEquals("b", page.get(1).getName());
+        assertEquals("carl", page.get(2).getAuthor());
+
+        List<Blueprint> first = ibpp.getBlueprintsAfter(null, null, 1);
+        assertEquals("The first blueprint in order should come first", "MyPlane", first.get(0).getName());
+        assertEquals("andres", first.get(0).getAuthor());
+    }
+
     /**
      * Tests deleting a blueprint and ensuring it is no longer retrievable.
      * 
@@ -0,0 +1,400 @@
+package edu.eci.arsw.blueprints.test.persistence.impl;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintKey;
+import edu.eci.arsw.blueprints.model.BlueprintPatch;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.BlueprintReadOnlyException;
+import edu.eci.arsw.blueprints.persistence.impl.LogBlueprintPersistence;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Tests for the LogBlueprintPersistence class: every change must survive
+ * closing the persistence and opening it again on the same directory.
+ */
+public class LogPersistenceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Tests that saves, updates and deletes are replayed on reopening.
+     */
+    @Test
+    public void shouldRebuildBlueprintsFromTheLog() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            assertTrue("A new log starts empty", lbpp.getAllBlueprints().isEmpty());
+            lbpp.saveBlueprint(new Blueprint("john", "house", new Point[] { new Point(1, 1), new Point(2, 2) }));
+            lbpp.saveBlueprint(new Blueprint("john", "garden", new Point[] { new Point(3, 3) }));
+            lbpp.saveBlueprint(new Blueprint("ana", "bridge", new Point[] { new Point(4, 4) }));
+
+            Blueprint updated = new Blueprint("john", "house", new Point[] { new Point(5, 5) });
+            updated.setVersion(1);
+            lbpp.compareAndSetBlueprint(0, updated);
+            lbpp.deleteBlueprint("john", "garden");
+            lbpp.patchBlueprint("ana", "bridge", new BlueprintPatch(0, Collections.singletonList(
+                    new BlueprintPatch.Operation(BlueprintPatch.APPEND, 0, 0, Collections.singletonList(new Point(6, 6))))));
+        }
+
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            assertEquals(2, lbpp.getAllBlueprints().size());
+            Blueprint house = lbpp.getBlueprint("john", "house");
+            assertEquals(1, house.getVersion());
+            assertEquals(new Blueprint("john", "house", new Point[] { new Point(5, 5) }), house);
+            Blueprint bridge = lbpp.getBlueprint("ana", "bridge");
+            assertEquals(1, bridge.getVersion());
+            assertEquals(new Blueprint("ana", "bridge", new Point[] { new Point(4, 4), new Point(6, 6) }), bridge);
+            assertEquals(1, lbpp.getBlueprintsByAuthor("ana").size());
+            assertEquals(1, lbpp.getBlueprintsByAuthor("john").size());
+            assertEquals(Arrays.asList(bridge, house), lbpp.getBlueprintsInArea(5, 5, 5, 5, 10));
+            assertTrue("Replaced and deleted blueprints should not stay in the spatial index",
+                    lbpp.getBlueprintsInArea(1, 1, 3, 3, 10).isEmpty());
+            assertEquals(Collections.singletonList(bridge), lbpp.getNearestBlueprints(7, 7, 1));
+            try {
+                lbpp.getBlueprint("john", "garden");
+                fail("A deleted blueprint should stay deleted after replay");
+            } catch (BlueprintNotFoundException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Tests that a batch saves each new blueprint on its own, rejecting the
+     * ones that exist, and that the saved ones survive reopening.
+     */
+    @Test
+    public void shouldSaveBatchesAndRejectDuplicatesOneByOne() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            lbpp.saveBlueprint(new Blueprint("john", "house", new Point[] { new Point(1, 1) }));
+            List<BlueprintPersistenceException> errors = lbpp.saveBlueprints(Arrays.asList(
+                    new Blueprint("john", "garden", new Point[] { new Point(2, 2) }),
+                    new Blueprint("john", "house", new Point[] { new Point(9, 9) }),
+                    new Blueprint("ana", "bridge", new Point[] { new Point(3, 3) })));
+
+            assertNull(errors.get(0));
+            assertNotNull("An existing blueprint should be rejected", errors.get(1));
+            assertNull(errors.get(2));
+        }
+
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            assertEquals(3, lbpp.getAllBlueprints().size());
+            assertEquals(new Blueprint("john", "house", new Point[] { new Point(1, 1) }), lbpp.getBlueprint("john", "house"));
+            List<Blueprint> found = lbpp.getBlueprints(Arrays.asList(
+                    new BlueprintKey("ana", "bridge"), new BlueprintKey("ana", "tunnel")));
+            assertEquals("bridge", found.get(0).getName());
+            assertNull(found.get(1));
+        }
+    }
+
+    /**
+     * Tests that a record cut in the middle, as a crash during a write leaves
+     * it, is dropped and new records are appended after the last good one.
+     */
+    @Test
+    public void shouldDropATornRecordAtTheEnd() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            lbpp.saveBlueprint(new Blueprint("john", "house", new Point[] { new Point(1, 1) }));
+            lbpp.saveBlueprint(new Blueprint("john", "garden", new Point[] { new Point(2, 2) }));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(dir.resolve("blueprints-0.log").toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            assertEquals(1, lbpp.getAllBlueprints().size());
+            assertNotNull(lbpp.getBlueprint("john", "house"));
+            lbpp.saveBlueprint(new Blueprint("john", "pool", new Point[] { new Point(3, 3) }));
+        }
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            assertEquals(2, lbpp.getAllBlueprints().size());
+            assertNotNull(lbpp.getBlueprint("john", "pool"));
+        }
+    }
+
+    /**
+     * Tests that concurrent writers, which share syncs, all get their changes
+     * into the log.
+     */
+    @Test
+    public void shouldLogEveryConcurrentWrite() throws Exception {
+        final int threads = 16;
+        final int perThread = 200;
+        Path dir = folder.getRoot().toPath();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        lbpp.saveBlueprint(new Blueprint("author" + thread, "plan" + i,
+                                new Point[] { new Point(thread, i) }));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            assertEquals(threads * perThread, lbpp.getAllBlueprints().size());
+            assertEquals(new Blueprint("author7", "plan42", new Point[] { new Point(7, 42) }),
+                    lbpp.getBlueprint("author7", "plan42"));
+        }
+    }
+
+    /**
+     * Tests that after a snapshot the older segments are deleted and startup
+     * rebuilds the blueprints from the snapshot plus the newer segment.
+     */
+    @Test
+    public void shouldCompactTheLogIntoASnapshot() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            for (int i = 0; i < 100; i++) {
+                lbpp.saveBlueprint(new Blueprint("john", "plan" + i, new Point[] { new Point(i, i) }));
+            }
+            lbpp.deleteBlueprint("john", "plan0");
+            lbpp.snapshot();
+            lbpp.deleteBlueprint("john", "plan1");
+            lbpp.updateBlueprints(new Blueprint("john", "plan2", new Point[] { new Point(7, 7) }));
+        }
+        assertEquals(Arrays.asList("blueprints-1.log", "snapshot-1.snap"), files(dir));
+
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            assertEquals(98, lbpp.getAllBlueprints().size());
+            assertEquals(new Blueprint("john", "plan2", new Point[] { new Point(7, 7) }),
+                    lbpp.getBlueprint("john", "plan2"));
+            assertEquals(new Blueprint("john", "plan99", new Point[] { new Point(99, 99) }),
+                    lbpp.getBlueprint("john", "plan99"));
+        }
+    }
+
+    /**
+     * Tests that a snapshot failing in the background is kept, and that the
+     * log still holds every change.
+     */
+    @Test
+    public void shouldKeepTheFailureOfABackgroundSnapshot() throws Exception {
+        Path dir = folder.getRoot().toPath();
+        LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir, 1);
+        try {
+            assertNull(lbpp.getSnapshotFailure());
+            // The snapshot cannot be written where a directory is in the way
+            Files.createDirectory(dir.resolve("snapshot-1.tmp"));
+            lbpp.saveBlueprint(new Blueprint("john", "plan", new Point[] { new Point(1, 1) }));
+        } finally {
+            lbpp.close();
+        }
+        assertNotNull("The failed snapshot should be kept", lbpp.getSnapshotFailure());
+
+        try (LogBlueprintPersistence reopened = new LogBlueprintPersistence(dir)) {
+            assertEquals(new Blueprint("john", "plan", new Point[] { new Point(1, 1) }),
+                    reopened.getBlueprint("john", "plan"));
+        }
+    }
+
+    /**
+     * Tests that once the log cannot be written, the change that failed is
+     * rejected as read-only, as every later change is, and that it is not
+     * durable: it is gone once the log is opened again. The segment is the
+     * full device, where every write fails, so the test only runs where there
+     * is one.
+     */
+    @Test
+    public void shouldRejectChangesOnceTheLogFails() throws Exception {
+        Path full = Paths.get("/dev/full");
+        Assume.assumeTrue("No full device to write to", Files.isWritable(full));
+        Path dir = folder.getRoot().toPath();
+        Files.createSymbolicLink(dir.resolve("blueprints-0.log"), full);
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            assertNull(lbpp.getFailure());
+            try {
+                lbpp.saveBlueprints(Arrays.asList(new Blueprint("john", "house", new Point[] { new Point(1, 1) })));
+                fail("A batch that was not synced should be rejected");
+            } catch (BlueprintReadOnlyException ex) {
+                assertTrue(ex.getCause() instanceof IOException);
+            }
+            assertNotNull(lbpp.getFailure());
+
+            try {
+                lbpp.saveBlueprints(Arrays.asList(new Blueprint("john", "house", new Point[] { new Point(1, 1) })));
+                fail("A retry should be rejected as a change, not as a duplicate");
+            } catch (BlueprintReadOnlyException ex) {
+                // expected
+            }
+            try {
+                lbpp.updateBlueprints(new Blueprint("john", "garden", new Point[] { new Point(2, 2) }));
+                fail("Updates should be rejected after the log failed");
+            } catch (BlueprintReadOnlyException ex) {
+                // expected
+            }
+            try {
+                lbpp.deleteBlueprint("john", "house");
+                fail("Deletes should be rejected after the log failed");
+            } catch (BlueprintReadOnlyException ex) {
+                // expected
+            }
+            try {
+                lbpp.getBlueprint("john", "garden");
+                fail("A rejected update should not be applied");
+            } catch (BlueprintNotFoundException ex) {
+                // expected
+            }
+        }
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            lbpp.getBlueprint("john", "house");
+            fail("A change whose sync failed should not be durable");
+        } catch (BlueprintNotFoundException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests that an update whose sync fails is rejected as read-only, like
+     * the changes after it, and not as an error of the server.
+     */
+    @Test
+    public void shouldRejectTheUpdateWhoseSyncFails() throws Exception {
+        Path full = Paths.get("/dev/full");
+        Assume.assumeTrue("No full device to write to", Files.isWritable(full));
+        Path dir = folder.getRoot().toPath();
+        Files.createSymbolicLink(dir.resolve("blueprints-0.log"), full);
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            try {
+                lbpp.updateBlueprints(new Blueprint("john", "garden", new Point[] { new Point(2, 2) }));
+                fail("An update that was not synced should be rejected");
+            } catch (BlueprintReadOnlyException ex) {
+                assertTrue(ex.getCause() instanceof IOException);
+            }
+            try {
+                lbpp.deleteBlueprint("john", "garden");
+                fail("Deletes should be rejected after the log failed");
+            } catch (BlueprintReadOnlyException ex) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Tests that when the log fails while a snapshot starts a new segment,
+     * the persistence becomes read-only instead of failing every later change
+     * as closed. The segment is the full device, where every sync fails.
+     */
+    @Test
+    public void shouldRejectChangesOnceTheLogFailsToRoll() throws Exception {
+        Path full = Paths.get("/dev/full");
+        Assume.assumeTrue("No full device to write to", Files.isWritable(full));
+        Path dir = folder.getRoot().toPath();
+        Files.createSymbolicLink(dir.resolve("blueprints-0.log"), full);
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            try {
+                lbpp.snapshot();
+                fail("The snapshot should fail when the segment cannot be synced");
+            } catch (IOException ex) {
+                // expected
+            }
+            assertNotNull(lbpp.getFailure());
+            try {
+                lbpp.saveBlueprint(new Blueprint("john", "house", new Point[] { new Point(1, 1) }));
+                fail("Changes should be rejected after the log failed");
+            } catch (BlueprintReadOnlyException ex) {
+                // expected
+            }
+            try {
+                lbpp.getBlueprint("john", "house");
+                fail("A rejected change should not be applied");
+            } catch (BlueprintNotFoundException ex) {
+                // expected
+            }
+        }
+        assertFalse("The segment that could not be started should be removed",
+                Files.exists(dir.resolve("blueprints-1.log")));
+    }
+
+    /**
+     * Tests that changes made while snapshots are being taken, in the
+     * background as the segments fill up and on demand, are not lost.
+     */
+    @Test
+    public void shouldNotLoseChangesMadeDuringSnapshots() throws Exception {
+        final int threads = 8;
+        final int perThread = 300;
+        Path dir = folder.getRoot().toPath();
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir, 4096)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        lbpp.saveBlueprint(new Blueprint("author" + thread, "plan" + i,
+                                new Point[] { new Point(thread, i) }));
+                        lbpp.updateBlueprints(new Blueprint("author" + thread, "plan" + i,
+                                new Point[] { new Point(i, thread) }));
+                        if (i % 2 == 0) {
+                            lbpp.deleteBlueprint("author" + thread, "plan" + i);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            Future<?> snapshots = executor.submit(() -> {
+                while (writing.get()) {
+                    lbpp.snapshot();
+                }
+                return null;
+            });
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            writing.set(false);
+            snapshots.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (LogBlueprintPersistence lbpp = new LogBlueprintPersistence(dir)) {
+            assertEquals(threads * perThread / 2, lbpp.getAllBlueprints().size());
+            assertEquals(new Blueprint("author3", "plan41", new Point[] { new Point(41, 3) }),
+                    lbpp.getBlueprint("author3", "plan41"));
+        }
+    }
+
+    private static List<String> files(Path dir) throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package edu.eci.arsw.blueprints.test.persistence.impl;
+
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for the area and nearest queries of the InMemoryBlueprintPersistence
+ * class, checked against a scan of every blueprint.
+ */
+public class SpatialQueryTest {
+
+    private static final Comparator<Blueprint> ORDER = Comparator.comparing(Blueprint::getAuthor)
+            .thenComparing(Blueprint::getName);
+
+    private final Random random = new Random(42);
+
+    private InMemoryBlueprintPersistence ibpp;
+
+    @Before
+    public void setUp() throws Exception {
+        ibpp = new InMemoryBlueprintPersistence();
+        for (int i = 0; i < 2000; i++) {
+            ibpp.saveBlueprint(randomBlueprint("author" + (i % 50), "plan" + i, i % 200 == 0 ? 20000 : 300));
+        }
+        ibpp.saveBlueprint(new Blueprint("empty", "plan", new Point[] {}));
+    }
+
+    /**
+     * Tests that area and nearest queries find what a scan finds.
+     */
+    @Test
+    public void shouldAnswerLikeAScan() {
+        checkQueries();
+    }
+
+    /**
+     * Tests that the index follows updates and deletes.
+     */
+    @Test
+    public void shouldFollowChanges() throws Exception {
+        for (int i = 0; i < 2000; i += 2) {
+            ibpp.deleteBlueprint("author" + (i % 50), "plan" + i);
+        }
+        for (int i = 1; i < 2000; i += 4) {
+            ibpp.updateBlueprints(randomBlueprint("author" + (i % 50), "plan" + i, 300));
+        }
+        checkQueries();
+    }
+
+    /**
+     * Tests that writers moving blueprints in parallel with queries leave the
+     * index like a scan, and that no query meanwhile reports a blueprint twice.
+     */
+    @Test
+    public void shouldFollowConcurrentChanges() throws Exception {
+        final int writers = 4;
+        List<List<Blueprint>> moves = new ArrayList<>();
+        for (int t = 0; t < writers; t++) {
+            List<Blueprint> batch = new ArrayList<>();
+            for (int i = t; i < 2000; i += writers) {
+                batch.add(randomBlueprint("author" + (i % 50), "plan" + i, i % 100 == 0 ? 20000 : 300));
+            }
+            moves.add(batch);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(writers + 1);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (List<Blueprint> batch : moves) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (Blueprint bp : batch) {
+                        ibpp.updateBlueprints(bp);
+                    }
+                    return null;
+                }));
+            }
+            Future<?> reader = executor.submit(() -> {
+                start.await();
+                Random queries = new Random(7);
+                for (int q = 0; q < 500; q++) {
+                    int x = queries.nextInt(10000) - 5000;
+                    int y = queries.nextInt(10000) - 5000;
+                    assertNoDuplicates(ibpp.getBlueprintsInArea(x, y, x + 2000, y + 2000, 100));
+                    assertNoDuplicates(ibpp.getNearestBlueprints(x, y, 10));
+                }
+                return null;
+            });
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            reader.get();
+        } finally {
+            executor.shutdown();
+        }
+        checkQueries();
+    }
+
+    /**
+     * Tests the sample blueprints: the house of andres/MyPlane2 spans from
+     * (100, 200) to (300, 500).
+     */
+    @Test
+    public void shouldFindBlueprintsAroundAPosition() {
+        InMemoryBlueprintPersistence sample = new InMemoryBlueprintPersistence();
+
+        List<Blueprint> nearest = sample.getNearestBlueprints(301, 501, 1);
+        assertEquals(1, nearest.size());
+        assertEquals("MyPlane2", nearest.get(0).getName());
+        assertTrue(sample.getBlueprintsInArea(1000, 1000, 2000, 2000, 10).isEmpty());
+        assertEquals(7, sample.getBlueprintsInArea(0, 0, 500, 500, 10).size());
+    }
+
+    private void checkQueries() {
+        List<Blueprint> all = ibpp.getAllBlueprints().stream()
+                .filter(bp -> bp.pointCount() > 0)
+                .collect(Collectors.toList());
+        for (int q = 0; q < 200; q++) {
+            int minX = random.nextInt(12000) - 6000;
+            int minY = random.nextInt(12000) - 6000;
+            int maxX = minX + random.nextInt(q % 10 == 0 ? 8000 : 800);
+            int maxY = minY + random.nextInt(q % 10 == 0 ? 8000 : 800);
+            List<Blueprint> expected = all.stream()
+                    .filter(bp -> {
+                        int[] box = bp.bounds();
+                        return box[0] <= maxX && minX <= box[2] && box[1] <= maxY && minY <= box[3];
+                    })
+                    .sorted(ORDER)
+                    .limit(50)
+                    .collect(Collectors.toList());
+            assertEquals(expected, ibpp.getBlueprintsInArea(minX, minY, maxX, maxY, 50));
+        }
+        for (int q = 0; q < 200; q++) {
+            int x = random.nextInt(14000) - 7000;
+            int y = random.nextInt(14000) - 7000;
+            int count = 1 + q % 5;
+            List<Blueprint> expected = all.stream()
+                    .sorted(Comparator.comparingLong((Blueprint bp) -> bp.distanceSquaredTo(x, y)).thenComparing(ORDER))
+                    .limit(count)
+                    .collect(Collectors.toList());
+            assertEquals("Nearest to (" + x + ", " + y + ")", expected, ibpp.getNearestBlueprints(x, y, count));
+        }
+    }
+
+    private static void assertNoDuplicates(List<Blueprint> found) {
+        assertEquals(found.size(), found.stream()
+                .map(bp -> bp.getAuthor() + "/" + bp.getName())
+                .collect(Collectors.toSet()).size());
+    }
+
+    private Blueprint randomBlueprint(String author, String name, int spread) {
+        int x = random.nextInt(10000) - 5000;
+        int y = random.nextInt(10000) - 5000;
+        List<Point> points = new ArrayList<>();
+        for (int i = 1 + random.nextInt(5); i > 0; i--) {
+            points.add(new Point(x + random.nextInt(spread), y + random.nextInt(spread)));
+        }
+        return new Blueprint(author, name, points.toArray(new Point[0]));
+    }
+}
@@ -0,0 +1,276 @@
+package edu.eci.arsw.blueprints.test.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import edu.eci.arsw.blueprints.filter.FilterPipeline;
+import edu.eci.arsw.blueprints.filter.FilterSuprimePointsRepetitive;
+import edu.eci.arsw.blueprints.model.Blueprint;
+import edu.eci.arsw.blueprints.model.BlueprintPage;
+import edu.eci.arsw.blueprints.model.Point;
+import edu.eci.arsw.blueprints.persistence.BlueprintNotFoundException;
+import edu.eci.arsw.blueprints.persistence.BlueprintPersistenceException;
+import edu.eci.arsw.blueprints.persistence.impl.InMemoryBlueprintPersistence;
+import edu.eci.arsw.blueprints.services.BlueprintResponseCache;
+import edu.eci.arsw.blueprints.services.BlueprintsServices;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit tests for the BlueprintsServices class, running on top of the
+ * {@link InMemoryBlueprintPersistence}.
+ */
+public class BlueprintsServicesTest {
+
+    private BlueprintsServices services;
+
+    @Before
+    public void setUp() {
+        services = new BlueprintsServices(new InMemoryBlueprintPersistence(), new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+    }
+
+    /**
+     * Tests that following the cursors visits every blueprint once, in
+     * (author, name) order.
+     * 
+     * @throws BlueprintPersistenceException If the blueprints cannot be saved.
+     */
+    @Test
+    public void shouldVisitEveryBlueprintFollowingCursors() throws BlueprintPersistenceException {
+        services.addNewBlueprint(new Blueprint("a:b", "c", new Point[] {}));
+        services.addNewBlueprint(new Blueprint("a", "b:c", new Point[] {}));
+        int total = services.getAllBlueprints().size();
+
+        List<String> visited = new ArrayList<>();
+        String cursor = null;
+        do {
+            BlueprintPage page = services.getBlueprintsPage(cursor, 2);
+            assertTrue("A page should not exceed the limit", page.getBlueprints().size() <= 2);
+            for (Blueprint bp : page.getBlueprints()) {
+                visited.add(bp.getAuthor() + "/" + bp.getName());
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals("Every blueprint should be visited once", total, visited.size());
+        List<String> sorted = new ArrayList<>(visited);
+        sorted.sort(null);
+        assertEquals("Blueprints should be visited in order", sorted, visited);
+    }
+
+    /**
+     * Tests that a filtered copy is not served for other points at the same
+     * version, as when a reader fills the cache with the blueprint it read
+     * just before a plain update replaced it.
+     * 
+     * @throws Exception If the blueprint cannot be saved, found or filtered.
+     */
+    @Test
+    public void shouldNotServeFilteredCopyOfOtherPointsAtTheSameVersion() throws Exception {
+        InMemoryBlueprintPersistence persistence = new InMemoryBlueprintPersistence();
+        services = new BlueprintsServices(persistence, new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+        services.addNewBlueprint(new Blueprint("john", "plan", new Point[] { new Point(1, 1), new Point(1, 1) }));
+        assertEquals(Arrays.asList(new Point(1, 1)), services.getFilteredBlueprint("john", "plan").getPoints());
+
+        // Behind the back of the service, so nothing is invalidated
+        persistence.updateBlueprints(new Blueprint("john", "plan", new Point[] { new Point(7, 7), new Point(7, 7) }));
+
+        assertEquals(0, services.getBlueprint("john", "plan").getVersion());
+        assertEquals(Arrays.asList(new Point(7, 7)), services.getFilteredBlueprint("john", "plan").getPoints());
+        assertEquals(Arrays.asList(new Point(7, 7)),
+                services.getFilteredBlueprint("john", "plan", Collections.singletonList("redundancy")).getPoints());
+    }
+
+    /**
+     * Tests that filtering a blueprint returns a filtered copy, leaves the
+     * stored blueprint unchanged, and reuses the copy until the blueprint
+     * changes.
+     * 
+     * @throws Exception If the blueprint cannot be saved, found or filtered.
+     */
+    @Test
+    public void shouldFilterWithoutChangingStoredBlueprint() throws Exception {
+        Point[] points = { new Point(1, 1), new Point(1, 1), new Point(2, 2) };
+        services.addNewBlueprint(new Blueprint("john", "plan", points));
+
+        Blueprint filtered = services.getFilteredBlueprint("john", "plan");
+        assertEquals(Arrays.asList(new Point(1, 1), new Point(2, 2)), filtered.getPoints());
+        assertEquals("The stored blueprint should keep all of its points",
+                Arrays.asList(points), services.getBlueprint("john", "plan").getPoints());
+        assertSame("Filtering the same version again should reuse the filtered copy",
+                filtered, services.getFilteredBlueprint("john", "plan"));
+
+        Blueprint update = new Blueprint("john", "plan", new Point[] { new Point(5, 5), new Point(5, 5) });
+        services.updateBlueprint("john", "plan", update);
+        Blueprint refiltered = services.getFilteredBlueprint("john", "plan");
+        assertEquals("The filtered copy should follow the update",
+                Arrays.asList(new Point(5, 5)), refiltered.getPoints());
+        assertEquals(1, refiltered.getVersion());
+
+        services.deleteBlueprint("john", "plan");
+        try {
+            services.getFilteredBlueprint("john", "plan");
+            fail("Expected BlueprintNotFoundException was not thrown");
+        } catch (BlueprintNotFoundException e) {
+            // Expected exception
+        }
+    }
+
+    /**
+     * Tests that a filter chain longer than the service allows is rejected,
+     * and that filtered copies too heavy for the cache are still served.
+     * 
+     * @throws Exception If the blueprint cannot be saved, found or filtered.
+     */
+    @Test
+    public void shouldBoundFilteredBlueprints() throws Exception {
+        services = new BlueprintsServices(new InMemoryBlueprintPersistence(), new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())),
+                new BlueprintResponseCache(new ObjectMapper(), 1000), 0);
+        services.addNewBlueprint(new Blueprint("john", "plan", new Point[] { new Point(1, 1), new Point(1, 1) }));
+        Blueprint filtered = services.getFilteredBlueprint("john", "plan", Collections.singletonList("redundancy"));
+        assertEquals(Arrays.asList(new Point(1, 1)), filtered.getPoints());
+        assertNotSame("A cache without room should not keep the filtered copy",
+                filtered, services.getFilteredBlueprint("john", "plan", Collections.singletonList("redundancy")));
+
+        try {
+            services.getFilteredBlueprint("john", "plan",
+                    Collections.nCopies(BlueprintsServices.MAX_FILTERS + 1, "redundancy"));
+            fail("Expected IllegalArgumentException was not thrown");
+        } catch (IllegalArgumentException e) {
+            // Expected exception
+        }
+    }
+
+    /**
+     * Tests that a cursor not produced by the service is rejected.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidCursor() {
+        services.getBlueprintsPage("not-a-cursor", 10);
+    }
+
+    /**
+     * Tests that the JSON of a blueprint is reused until the blueprint
+     * changes, and then encoded again.
+     */
+    @Test
+    public void shouldReuseEncodedBlueprintUntilItChanges() throws Exception {
+        services.addNewBlueprint(new Blueprint("john", "plan", new Point[] { new Point(1, 1) }));
+        Blueprint stored = services.getBlueprint("john", "plan");
+        byte[] json = services.getEncodedBlueprint(stored).getJson();
+        assertSame("The same version should be served from the cache",
+                json, services.getEncodedBlueprint(services.getBlueprint("john", "plan")).getJson());
+
+        services.updateBlueprint("john", "plan", new Blueprint("john", "plan", new Point[] { new Point(2, 2) }));
+        Blueprint updated = services.getBlueprint("john", "plan");
+        assertEquals(updated, new ObjectMapper().readValue(services.getEncodedBlueprint(updated).getJson(), Blueprint.class));
+    }
+
+    /**
+     * Tests that the response cache stays within its bytes, and that an
+     * entry is never served for other points at the same version.
+     */
+    @Test
+    public void shouldBoundEncodedBlueprintsByBytes() throws Exception {
+        BlueprintResponseCache cache = new BlueprintResponseCache(new ObjectMapper(), 4000);
+        for (int i = 0; i < 100; i++) {
+            Blueprint bp = new Blueprint("john", "plan" + i, new Point[] { new Point(i, i), new Point(i, -i) });
+            cache.encode(bp).getGzip();
+        }
+        assertTrue("The cache holds more than its bytes: " + cache.getBytes(), cache.getBytes() <= 4000);
+        assertTrue("The cache should keep some blueprints", cache.getBytes() > 0);
+
+        Blueprint bp = new Blueprint("john", "plan99", new Point[] { new Point(7, 7) });
+        assertEquals(bp, new ObjectMapper().readValue(cache.encode(bp).getJson(), Blueprint.class));
+        assertEquals(0, cache.getHitCount());
+    }
+
+    /**
+     * Tests that the levels of detail lose points as they get coarser, are
+     * reused for the same version and follow an update.
+     */
+    @Test
+    public void shouldCacheLevelsOfDetailByVersion() throws Exception {
+        Point[] points = new Point[1000];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point(i, (int) (100 * Math.sin(i / 50.0)));
+        }
+        services.addNewBlueprint(new Blueprint("lod", "wave", points));
+
+        Blueprint full = services.getBlueprintAtLevel("lod", "wave", 0);
+        assertEquals(1000, full.pointCount());
+        int previous = full.pointCount();
+        for (int level = 1; level <= BlueprintsServices.MAX_LEVEL; level++) {
+            Blueprint simplified = services.getBlueprintAtLevel("lod", "wave", level);
+            assertTrue("Level " + level + " should not have more points than the one before",
+                    simplified.pointCount() <= previous);
+            assertSame(simplified, services.getBlueprintAtLevel("lod", "wave", level));
+            previous = simplified.pointCount();
+        }
+        assertTrue("The coarsest level should be much smaller, has " + previous, previous < 100);
+
+        Blueprint coarse = services.getBlueprintAtLevel("lod", "wave", BlueprintsServices.MAX_LEVEL);
+        Blueprint update = new Blueprint("lod", "wave", new Point[] { new Point(0, 0), new Point(1, 1) });
+        update.setVersion(0);
+        services.updateBlueprint("lod", "wave", update);
+        Blueprint updated = services.getBlueprintAtLevel("lod", "wave", BlueprintsServices.MAX_LEVEL);
+        assertNotSame(coarse, updated);
+        assertEquals(1, updated.getVersion());
+        assertEquals(2, updated.pointCount());
+
+        try {
+            services.getBlueprintAtLevel("lod", "wave", BlueprintsServices.MAX_LEVEL + 1);
+            fail("A level past the coarsest should be rejected");
+        } catch (IllegalArgumentException ex) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests that levels of detail too heavy for their cache are still served,
+     * simplified again each time.
+     * 
+     * @throws Exception If the blueprint cannot be saved or found.
+     */
+    @Test
+    public void shouldBoundLevelsOfDetail() throws Exception {
+        services = new BlueprintsServices(new InMemoryBlueprintPersistence(), new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())),
+                new BlueprintResponseCache(new ObjectMapper(), 1000), BlueprintsServices.DEFAULT_FILTER_CACHE_WEIGHT, 0);
+        services.addNewBlueprint(new Blueprint("lod", "line", new Point[] { new Point(0, 0), new Point(1, 0), new Point(100, 0) }));
+        Blueprint simplified = services.getBlueprintAtLevel("lod", "line", 1);
+        assertEquals(Arrays.asList(new Point(0, 0), new Point(100, 0)), simplified.getPoints());
+        assertNotSame("A cache without room should not keep the levels",
+                simplified, services.getBlueprintAtLevel("lod", "line", 1));
+    }
+
+    /**
+     * Tests that the levels of detail are not served for other points at the
+     * same version, as when a plain update replaces the blueprint.
+     * 
+     * @throws Exception If the blueprint cannot be saved or found.
+     */
+    @Test
+    public void shouldNotServeLevelsOfOtherPointsAtTheSameVersion() throws Exception {
+        InMemoryBlueprintPersistence persistence = new InMemoryBlueprintPersistence();
+        services = new BlueprintsServices(persistence, new FilterSuprimePointsRepetitive(),
+                new FilterPipeline(Collections.singletonMap("redundancy", new FilterSuprimePointsRepetitive())));
+        services.addNewBlueprint(new Blueprint("lod", "line", new Point[] { new Point(0, 0), new Point(100, 0) }));
+        assertEquals(Arrays.asList(new Point(0, 0), new Point(100, 0)),
+                services.getBlueprintAtLevel("lod", "line", 1).getPoints());
+
+        // Behind the back of the service, so nothing is invalidated
+        persistence.updateBlueprints(new Blueprint("lod", "line", new Point[] { new Point(0, 0), new Point(0, 100) }));
+
+        assertEquals(0, services.getBlueprint("lod", "line").getVersion());
+        assertEquals(Arrays.asList(new Point(0, 0), new Point(0, 100)),
+                services.getBlueprintAtLevel("lod", "line", 1).getPoints());
+    }
+}